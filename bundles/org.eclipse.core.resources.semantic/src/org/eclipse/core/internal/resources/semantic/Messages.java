@@ -26,6 +26,7 @@ public class Messages extends NLS {
 	public static String SemanticFileStore_AddLocalChild_XMSG;
 	public static String SemanticFileStore_AddResourceRemote_XMSG;
 	public static String SemanticFileStore_AppendingInfo_XMSG;
+	public static String SemanticFileStore_CreateContentProvider_XMSG;
 	public static String SemanticFileStore_CreateFileRemote_XMSG;
 	public static String SemanticFileStore_CreateResourceRemtoe_XMSG;
 	public static String SemanticFileStore_DeleteResourceRemote_XMSG;
@@ -50,6 +51,7 @@ public class Messages extends NLS {
 	public static String SemanticFileStore_SyncContent_XGRP;
 	public static String SemanticFileStore_SynchContent_XMSG;
 	public static String SemanticFileStore_Unlocking_XMSG;
+	public static String SemanticFileStore_UpdateChildren_XMSG;
 	public static String SemanticFileStore_UpdateFileInfo_XMSG;
 	public static String SemanticFileStore_ValidateEdit_XMSG;
 	public static String SemanticFileStore_ValidateRemoteCreate_XMSG;
@@ -57,9 +59,13 @@ public class Messages extends NLS {
 	public static String SemanticFileStore_ValidateRemove_XMSG;
 	public static String SemanticFileStore_ValidateSave_XMSG;
 	public static String SemanticFileSystem_NotInitialized_XMSG;
+	public static String SemanticFileSystem_SegmentLoadError_XMSG;
+	public static String SemanticFileSystem_SegmentBroken_XMSG;
 	public static String SemanticFileSystem_SFSInitError_XMSG;
 	public static String SemanticFileSystem_SFSUpdateError_XMSG;
+	public static String SemanticFileSystem_UnloadJob_XGRP;
 	public static String SemanticFileSystemCore_TemplateIdNotFound_XMSG;
+	public static String SemanticFlushScheduler_FlushJob_XGRP;
 	public static String SemanticProperties_StoreNotAccessible_XMSG;
 	public static String SemanticResourceAdapterImpl_CalledOutsideRule_XMSG;
 	public static String SemanticResourceAdapterImpl_JobNoRule_XMSG;
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic;
+
+import java.util.HashMap;
+
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
+import org.eclipse.core.resources.semantic.spi.ISemanticContentProvider;
+
+/**
+ * The content provider instances of the content provider root nodes.
+ * <p>
+ * File stores are short-lived handles, and creating a content provider
+ * through its factory is expensive. Thus, one instance is kept per node that
+ * is the root of a content provider, and it is reused as long as the node is
+ * assigned the same content provider ID. The instances are grouped by the
+ * name of the tree root so that they can be dropped when the tree root is
+ * unloaded or removed.
+ * <p>
+ * In addition, the effective content provider that was resolved for a node
+ * is remembered, so that resolving it again does not need to walk up to the
+ * content provider root. As the resolution of a node depends on the content
+ * provider IDs of its parents, the resolutions of a tree root are dropped as
+ * a whole whenever a content provider ID changes or a subtree is removed or
+ * moved.
+ */
+final class SemanticContentProviderCache {
+
+	private static final class Entry {
+		final String contentProviderID;
+		final ISemanticContentProvider provider;
+
+		Entry(String contentProviderID, ISemanticContentProvider provider) {
+			this.contentProviderID = contentProviderID;
+			this.provider = provider;
+		}
+	}
+
+	// guarded by this
+	private final HashMap<String, HashMap<ResourceTreeNode, Entry>> entries = new HashMap<String, HashMap<ResourceTreeNode, Entry>>();
+	// guarded by this
+	private final HashMap<String, HashMap<ResourceTreeNode, Entry>> resolutions = new HashMap<String, HashMap<ResourceTreeNode, Entry>>();
+
+	/**
+	 * @param rootName
+	 *            the name of the tree root of the node
+	 * @param node
+	 *            the content provider root node
+	 * @param contentProviderID
+	 *            the content provider ID of the node
+	 * @return the instance, or <code>null</code> if there is none for this
+	 *         content provider ID
+	 */
+	synchronized ISemanticContentProvider get(String rootName, ResourceTreeNode node, String contentProviderID) {
+		HashMap<ResourceTreeNode, Entry> rootEntries = this.entries.get(rootName);
+		if (rootEntries == null) {
+			return null;
+		}
+		Entry entry = rootEntries.get(node);
+		if (entry == null || !entry.contentProviderID.equals(contentProviderID)) {
+			return null;
+		}
+		return entry.provider;
+	}
+
+	/**
+	 * @param rootName
+	 *            the name of the tree root of the node
+	 * @param node
+	 *            the content provider root node
+	 * @param contentProviderID
+	 *            the content provider ID of the node
+	 * @param provider
+	 *            the instance
+	 */
+	synchronized void put(String rootName, ResourceTreeNode node, String contentProviderID, ISemanticContentProvider provider) {
+		HashMap<ResourceTreeNode, Entry> rootEntries = this.entries.get(rootName);
+		if (rootEntries == null) {
+			rootEntries = new HashMap<ResourceTreeNode, Entry>();
+			this.entries.put(rootName, rootEntries);
+		}
+		rootEntries.put(node, new Entry(contentProviderID, provider));
+	}
+
+	/**
+	 * @param rootName
+	 *            the name of the tree root of the node
+	 * @param node
+	 *            the node
+	 * @return the effective content provider resolved for the node, or
+	 *         <code>null</code> if it has not been resolved yet
+	 */
+	synchronized ISemanticContentProvider getResolvedProvider(String rootName, ResourceTreeNode node) {
+		Entry entry = getResolution(rootName, node);
+		return entry != null ? entry.provider : null;
+	}
+
+	/**
+	 * @param rootName
+	 *            the name of the tree root of the node
+	 * @param node
+	 *            the node
+	 * @return the effective content provider ID resolved for the node, or
+	 *         <code>null</code> if it has not been resolved yet
+	 */
+	synchronized String getResolvedProviderID(String rootName, ResourceTreeNode node) {
+		Entry entry = getResolution(rootName, node);
+		return entry != null ? entry.contentProviderID : null;
+	}
+
+	private Entry getResolution(String rootName, ResourceTreeNode node) {
+		HashMap<ResourceTreeNode, Entry> rootResolutions = this.resolutions.get(rootName);
+		if (rootResolutions == null) {
+			return null;
+		}
+		return rootResolutions.get(node);
+	}
+
+	/**
+	 * @param rootName
+	 *            the name of the tree root of the node
+	 * @param node
+	 *            the node
+	 * @param contentProviderID
+	 *            the effective content provider ID of the node
+	 * @param provider
+	 *            the effective content provider of the node
+	 */
+	synchronized void putResolved(String rootName, ResourceTreeNode node, String contentProviderID, ISemanticContentProvider provider) {
+		HashMap<ResourceTreeNode, Entry> rootResolutions = this.resolutions.get(rootName);
+		if (rootResolutions == null) {
+			rootResolutions = new HashMap<ResourceTreeNode, Entry>();
+			this.resolutions.put(rootName, rootResolutions);
+		}
+		rootResolutions.put(node, new Entry(contentProviderID, provider));
+	}
+
+	/**
+	 * Drops the resolved content providers of a tree root; must be called
+	 * when a content provider ID in the tree root changes
+	 *
+	 * @param rootName
+	 *            the name of the tree root
+	 */
+	synchronized void removeResolutions(String rootName) {
+		this.resolutions.remove(rootName);
+	}
+
+	/**
+	 * Drops the instances of a subtree and the resolutions of its tree root;
+	 * must be called before the subtree is removed or moved
+	 *
+	 * @param rootName
+	 *            the name of the tree root of the node
+	 * @param node
+	 *            the root of the subtree
+	 */
+	synchronized void removeSubtree(String rootName, ResourceTreeNode node) {
+		this.resolutions.remove(rootName);
+		HashMap<ResourceTreeNode, Entry> rootEntries = this.entries.get(rootName);
+		if (rootEntries != null) {
+			removeSubtree(rootEntries, node);
+			if (rootEntries.isEmpty()) {
+				this.entries.remove(rootName);
+			}
+		}
+	}
+
+	private static void removeSubtree(HashMap<ResourceTreeNode, Entry> rootEntries, ResourceTreeNode node) {
+		rootEntries.remove(node);
+		for (ResourceTreeNode child : node.getChildren()) {
+			removeSubtree(rootEntries, child);
+		}
+	}
+
+	/**
+	 * Drops the instances of a tree root and its children
+	 *
+	 * @param rootName
+	 *            the name of the tree root
+	 */
+	synchronized void removeRoot(String rootName) {
+		this.entries.remove(rootName);
+		this.resolutions.remove(rootName);
+	}
+}
@@ -17,15 +17,19 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.MessageFormat;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.filesystem.provider.FileInfo;
 import org.eclipse.core.filesystem.provider.FileStore;
+import org.eclipse.core.internal.resources.semantic.SemanticFileSystem.SemanticURILocatorService;
 import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
 import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBFactory;
 import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeNodeType;
@@ -70,7 +74,8 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	private final static String DEFAULT_CONTENT_PROVIDER_ID = "org.eclipse.core.resources.semantic.provider.DefaultContentProvider"; //$NON-NLS-1$
 
 	private final ISemanticFileSystemLog log;
-	private ISemanticContentProvider provider;
+	// the stores are shared between threads
+	private volatile ISemanticContentProvider provider;
 
 	SemanticFileStore(SemanticFileSystem fs, ResourceTreeNode node) {
 		super(fs, node);
@@ -87,7 +92,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	public String[] childNames(int options, IProgressMonitor monitor) throws CoreException {
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -120,7 +125,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		boolean askContentProviderForTimestamp = false;
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			info = new SemanticFileInfo();
 
@@ -204,58 +209,120 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	}
 
 	private static ISemanticContentProvider initProvider(String contentProviderID, ISemanticFileStore store) throws CoreException {
+		SemanticFileStore semanticStore = (SemanticFileStore) store;
 
-		ISemanticContentProvider actProvider = SemanticFileSystemCore.getInstance().getContentProviderFactory(contentProviderID)
-				.createContentProvider();
+		// the instance is reused as long as the root keeps its provider ID
+		ISemanticContentProvider actProvider = semanticStore.fs.getContentProvider(semanticStore.node, contentProviderID);
 
-		actProvider.setRootStore(store);
+		if (actProvider == null) {
+			if (SfsTraceLocation.CONTENTPROVIDER.isActive()) {
+				SfsTraceLocation.getTrace().trace(SfsTraceLocation.CONTENTPROVIDER.getLocation(),
+						NLS.bind(Messages.SemanticFileStore_CreateContentProvider_XMSG, contentProviderID, store.getPath().toString()));
+			}
+
+			actProvider = SemanticFileSystemCore.getInstance().getContentProviderFactory(contentProviderID).createContentProvider();
+
+			actProvider.setRootStore(store);
 
-		((SemanticFileStore) store).setProvider(actProvider);
+			semanticStore.fs.putContentProvider(semanticStore.node, contentProviderID, actProvider);
+		}
+
+		semanticStore.setProvider(actProvider);
 
 		return actProvider;
 	}
 
 	public String getEffectiveContentProviderID() throws CoreException {
+		String contentProviderID = this.getContentProviderID();
+		if (contentProviderID != null) {
+			return contentProviderID;
+		}
+
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForRead(this.node);
 
-			if (this.getContentProviderID() != null) {
-				return this.getContentProviderID();
+			String resolvedProviderID = this.fs.getResolvedContentProviderID(this.node);
+			if (resolvedProviderID != null) {
+				return resolvedProviderID;
 			}
+		} finally {
+			this.fs.unlockForRead();
+		}
 
-			ContentProviderData effectiveProviderData = getEffectiveContentProviderInternal();
-
-			if (effectiveProviderData.provider instanceof ISemanticContentProviderFederation2) {
-				IPath thisPath = this.getPath();
+		try {
+			this.fs.lockForWrite(this.node);
 
-				return findFederatedContentProvider(thisPath, this.fs, this.node, effectiveProviderData).providerID;
+			if (this.getContentProviderID() != null) {
+				return this.getContentProviderID();
 			}
 
-			return effectiveProviderData.providerID;
+			return resolveEffectiveContentProvider().providerID;
 		} finally {
 			this.fs.unlockForWrite();
 		}
 	}
 
 	public ISemanticContentProvider getEffectiveContentProvider() throws CoreException {
+		ISemanticContentProvider knownProvider = getKnownContentProvider();
+		if (knownProvider != null) {
+			return knownProvider;
+		}
+
 		try {
-			this.fs.lockForWrite();
-			// TODO 0.1: check if we can use more fine grained locks here
+			this.fs.lockForWrite(this.node);
 			if (this.provider != null) {
 				return this.provider;
 			}
 
-			ContentProviderData effectiveProviderData = getEffectiveContentProviderInternal();
+			return resolveEffectiveContentProvider().provider;
+		} finally {
+			this.fs.unlockForWrite();
+		}
+	}
 
-			if (effectiveProviderData.provider instanceof ISemanticContentProviderFederation2) {
-				IPath thisPath = this.getPath();
+	/*
+	 * must be called with the write lock; the result is remembered so that
+	 * the next resolution for this node needs the read lock only
+	 */
+	private ContentProviderData resolveEffectiveContentProvider() throws CoreException {
+		ContentProviderData effectiveProviderData = getEffectiveContentProviderInternal();
 
-				return findFederatedContentProvider(thisPath, this.fs, this.node, effectiveProviderData).provider;
-			}
+		if (effectiveProviderData.provider instanceof ISemanticContentProviderFederation2) {
+			IPath thisPath = this.getPath();
+
+			effectiveProviderData = findFederatedContentProvider(thisPath, this.fs, this.node, effectiveProviderData);
+		}
+
+		this.fs.putResolvedContentProvider(this.node, effectiveProviderData.providerID, effectiveProviderData.provider);
 
-			return effectiveProviderData.provider;
+		return effectiveProviderData;
+	}
+
+	/*
+	 * returns the provider if it has already been created or resolved; the
+	 * resolution of a provider may change the tree and needs the write lock,
+	 * but looking up an existing instance needs the read lock only
+	 */
+	private ISemanticContentProvider getKnownContentProvider() {
+		if (this.provider != null) {
+			return this.provider;
+		}
+
+		this.checkAndJoinTreeIfAnotherEntryExists();
+
+		try {
+			this.fs.lockForRead(this.node);
+
+			String contentProviderID = this.node.getTemplateID();
+			if (contentProviderID == null) {
+				contentProviderID = this.node.getDynamicContentProviderID();
+			}
+			if (contentProviderID != null) {
+				return this.fs.getContentProvider(this.node, contentProviderID);
+			}
+			return this.fs.getResolvedContentProvider(this.node);
 		} finally {
-			this.fs.unlockForWrite();
+			this.fs.unlockForRead();
 		}
 	}
 
@@ -291,6 +358,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 				if (parent != null) {
 					parent.setDynamicContentProviderID(info.contentProviderID);
+					fs.invalidateContentProviderResolutions(parent);
 				} else {
 					String pathString = path.removeLastSegments(relativePathLength - info.rootNodePosition).toString();
 					parent = fs.getNodeByPath(pathString);
@@ -547,7 +615,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 		ISemanticFileStore result;
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -562,6 +630,9 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 			ResourceTreeNode newnode = createLocalChildNode(name, childPath, federatedContentProviderId);
 
 			result = this.fs.getStore(newnode);
+		} catch (CoreException ce) {
+			this.log.log(ce);
+			return EFS.getNullFileSystem().getStore(getPath().append(name));
 		} finally {
 			this.fs.unlockForWrite();
 		}
@@ -590,7 +661,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	@Override
 	public String getName() {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -603,7 +674,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	@Override
 	public IFileStore getParent() {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -628,7 +699,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		checkAccessible();
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			TreeNodeType type = this.node.getType();
 			if (type != TreeNodeType.FILE) {
 				throw new SemanticResourceException(SemanticResourceStatusCode.INVALID_RESOURCE_TYPE, getPath(),
@@ -663,7 +734,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		this.checkAndJoinTreeIfAnotherEntryExists();
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			TreeNodeType type = this.node.getType();
 			if (type != TreeNodeType.FILE && type != TreeNodeType.UNKNOWN) {
 				throw new SemanticResourceException(SemanticResourceStatusCode.INVALID_RESOURCE_TYPE, getPath(),
@@ -703,7 +774,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		OutputStream os = effectiveProvider.openOutputStream(this, actOptions, monitor);
 
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			boolean changeRequired = !this.node.isExists() || this.node.getType() != TreeNodeType.FILE;
 			if (changeRequired) {
@@ -726,7 +797,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	@Override
 	public URI toURI() {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			try {
 				return new URI(ISemanticFileSystem.SCHEME, null, null, -1, getPath().toString(), node.getQueryPart(), null);
 			} catch (URISyntaxException e) {
@@ -751,7 +822,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -831,13 +902,23 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		effectiveProvider.detachMovingStore(this, targetParent, targetName, monitor);
 
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node, ((SemanticFileStore) targetParent).node);
 
 			checkAccessible();
 			((SemanticFileStore) targetParent).checkAccessible();
 
+			SemanticURILocatorService uriLocator = this.fs.getURILocator();
+			if (uriLocator != null) {
+				uriLocator.removeSubtree(this.node, getPath());
+			}
+			this.fs.releaseContentProviders(this.node);
+
 			this.node.setParent(((SemanticFileStore) targetParent).node);
 			this.node.setName(targetName);
+
+			if (uriLocator != null) {
+				uriLocator.addSubtree(this.node, targetParent.getPath().append(targetName));
+			}
 		} finally {
 			this.fs.unlockForWrite();
 		}
@@ -1302,7 +1383,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			canBeDeleted = this.node.isExists();
 
 		} finally {
@@ -1353,7 +1434,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			canBeDeleted = this.node.isExists();
 
 		} finally {
@@ -1391,7 +1472,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			checkAccessible();
 
@@ -1426,7 +1507,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 		ResourceTreeNode child;
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			checkAccessible();
 
@@ -1434,8 +1515,8 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 			child = createChildNode(name, asFolder, contentProviderID);
 
-			HashMap<String, String> propsMap = new HashMap<String, String>();
 			if (properties != null && !properties.isEmpty()) {
+				HashMap<String, String> propsMap = Util.createPropertyMap(properties.size());
 				for (Map.Entry<QualifiedName, String> entry : properties.entrySet()) {
 					propsMap.put(Util.qualifiedNameToString(entry.getKey()), entry.getValue());
 				}
@@ -1469,7 +1550,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			checkAccessible();
 
@@ -1496,7 +1577,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			checkAccessible();
 
@@ -1513,17 +1594,13 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	public boolean hasResource(String name) {
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
-			EList<ResourceTreeNode> children = this.node.getChildren();
-			for (ResourceTreeNode resourceTreeNode : children) {
-				if (resourceTreeNode.getName().equals(name)) {
-					return resourceTreeNode.isExists();
-				}
-			}
-			return false;
+			ResourceTreeNode child = this.node.getChild(name);
+
+			return child != null && child.isExists();
 		} finally {
 			this.fs.unlockForRead();
 		}
@@ -1535,7 +1612,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 	public String getContentProviderID() {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -1570,7 +1647,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 	public boolean isExists() {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -1582,7 +1659,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 	public boolean isLocalOnly() {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -1594,11 +1671,13 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 	public void setLocalOnly(boolean isLocalOnly) {
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
 			this.node.setLocalOnly(isLocalOnly);
+		} catch (CoreException ce) {
+			this.log.log(ce);
 		} finally {
 			this.fs.unlockForWrite();
 		}
@@ -1612,16 +1691,14 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	 */
 	private SemanticFileStore findChild(String name) {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
-			EList<ResourceTreeNode> children = this.node.getChildren();
+			ResourceTreeNode child = this.node.getChild(name);
 
-			for (ResourceTreeNode resourceTreeNode : children) {
-				if (resourceTreeNode.getName().equals(name)) {
-					return (SemanticFileStore) this.fs.getStore(resourceTreeNode);
-				}
+			if (child != null) {
+				return (SemanticFileStore) this.fs.getStore(child);
 			}
 		} finally {
 			this.fs.unlockForRead();
@@ -1683,17 +1760,40 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	 */
 	private void checkChildExists(String name) throws CoreException {
 		// all callers have obtained a lock, so we don't lock here
-		EList<ResourceTreeNode> children = this.node.getChildren();
+		ResourceTreeNode child = this.node.getChild(name);
 
-		for (ResourceTreeNode resourceTreeNode : children) {
-			if (resourceTreeNode.getName().equals(name)) {
-				if (resourceTreeNode.isExists()) {
-					IPath newPath = getPath().append(name);
-					throw new SemanticResourceException(SemanticResourceStatusCode.RESOURCE_ALREADY_EXISTS, newPath, NLS.bind(
-							Messages.SemanticFileStore_ResourceWithPathExists_XMSG, newPath.toString()));
+		if (child == null) {
+			return;
+		}
+
+		boolean exists = child.isExists();
+
+		if (!exists) {
+			// the index only knows the first child with this name
+			for (ResourceTreeNode resourceTreeNode : this.node.getChildren()) {
+				if (name.equals(resourceTreeNode.getName()) && resourceTreeNode.isExists()) {
+					exists = true;
+					break;
 				}
 			}
 		}
+
+		if (exists) {
+			IPath newPath = getPath().append(name);
+			throw new SemanticResourceException(SemanticResourceStatusCode.RESOURCE_ALREADY_EXISTS, newPath, NLS.bind(
+					Messages.SemanticFileStore_ResourceWithPathExists_XMSG, newPath.toString()));
+		}
+	}
+
+	private void checkChildCanBeAdded(String name, Set<String> removed, Set<String> added) throws CoreException {
+		if (!added.add(name)) {
+			IPath newPath = getPath().append(name);
+			throw new SemanticResourceException(SemanticResourceStatusCode.RESOURCE_ALREADY_EXISTS, newPath, NLS.bind(
+					Messages.SemanticFileStore_ResourceWithPathExists_XMSG, newPath.toString()));
+		}
+		if (!removed.contains(name)) {
+			checkChildExists(name);
+		}
 	}
 
 	private static void cleanupNodeAndChildren(ResourceTreeNode node, IPath path) {
@@ -1736,7 +1836,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			// exist could be false if node was created, but no content was
 			// written yet
 			canBeEdited = this.node.isExists() && this.node.getType().equals(TreeNodeType.FILE);
@@ -1798,7 +1898,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			canBeSaved = this.node.isExists() && this.node.getType().equals(TreeNodeType.FILE);
 
 		} finally {
@@ -1834,7 +1934,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 	public IPath getPath() {
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
@@ -1858,21 +1958,96 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 		}
 
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			this.checkAccessible();
 
-			SemanticFileStore.cleanupNodeAndChildren(node, getPath());
+			IPath path = getPath();
+
+			if (this.fs.getURILocator() != null) {
+				this.fs.getURILocator().removeSubtree(this.node, path);
+			}
+			this.fs.releaseContentProviders(this.node);
+
+			SemanticFileStore.cleanupNodeAndChildren(node, path);
 
 			if (this.node instanceof TreeRoot) {
-				((TreeRoot) this.node).setParentDB(null);
+				this.fs.detachRoot((TreeRoot) this.node);
 			} else {
 				this.node.setParent(null);
 			}
 
 			this.fs.requestFlush(false);
+		} finally {
+			this.fs.unlockForWrite();
+		}
+	}
+
+	public void updateChildren(Collection<String> namesToRemove, Collection<String> folderNamesToAdd,
+			Map<String, Map<QualifiedName, String>> filesToAdd, IProgressMonitor monitor) throws CoreException {
 
-			this.fs.requestURILocatorRebuild();
+		if (SfsTraceLocation.CORE_VERBOSE.isActive()) {
+			SfsTraceLocation.getTrace().traceDumpStack(SfsTraceLocation.CORE_VERBOSE.getLocation());
+		}
+
+		if (SfsTraceLocation.CORE.isActive()) {
+
+			SfsTraceLocation.getTrace().trace(
+					SfsTraceLocation.CORE.getLocation(),
+					NLS.bind(Messages.SemanticFileStore_UpdateChildren_XMSG, new Object[] {getPath().toString(),
+							Integer.toString(namesToRemove.size()), Integer.toString(folderNamesToAdd.size() + filesToAdd.size())}));
+		}
+
+		try {
+			this.fs.lockForWrite(this.node);
+
+			checkAccessible();
+
+			// check before changing anything; a name must not be added twice
+			Set<String> removed = new HashSet<String>(namesToRemove);
+			Set<String> added = new HashSet<String>(folderNamesToAdd.size() + filesToAdd.size());
+			for (String name : folderNamesToAdd) {
+				checkChildCanBeAdded(name, removed, added);
+			}
+			for (String name : filesToAdd.keySet()) {
+				checkChildCanBeAdded(name, removed, added);
+			}
+
+			SemanticURILocatorService uriLocator = this.fs.getURILocator();
+			for (String name : namesToRemove) {
+				ResourceTreeNode child = this.node.getChild(name);
+				if (child != null && child.isExists()) {
+					IPath childPath = getPath().append(name);
+					if (uriLocator != null) {
+						uriLocator.removeSubtree(child, childPath);
+					}
+					this.fs.releaseContentProviders(child);
+					SemanticFileStore.cleanupNodeAndChildren(child, childPath);
+					child.setParent(null);
+				}
+			}
+
+			for (String name : folderNamesToAdd) {
+				createChildNode(name, true, null);
+			}
+
+			for (Map.Entry<String, Map<QualifiedName, String>> file : filesToAdd.entrySet()) {
+				ResourceTreeNode child = createChildNode(file.getKey(), false, null);
+
+				Map<QualifiedName, String> properties = file.getValue();
+				if (properties != null && !properties.isEmpty()) {
+					HashMap<String, String> propsMap = Util.createPropertyMap(properties.size());
+					for (Map.Entry<QualifiedName, String> entry : properties.entrySet()) {
+						propsMap.put(Util.qualifiedNameToString(entry.getKey()), entry.getValue());
+					}
+					child.setPersistentProperties(propsMap);
+				} else {
+					// we don't use an empty map, but null
+					child.setPersistentProperties(null);
+				}
+			}
+
+			this.fs.requestFlush(false);
 		} finally {
 			this.fs.unlockForWrite();
 		}
@@ -1887,7 +2062,7 @@ public class SemanticFileStore extends SemanticProperties implements ISemanticFi
 
 	public int getType() {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 
 			this.checkAndJoinTreeIfAnotherEntryExists();
 
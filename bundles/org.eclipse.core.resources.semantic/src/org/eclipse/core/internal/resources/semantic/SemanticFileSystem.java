@@ -13,13 +13,17 @@ package org.eclipse.core.internal.resources.semantic;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -30,7 +34,10 @@ import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.Sem
 import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBPackage;
 import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeNodeType;
 import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeRoot;
+import org.eclipse.core.internal.resources.semantic.persistence.SemanticDBJournal;
+import org.eclipse.core.internal.resources.semantic.persistence.SemanticDBSegments;
 import org.eclipse.core.internal.resources.semantic.util.ISemanticFileSystemLog;
+import org.eclipse.core.resources.semantic.ISemanticBatchOperation;
 import org.eclipse.core.resources.semantic.ISemanticFileSystem;
 import org.eclipse.core.resources.semantic.ISemanticURILocatorService;
 import org.eclipse.core.resources.semantic.SemanticResourceException;
@@ -41,8 +48,11 @@ import org.eclipse.core.resources.semantic.spi.ISemanticFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.ecore.EObject;
@@ -51,6 +61,7 @@ import org.eclipse.emf.ecore.resource.Resource.Diagnostic;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.osgi.util.NLS;
 
 /**
  * The Semantic File System.
@@ -61,19 +72,40 @@ import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
  */
 public class SemanticFileSystem extends FileSystem implements ISemanticFileSystem {
 
+	// the index of the roots; their children are stored in segment files
+	private static final String SNAPSHOT_FILENAME = "metadata.sdb"; //$NON-NLS-1$
+	private static final String SNAPSHOT_TEMP_FILENAME = "metadata.sdb.tmp"; //$NON-NLS-1$
+	// the XMI format of earlier versions which is migrated upon startup
 	private static final String METADATA_FILENAME = "metadata.xmi"; //$NON-NLS-1$
+	private static final String JOURNAL_FILENAME = "metadata.journal"; //$NON-NLS-1$
+	// the metadata snapshot is rewritten once the journal exceeds this size
+	private static final long JOURNAL_CHECKPOINT_SIZE = 4 * 1024 * 1024;
+	// the children of a root are unloaded after it has not been used for
+	// this time
+	private static final long SEGMENT_IDLE_TIMEOUT = 10 * 60 * 1000;
 	final static IPath EMPTY = new Path(""); //$NON-NLS-1$
 
-	private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
-	private final Lock readLock = this.rwl.readLock();
-	private final Lock writeLock = this.rwl.writeLock();
+	private final SemanticLockManager lockManager = new SemanticLockManager();
+	// guards the list of roots which is changed under the lock of the
+	// respective root only
+	private final Object rootsLock = new Object();
 	private final ISemanticFileSystemLog log;
+	private final SemanticContentProviderCache contentProviders = new SemanticContentProviderCache();
+	// the file stores are shared per node as long as they are referenced
+	private final WeakHashMap<ResourceTreeNode, WeakReference<SemanticFileStore>> stores = new WeakHashMap<ResourceTreeNode, WeakReference<SemanticFileStore>>();
 
 	private SemanticDB db;
 	Resource metadataResource;
-	private SemanticURILocatorService uriLocator;
-	private boolean isDelayedFlush = false;
-	private boolean needsFlush = false;
+	private SemanticDBJournal journal;
+	private SemanticDBSegments segments;
+	private final Job unloadJob;
+	private final SemanticFlushScheduler flushScheduler;
+	// set if the next flush must write a snapshot instead of the journal
+	private volatile boolean checkpointRequired = false;
+	private volatile SemanticURILocatorService uriLocator;
+	private volatile boolean needsFlush = false;
+	// set if a flush was requested while the requesting thread held a lock
+	private volatile boolean flushDeferred = false;
 
 	/**
 	 * No-argument constructor
@@ -82,7 +114,20 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 
 		this.log = new SemanticFileSystemLog();
 
+		this.unloadJob = new Job(Messages.SemanticFileSystem_UnloadJob_XGRP) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				unloadIdleRoots();
+				return Status.OK_STATUS;
+			}
+		};
+		this.unloadJob.setSystem(true);
+
+		this.flushScheduler = new SemanticFlushScheduler(this);
+
 		init();
+
+		SemanticResourcesPlugin.setFileSystem(this);
 	}
 
 	public String[] getRootNames() throws CoreException {
@@ -94,22 +139,24 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 
 		List<String> result = new ArrayList<String>();
 
-		try {
-			lockForRead();
-
+		synchronized (this.rootsLock) {
 			EList<TreeRoot> roots = this.db.getRoots();
 
 			for (TreeRoot treeRoot : roots) {
 				result.add(treeRoot.getName());
 			}
-		} finally {
-			unlockForRead();
 		}
 		return result.toArray(new String[0]);
 	}
 
 	/**
 	 * Requests a database update.
+	 * <p>
+	 * Unless forced, the update is performed in the background together with
+	 * other requests. If the current thread holds a lock, a forced update is
+	 * performed when the thread releases its outermost lock; failures are
+	 * logged in this case. If the current thread runs a batch, the update is
+	 * performed at the end of the batch.
 	 * 
 	 * @param force
 	 *            <code>true</code> for immediate update
@@ -119,11 +166,169 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 	public void requestFlush(boolean force) throws CoreException {
 		this.needsFlush = true;
 
-		if (!this.isDelayedFlush || force) {
+		if (this.journal != null && this.journal.isInBatch()) {
+			return;
+		}
+
+		if (force) {
+			if (this.lockManager.isLockedByCurrentThread()) {
+				this.flushDeferred = true;
+			} else {
+				this.flushScheduler.cancel();
+				saveSemanticDB();
+			}
+		} else {
+			this.flushScheduler.schedule();
+		}
+	}
+
+	public void flush() throws CoreException {
+		this.flushScheduler.cancel();
+		this.needsFlush = true;
+
+		if (this.lockManager.isLockedByCurrentThread()) {
+			// a checkpoint needs the exclusive lock; the journal makes the
+			// changes durable anyway unless recording failed
+			this.flushDeferred = true;
+			if (!this.journal.isCheckpointRequired()) {
+				flushJournal();
+			}
+		} else {
+			saveSemanticDB();
+		}
+	}
+
+	public void run(ISemanticBatchOperation operation, IProgressMonitor monitor) throws CoreException {
+
+		if (this.db == null) {
+			throw new SemanticResourceException(SemanticResourceStatusCode.SFS_DB_NOT_INITIALIZED, SemanticFileSystem.EMPTY,
+					Messages.SemanticFileSystem_NotInitialized_XMSG);
+		}
+
+		if (!this.journal.beginBatch()) {
+			// nested batches are part of the outermost batch
+			operation.run(monitor);
+			return;
+		}
+
+		boolean completed = false;
+		try {
+			operation.run(monitor);
+			completed = true;
+		} finally {
+			if (completed) {
+				endBatch();
+			} else {
+				// don't mask the failure of the operation
+				try {
+					endBatch();
+				} catch (CoreException e) {
+					this.log.log(e);
+				}
+			}
+		}
+	}
+
+	/*
+	 * records the nodes changed by the batch of the current thread once and
+	 * writes the records to the journal; snapshots are left to the background
+	 * flush
+	 */
+	private void endBatch() throws CoreException {
+		Set<String> rootNames = this.journal.getBatchRoots();
+
+		if (SfsTraceLocation.CORE_DB.isActive()) {
+			SfsTraceLocation.getTrace().trace(SfsTraceLocation.CORE_DB.getLocation(), "Batch changed roots " + rootNames); //$NON-NLS-1$
+		}
+
+		if (rootNames.isEmpty()) {
+			this.journal.endBatch(Collections.<String, TreeRoot> emptyMap());
+			if (this.needsFlush) {
+				requestFlush(false);
+			}
+			return;
+		}
+
+		this.lockManager.lockRoots(rootNames.toArray(new String[rootNames.size()]), true);
+		try {
+			Map<String, TreeRoot> roots = new HashMap<String, TreeRoot>();
+			for (String rootName : rootNames) {
+				roots.put(rootName, findRoot(rootName));
+			}
+			// a snapshot written during the batch may contain only part of
+			// the changes; the records are replayed on top of it
+			this.journal.endBatch(roots);
+		} finally {
+			unlock();
+		}
+
+		if (this.journal.isCheckpointRequired()) {
+			// the changes could not be recorded
+			requestFlush(true);
+			return;
+		}
+
+		flushJournal();
+		if (this.journal.getSize() > SemanticFileSystem.JOURNAL_CHECKPOINT_SIZE) {
+			requestFlush(false);
+		}
+	}
+
+	/**
+	 * Performs a requested update; called by the background flush
+	 * 
+	 * @throws CoreException
+	 *             in case of failure
+	 */
+	void flushPending() throws CoreException {
+		saveSemanticDB();
+	}
+
+	/**
+	 * Writes pending changes and stops background work; called when the
+	 * bundle is stopped
+	 */
+	void shutdown() {
+		this.unloadJob.cancel();
+		this.flushScheduler.shutdown();
+
+		if (this.db == null) {
+			return;
+		}
+		// writing a checkpoint avoids replaying the journal upon next startup
+		this.checkpointRequired = true;
+		this.needsFlush = true;
+		try {
 			saveSemanticDB();
+		} catch (CoreException e) {
+			this.log.log(e);
 		}
 	}
 
+	/**
+	 * @return the number of database updates (journal flushes and snapshots)
+	 *         since startup
+	 */
+	public long getFlushCount() {
+		return this.flushScheduler.getFlushCount();
+	}
+
+	/**
+	 * @return the number of bytes written by all database updates since
+	 *         startup
+	 */
+	public long getBytesWritten() {
+		return this.flushScheduler.getBytesWritten();
+	}
+
+	/**
+	 * @return the time all database updates since startup spent under the
+	 *         exclusive lock in milliseconds
+	 */
+	public long getTimeUnderLock() {
+		return this.flushScheduler.getTimeUnderLock();
+	}
+
 	@Override
 	public IFileStore getStore(URI uri) {
 		if (ISemanticFileSystem.SCHEME.equals(uri.getScheme())) {
@@ -148,21 +353,19 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		ISemanticFileStore store;
 		// we do never return the virtual root node ("semanticfs:/")
 		if (path.segmentCount() > 0) {
+			// only a query may create a root
+			boolean mayCreate = queryString != null;
 			try {
-				lockForWrite();
-
-				EList<TreeRoot> roots = this.db.getRoots();
+				if (mayCreate) {
+					lockForWrite(path.segment(0));
+				} else {
+					lockForRead(path.segment(0));
+				}
 
-				TreeRoot treeRoot = null;
+				TreeRoot treeRoot = findRoot(path.segment(0));
 
-				for (TreeRoot root : roots) {
-					if (path.segment(0).equals(root.getName())) {
-						if (path.segmentCount() == 1) {
-							return getStore(root);
-						}
-						treeRoot = root;
-						break;
-					}
+				if (treeRoot != null && path.segmentCount() == 1) {
+					return getStore(treeRoot);
 				}
 
 				if (treeRoot == null) {
@@ -174,8 +377,15 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 				}
 
 				store = (ISemanticFileStore) getFileStoreRecursive(path, treeRoot, queryString);
+			} catch (CoreException e) {
+				this.log.log(e);
+				return EFS.getNullFileSystem().getStore(path);
 			} finally {
-				unlockForWrite();
+				if (mayCreate) {
+					unlockForWrite();
+				} else {
+					unlockForRead();
+				}
 			}
 
 			if (!store.isExists() && queryString != null) {
@@ -224,21 +434,13 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		boolean ready = true;
 
 		for (int i = 1; i < segments.length; i++) {
-			String name = segments[i];
-			EList<ResourceTreeNode> children = currentNode.getChildren();
-			boolean found = false;
-
-			for (ResourceTreeNode resourceTreeNode : children) {
-				if (resourceTreeNode.getName().equals(name)) {
-					currentNode = resourceTreeNode;
-					found = true;
-					break;
-				}
-			}
-			if (!found) {
+			ResourceTreeNode child = currentNode.getChild(segments[i]);
+
+			if (child == null) {
 				ready = false;
 				break;
 			}
+			currentNode = child;
 		}
 		if (ready) {
 			return getStore(currentNode);
@@ -257,7 +459,7 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 
 	ResourceTreeNode getParentNode(ResourceTreeNode childNode) {
 		try {
-			this.lockForRead();
+			this.lockForRead(childNode);
 
 			if (childNode.isExists()) {
 				return childNode.getParent();
@@ -282,48 +484,38 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 
 		if (path.segmentCount() > 0) {
 			try {
-				lockForRead();
+				lockForRead(path.segment(0));
 
 				if (this.db != null) {
-					EList<TreeRoot> roots = this.db.getRoots();
+					TreeRoot treeRoot = findRoot(path.segment(0));
 
-					for (TreeRoot treeRoot : roots) {
-						if (path.segment(0).equals(treeRoot.getName())) {
-							nodes.add(treeRoot);
+					if (treeRoot != null) {
+						nodes.add(treeRoot);
 
-							if (path.segmentCount() == 1) {
-								return nodes;
-							}
+						if (path.segmentCount() == 1) {
+							return nodes;
+						}
 
-							ResourceTreeNode currentNode = treeRoot;
-							boolean withinExistingTree = true;
-
-							for (int i = 1; i < path.segmentCount(); i++) {
-								String name = path.segment(i);
-
-								if (withinExistingTree) {
-									EList<ResourceTreeNode> children = currentNode.getChildren();
-									boolean found = false;
-									for (ResourceTreeNode resourceTreeNode : children) {
-										if (resourceTreeNode.getName().equals(name)) {
-											currentNode = resourceTreeNode;
-											found = true;
-											break;
-										}
-									}
-
-									if (!found) {
-										currentNode = createNonExistingNode(path.removeLastSegments(path.segmentCount() - i - 1));
-										withinExistingTree = false;
-									}
+						ResourceTreeNode currentNode = treeRoot;
+						boolean withinExistingTree = true;
+
+						for (int i = 1; i < path.segmentCount(); i++) {
+							if (withinExistingTree) {
+								ResourceTreeNode child = currentNode.getChild(path.segment(i));
+
+								if (child != null) {
+									currentNode = child;
 								} else {
 									currentNode = createNonExistingNode(path.removeLastSegments(path.segmentCount() - i - 1));
+									withinExistingTree = false;
 								}
-
-								nodes.add(currentNode);
+							} else {
+								currentNode = createNonExistingNode(path.removeLastSegments(path.segmentCount() - i - 1));
 							}
-							return nodes;
+
+							nodes.add(currentNode);
 						}
+						return nodes;
 					}
 				}
 
@@ -347,43 +539,22 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		// we do never return the virtual root node ("semanticfs:/")
 		if (path.segmentCount() > 0) {
 			try {
-				lockForRead();
+				lockForRead(path.segment(0));
 
 				if (this.db != null) {
-					EList<TreeRoot> roots = this.db.getRoots();
+					TreeRoot treeRoot = findRoot(path.segment(0));
 
-					for (TreeRoot treeRoot : roots) {
-						if (path.segment(0).equals(treeRoot.getName())) {
-							if (path.segmentCount() == 1) {
-								return treeRoot;
-							}
+					if (treeRoot != null) {
+						ResourceTreeNode currentNode = treeRoot;
 
-							String[] segments = path.segments();
-							ResourceTreeNode currentNode = treeRoot;
-							boolean ready = true;
-
-							for (int i = 1; i < segments.length; i++) {
-								String name = segments[i];
-								EList<ResourceTreeNode> children = currentNode.getChildren();
-								boolean found = false;
-
-								for (ResourceTreeNode resourceTreeNode : children) {
-									if (resourceTreeNode.getName().equals(name)) {
-										currentNode = resourceTreeNode;
-										found = true;
-										break;
-									}
-								}
-								if (!found) {
-									ready = false;
-									break;
-								}
-							}
-							if (ready) {
-								return currentNode;
+						for (int i = 1; i < path.segmentCount(); i++) {
+							currentNode = currentNode.getChild(path.segment(i));
+
+							if (currentNode == null) {
+								return createNonExistingNode(path);
 							}
-							return createNonExistingNode(path);
 						}
+						return currentNode;
 					}
 				}
 			} finally {
@@ -436,6 +607,9 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 			}
 
 			actNode.setTemplateID(federatedContentProviderId);
+			if (federatedContentProviderId != null) {
+				this.invalidateContentProviderResolutions(actNode);
+			}
 
 		}
 
@@ -462,7 +636,7 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 	void switchToExists(ResourceTreeNode node, ResourceTreeNode parent) {
 		if (!node.isExists()) {
 			if (node instanceof TreeRoot) {
-				((TreeRoot) node).setParentDB(this.db);
+				attachRoot((TreeRoot) node);
 			} else {
 
 				if (parent != null) {
@@ -490,7 +664,7 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 
 	public IPath getPathForNode(ResourceTreeNode node) {
 		try {
-			lockForRead();
+			lockForRead(node);
 			if (node.isExists()) {
 				StringBuilder sb = new StringBuilder(50);
 				sb.append('/');
@@ -513,8 +687,25 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		}
 	}
 
+	/**
+	 * Returns the file store of a node; as long as a store is referenced, the
+	 * same instance is returned for the node, so that the content provider it
+	 * has resolved is reused
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the store
+	 */
 	protected ISemanticFileStore getStore(ResourceTreeNode node) {
-		return new SemanticFileStore(this, node);
+		synchronized (this.stores) {
+			WeakReference<SemanticFileStore> reference = this.stores.get(node);
+			SemanticFileStore store = reference != null ? reference.get() : null;
+			if (store == null) {
+				store = new SemanticFileStore(this, node);
+				this.stores.put(node, new WeakReference<SemanticFileStore>(store));
+			}
+			return store;
+		}
 	}
 
 	private void init() {
@@ -522,19 +713,45 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		File metadataFolder = SemanticResourcesPlugin.getCacheLocation().toFile();
 		metadataFolder.mkdirs();
 
-		File metadataFile = new File(metadataFolder, SemanticFileSystem.METADATA_FILENAME);
+		File snapshotFile = new File(metadataFolder, SemanticFileSystem.SNAPSHOT_FILENAME);
+		File tempFile = new File(metadataFolder, SemanticFileSystem.SNAPSHOT_TEMP_FILENAME);
 
-		String metadataLocation = metadataFile.getAbsolutePath();
+		if (tempFile.exists()) {
+			if (!snapshotFile.exists()) {
+				// the last checkpoint was interrupted after the old snapshot was
+				// deleted; the new snapshot is complete
+				tempFile.renameTo(snapshotFile);
+			} else {
+				tempFile.delete();
+			}
+		}
+
+		this.journal = new SemanticDBJournal(new File(metadataFolder, SemanticFileSystem.JOURNAL_FILENAME), this.log);
+		this.segments = new SemanticDBSegments(snapshotFile, this.journal);
 
-		if (!metadataFile.exists()) {
-			initSemanticDB(metadataLocation);
+		File xmiFile = new File(metadataFolder, SemanticFileSystem.METADATA_FILENAME);
 
+		if (snapshotFile.exists()) {
+			loadSemanticDB(snapshotFile, false);
+		} else if (xmiFile.exists()) {
+			loadSemanticDB(xmiFile, true);
 		} else {
-			loadSemanticDB(metadataLocation);
+			initSemanticDB(snapshotFile.getAbsolutePath());
 		}
 	}
 
-	private void loadSemanticDB(String metadataLocation) {
+	private ResourceSet createResourceSet() {
+		ResourceSet resourceset = new ResourceSetImpl();
+
+		// Register the appropriate resource factory to handle all file
+		// extensions that would cover XMI as well.
+		resourceset.getResourceFactoryRegistry().getExtensionToFactoryMap().put(Resource.Factory.Registry.DEFAULT_EXTENSION,
+				new XMIResourceFactoryImpl());
+
+		return resourceset;
+	}
+
+	private void loadSemanticDB(File metadataFile, boolean isXMI) {
 		try {
 			SemanticResourceDBPackage pkg = SemanticResourceDBPackage.eINSTANCE;
 			pkg.eClass();
@@ -542,36 +759,67 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 			try {
 				this.lockForWrite();
 
-				ResourceSet resourceset = new ResourceSetImpl();
+				org.eclipse.emf.common.util.URI uri = org.eclipse.emf.common.util.URI.createFileURI(metadataFile.getAbsolutePath());
 
-				org.eclipse.emf.common.util.URI uri = org.eclipse.emf.common.util.URI.createFileURI(metadataLocation);
+				this.metadataResource = createResourceSet().createResource(uri);
 
-				// Register the appropriate resource factory to handle all file
-				// extensions that would cover XMI as well.
-				resourceset.getResourceFactoryRegistry().getExtensionToFactoryMap().put(Resource.Factory.Registry.DEFAULT_EXTENSION,
-						new XMIResourceFactoryImpl());
+				if (isXMI) {
+					this.metadataResource.load(null);
 
-				this.metadataResource = resourceset.createResource(uri);
+					EList<EObject> contents = this.metadataResource.getContents();
 
-				this.metadataResource.load(null);
-
-				EList<EObject> contents = this.metadataResource.getContents();
+					for (EObject eObject : contents) {
+						if (eObject instanceof SemanticDB) {
+							this.db = (SemanticDB) eObject;
+							break;
+						}
+					}
+					// migrate to the binary snapshot
+					this.checkpointRequired = true;
+				} else {
+					// the children of the roots are loaded on demand
+					this.db = this.segments.load();
+					this.metadataResource.getContents().add(this.db);
+				}
 
-				for (EObject eObject : contents) {
-					if (eObject instanceof SemanticDB) {
-						this.db = (SemanticDB) eObject;
+				if (this.db != null) {
+					try {
+						// fold the replayed changes into the snapshot
+						if (this.journal.replay(this.db, this.segments) > 0) {
+							this.checkpointRequired = true;
+						}
+					} catch (IOException e) {
+						// the snapshot is still consistent; drop the journal
+						this.log.log(new SemanticResourceException(SemanticResourceStatusCode.SFS_INITIALIZATION_ERROR,
+								SemanticFileSystem.EMPTY, Messages.SemanticFileSystem_SFSInitError_XMSG, e));
+						this.checkpointRequired = true;
+					}
+					// the binary snapshot does not contain non-existing nodes;
+					// only the loaded roots need to be checked
+					if (this.checkpointRequired) {
 						this.migrateSemanticDB();
-						break;
+					}
+					if (this.db != null) {
+						this.journal.attach(this.db);
 					}
 				}
 			} finally {
 				this.unlockForWrite();
 			}
-			this.needsFlush = false;
+			this.needsFlush = this.checkpointRequired && this.db != null;
+			if (this.needsFlush) {
+				try {
+					saveSemanticDB();
+				} catch (CoreException e) {
+					this.log.log(e);
+				}
+			}
 		} catch (IOException e) {
-			for (Diagnostic diagnostic : this.metadataResource.getErrors()) {
-				this.log.log(new SemanticResourceException(SemanticResourceStatusCode.SFS_INITIALIZATION_ERROR, SemanticFileSystem.EMPTY,
-						diagnostic.getMessage()));
+			if (this.metadataResource != null) {
+				for (Diagnostic diagnostic : this.metadataResource.getErrors()) {
+					this.log.log(new SemanticResourceException(SemanticResourceStatusCode.SFS_INITIALIZATION_ERROR, SemanticFileSystem.EMPTY,
+							diagnostic.getMessage()));
+				}
 			}
 			this.log.log(new SemanticResourceException(SemanticResourceStatusCode.SFS_INITIALIZATION_ERROR, SemanticFileSystem.EMPTY,
 					Messages.SemanticFileSystem_SFSInitError_XMSG, e));
@@ -619,16 +867,19 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 	private void initSemanticDB(String metadataLocation) {
 		try {
 			this.lockForWrite();
-			ResourceSet resourceset = new ResourceSetImpl();
 
 			org.eclipse.emf.common.util.URI uri = org.eclipse.emf.common.util.URI.createFileURI(metadataLocation);
 
-			this.metadataResource = resourceset.createResource(uri);
+			this.metadataResource = createResourceSet().createResource(uri);
 
 			this.db = SemanticResourceDBFactory.eINSTANCE.createSemanticDB();
 
 			this.metadataResource.getContents().add(this.db);
 
+			this.journal.attach(this.db);
+
+			// a journal left over without snapshot is outdated
+			this.checkpointRequired = true;
 			this.needsFlush = true;
 		} finally {
 			this.unlockForWrite();
@@ -664,7 +915,7 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 			if (parser.getShouldCreate()) {
 				root.setExists(true);
 				root.setPath(null);
-				root.setParentDB(this.db);
+				attachRoot(root);
 			}
 		}
 		return root;
@@ -682,12 +933,13 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 				if (SfsTraceLocation.CORE_DB.isActive()) {
 					SfsTraceLocation.getTrace().traceEntry(SfsTraceLocation.CORE_DB.getLocation());
 				}
-				try {
-					this.lockForWrite();
-					this.metadataResource.save(null);
+				if (this.checkpointRequired || this.journal.isCheckpointRequired()
+						|| this.journal.getSize() > SemanticFileSystem.JOURNAL_CHECKPOINT_SIZE) {
+					writeCheckpoint();
+				} else {
 					this.needsFlush = false;
-				} finally {
-					this.unlockForWrite();
+					this.flushDeferred = false;
+					flushJournal();
 				}
 			}
 		} catch (IOException e) {
@@ -698,20 +950,455 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		}
 	}
 
-	protected void lockForRead() {
-		this.readLock.lock();
+	/**
+	 * Writes the recorded changes to the journal
+	 * <p>
+	 * This does not need the database lock since the changes have already
+	 * been recorded.
+	 * 
+	 * @throws CoreException
+	 *             in case of failure
+	 */
+	private void flushJournal() throws CoreException {
+		try {
+			long bytes = this.journal.flush();
+			if (bytes > 0) {
+				this.flushScheduler.flushed(bytes, 0);
+			}
+		} catch (IOException e) {
+			this.needsFlush = true;
+			throw new SemanticResourceException(SemanticResourceStatusCode.SFS_ERROR_WRITING_METADATA, SemanticFileSystem.EMPTY,
+					Messages.SemanticFileSystem_SFSUpdateError_XMSG, e);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the database and resets the journal
+	 * <p>
+	 * The snapshot is written to a temporary file first which then replaces
+	 * the old snapshot, so that there is a complete snapshot at any time.
+	 * 
+	 * @throws IOException
+	 *             on write failure
+	 */
+	private void writeCheckpoint() throws IOException {
+		long bytes = 0;
+		long lockStart = 0;
+		try {
+			this.lockForWrite();
+			lockStart = System.nanoTime();
+			// another thread may have saved in the meantime
+			if (!this.needsFlush) {
+				return;
+			}
+			this.needsFlush = false;
+			this.flushDeferred = false;
+
+			File metadataFile = new File(this.getPathToDb());
+
+			// only the changed roots are written
+			bytes = this.segments.write(this.db, this.journal.getChangedRoots());
+
+			// the journal is only reset after the snapshot is in place;
+			// replaying it on the new snapshot would do no harm
+			this.journal.reset();
+			this.checkpointRequired = false;
+
+			File xmiFile = new File(metadataFile.getParentFile(), SemanticFileSystem.METADATA_FILENAME);
+			if (xmiFile.exists()) {
+				// migrated to the binary snapshot
+				xmiFile.delete();
+			}
+		} catch (IOException e) {
+			this.needsFlush = true;
+			throw e;
+		} finally {
+			long lockNanos = System.nanoTime() - lockStart;
+			this.unlockForWrite();
+			if (bytes > 0) {
+				this.flushScheduler.flushed(bytes, lockNanos);
+			}
+		}
+	}
+
+	/**
+	 * Acquires shared access to the subtree containing the given node
+	 * 
+	 * @param node
+	 *            the node
+	 */
+	protected void lockForRead(ResourceTreeNode node) {
+		lockNodes(new ResourceTreeNode[] {node}, false);
+	}
+
+	/**
+	 * Acquires shared access to the subtree of the given root
+	 * 
+	 * @param rootName
+	 *            the root name
+	 */
+	protected void lockForRead(String rootName) {
+		this.lockManager.lockRoot(rootName, false);
+		ensureLoaded(rootName);
 	}
 
 	protected void unlockForRead() {
-		this.readLock.unlock();
+		unlock();
 	}
 
+	/**
+	 * Acquires exclusive access to the subtree containing the given node
+	 * 
+	 * @param node
+	 *            the node
+	 * @throws CoreException
+	 *             if the subtree must not be changed; the lock is held anyway
+	 *             and must be released with {@link #unlockForWrite()}
+	 */
+	protected void lockForWrite(ResourceTreeNode node) throws CoreException {
+		checkNotBroken(lockNodes(new ResourceTreeNode[] {node}, true));
+	}
+
+	/**
+	 * Acquires exclusive access to the subtrees containing the given nodes
+	 * 
+	 * @param node
+	 *            the first node
+	 * @param otherNode
+	 *            the second node
+	 * @throws CoreException
+	 *             if a subtree must not be changed; the lock is held anyway
+	 *             and must be released with {@link #unlockForWrite()}
+	 */
+	protected void lockForWrite(ResourceTreeNode node, ResourceTreeNode otherNode) throws CoreException {
+		checkNotBroken(lockNodes(new ResourceTreeNode[] {node, otherNode}, true));
+	}
+
+	/**
+	 * Acquires exclusive access to the subtree of the given root
+	 * 
+	 * @param rootName
+	 *            the root name
+	 * @throws CoreException
+	 *             if the subtree must not be changed; the lock is held anyway
+	 *             and must be released with {@link #unlockForWrite()}
+	 */
+	protected void lockForWrite(String rootName) throws CoreException {
+		this.lockManager.lockRoot(rootName, true);
+		ensureLoaded(rootName);
+		checkNotBroken(new String[] {rootName});
+	}
+
+	/**
+	 * Acquires exclusive access to the whole database; if the current thread
+	 * holds a lock on a subtree, it waits until all other threads holding
+	 * locks have released them or wait for a lock themselves
+	 */
 	protected void lockForWrite() {
-		this.writeLock.lock();
+		this.lockManager.lockExclusive();
 	}
 
 	protected void unlockForWrite() {
-		this.writeLock.unlock();
+		unlock();
+	}
+
+	private String[] lockNodes(ResourceTreeNode[] nodes, boolean write) {
+		String[] rootNames = new String[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			rootNames[i] = getRootName(nodes[i]);
+		}
+
+		while (true) {
+			this.lockManager.lockRoots(rootNames, write);
+
+			// a node may have been moved to another root before we got the
+			// lock; once we hold the lock, it can't be moved anymore
+			boolean rootsChanged = false;
+			for (int i = 0; i < nodes.length; i++) {
+				String actualRootName = getRootName(nodes[i]);
+				if (!actualRootName.equals(rootNames[i])) {
+					rootNames[i] = actualRootName;
+					rootsChanged = true;
+				}
+			}
+
+			if (!rootsChanged) {
+				for (String rootName : rootNames) {
+					ensureLoaded(rootName);
+				}
+				return rootNames;
+			}
+			this.lockManager.unlock();
+		}
+	}
+
+	/**
+	 * Loads the children of a root if necessary; the caller must hold the
+	 * lock of the root
+	 * 
+	 * @param rootName
+	 *            the root name
+	 */
+	private void ensureLoaded(String rootName) {
+		if (this.db == null) {
+			return;
+		}
+		TreeRoot root = findRoot(rootName);
+		if (root == null) {
+			return;
+		}
+		try {
+			if (this.segments.ensureLoaded(root)) {
+				if (SfsTraceLocation.CORE_DB.isActive()) {
+					SfsTraceLocation.getTrace().trace(SfsTraceLocation.CORE_DB.getLocation(), "Loaded metadata of " + rootName); //$NON-NLS-1$
+				}
+				this.unloadJob.schedule(SemanticFileSystem.SEGMENT_IDLE_TIMEOUT);
+			}
+		} catch (IOException e) {
+			this.log.log(new SemanticResourceException(SemanticResourceStatusCode.SFS_INITIALIZATION_ERROR, new Path(rootName).makeAbsolute(),
+					NLS.bind(Messages.SemanticFileSystem_SegmentLoadError_XMSG, rootName), e));
+		}
+	}
+
+	/**
+	 * Changes of a root whose metadata could not be loaded would not be
+	 * persisted, so they are refused; the caller must hold the lock of the
+	 * roots
+	 * 
+	 * @param rootNames
+	 *            the root names
+	 * @throws CoreException
+	 *             if a root is broken
+	 */
+	private void checkNotBroken(String[] rootNames) throws CoreException {
+		if (this.db == null) {
+			return;
+		}
+		for (String rootName : rootNames) {
+			TreeRoot root = findRoot(rootName);
+			if (root != null && this.segments.isBroken(root)) {
+				throw new SemanticResourceException(SemanticResourceStatusCode.SFS_INITIALIZATION_ERROR, new Path(rootName).makeAbsolute(),
+						NLS.bind(Messages.SemanticFileSystem_SegmentBroken_XMSG, rootName));
+			}
+		}
+	}
+
+	/**
+	 * Loads the children of all roots; the caller must hold the exclusive
+	 * lock
+	 */
+	void ensureAllLoaded() {
+		if (this.db == null) {
+			return;
+		}
+		for (TreeRoot root : this.db.getRoots()) {
+			ensureLoaded(root.getName());
+		}
+	}
+
+	/**
+	 * Unloads the children of roots that have not been used for a while
+	 */
+	void unloadIdleRoots() {
+		if (this.db == null) {
+			return;
+		}
+
+		long idleSince = System.currentTimeMillis() - SemanticFileSystem.SEGMENT_IDLE_TIMEOUT;
+		boolean checkpointNeeded = false;
+
+		for (TreeRoot root : this.segments.getIdleRoots(this.db, idleSince)) {
+			String rootName = root.getName();
+			if (this.journal.isRootChanged(rootName)) {
+				// the segment must be written before the root can be unloaded
+				checkpointNeeded = true;
+				continue;
+			}
+
+			// don't use lockForWrite(String) which would count as use
+			this.lockManager.lockRoot(rootName, true);
+			try {
+				if (root.getParentDB() == this.db && this.segments.unload(root, idleSince)) {
+					this.contentProviders.removeRoot(rootName);
+					if (SfsTraceLocation.CORE_DB.isActive()) {
+						SfsTraceLocation.getTrace().trace(SfsTraceLocation.CORE_DB.getLocation(), "Unloaded metadata of " + rootName); //$NON-NLS-1$
+					}
+				}
+			} finally {
+				unlock();
+			}
+		}
+
+		if (checkpointNeeded) {
+			this.checkpointRequired = true;
+			this.needsFlush = true;
+			try {
+				saveSemanticDB();
+			} catch (CoreException e) {
+				this.log.log(e);
+			}
+		}
+
+		if (this.segments.isAnyLoaded()) {
+			this.unloadJob.schedule(SemanticFileSystem.SEGMENT_IDLE_TIMEOUT);
+		}
+	}
+
+	private void unlock() {
+		if (this.lockManager.unlock() && this.flushDeferred) {
+			try {
+				saveSemanticDB();
+			} catch (CoreException e) {
+				this.log.log(e);
+			}
+		}
+	}
+
+	private static String getRootName(ResourceTreeNode node) {
+		if (!node.isExists() && node.getPath() != null) {
+			String rootName = new Path(node.getPath()).segment(0);
+			return rootName != null ? rootName : ""; //$NON-NLS-1$
+		}
+
+		ResourceTreeNode root = node;
+		ResourceTreeNode parent = root.getParent();
+		while (parent != null) {
+			root = parent;
+			parent = root.getParent();
+		}
+		return root.getName() != null ? root.getName() : ""; //$NON-NLS-1$
+	}
+
+	private TreeRoot findRoot(String rootName) {
+		synchronized (this.rootsLock) {
+			return this.db.getRoot(rootName);
+		}
+	}
+
+	private void attachRoot(TreeRoot root) {
+		synchronized (this.rootsLock) {
+			root.setParentDB(this.db);
+		}
+
+		if (this.uriLocator != null) {
+			this.uriLocator.addSubtree(root, new Path("/" + root.getName())); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Removes a root from the database; the caller must hold the write lock
+	 * of the root
+	 * 
+	 * @param root
+	 *            the root
+	 */
+	void detachRoot(TreeRoot root) {
+		synchronized (this.rootsLock) {
+			root.setParentDB(null);
+		}
+		this.contentProviders.removeRoot(root.getName());
+	}
+
+	/**
+	 * Returns the content provider instance created for a content provider
+	 * root node
+	 * 
+	 * @param node
+	 *            the content provider root node
+	 * @param contentProviderID
+	 *            the content provider ID of the node
+	 * @return the instance, or <code>null</code> if a new instance must be
+	 *         created
+	 */
+	ISemanticContentProvider getContentProvider(ResourceTreeNode node, String contentProviderID) {
+		if (!node.isExists()) {
+			return null;
+		}
+		return this.contentProviders.get(getRootName(node), node, contentProviderID);
+	}
+
+	/**
+	 * Remembers the content provider instance of a content provider root node;
+	 * instances of nodes that do not exist are not kept
+	 * 
+	 * @param node
+	 *            the content provider root node
+	 * @param contentProviderID
+	 *            the content provider ID of the node
+	 * @param provider
+	 *            the instance
+	 */
+	void putContentProvider(ResourceTreeNode node, String contentProviderID, ISemanticContentProvider provider) {
+		if (node.isExists()) {
+			this.contentProviders.put(getRootName(node), node, contentProviderID, provider);
+		}
+	}
+
+	/**
+	 * Drops the content provider instances of a subtree; must be called with
+	 * the write lock before the subtree is removed or moved
+	 * 
+	 * @param node
+	 *            the root of the subtree
+	 */
+	void releaseContentProviders(ResourceTreeNode node) {
+		this.contentProviders.removeSubtree(getRootName(node), node);
+	}
+
+	/**
+	 * Returns the effective content provider that was resolved for a node
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the instance, or <code>null</code> if it must be resolved
+	 */
+	ISemanticContentProvider getResolvedContentProvider(ResourceTreeNode node) {
+		if (!node.isExists()) {
+			return null;
+		}
+		return this.contentProviders.getResolvedProvider(getRootName(node), node);
+	}
+
+	/**
+	 * Returns the effective content provider ID that was resolved for a node
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the ID, or <code>null</code> if it must be resolved
+	 */
+	String getResolvedContentProviderID(ResourceTreeNode node) {
+		if (!node.isExists()) {
+			return null;
+		}
+		return this.contentProviders.getResolvedProviderID(getRootName(node), node);
+	}
+
+	/**
+	 * Remembers the effective content provider resolved for a node; the
+	 * resolutions of nodes that do not exist are not kept
+	 * 
+	 * @param node
+	 *            the node
+	 * @param contentProviderID
+	 *            the effective content provider ID of the node
+	 * @param provider
+	 *            the effective content provider of the node
+	 */
+	void putResolvedContentProvider(ResourceTreeNode node, String contentProviderID, ISemanticContentProvider provider) {
+		if (node.isExists()) {
+			this.contentProviders.putResolved(getRootName(node), node, contentProviderID, provider);
+		}
+	}
+
+	/**
+	 * Drops the resolved content providers of the tree root of a node; must be
+	 * called with the write lock when a content provider ID of the node changes
+	 * 
+	 * @param node
+	 *            the node
+	 */
+	void invalidateContentProviderResolutions(ResourceTreeNode node) {
+		this.contentProviders.removeResolutions(getRootName(node));
 	}
 
 	public String getPathToDb() {
@@ -719,7 +1406,7 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		File metadataFolder = SemanticResourcesPlugin.getCacheLocation().toFile();
 		metadataFolder.mkdirs();
 
-		File metadataFile = new File(metadataFolder, SemanticFileSystem.METADATA_FILENAME);
+		File metadataFile = new File(metadataFolder, SemanticFileSystem.SNAPSHOT_FILENAME);
 
 		String metadataLocation = metadataFile.getAbsolutePath();
 
@@ -730,10 +1417,21 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		return this.log;
 	}
 
+	/**
+	 * Maps remote URIs to the paths of the resources carrying them.
+	 * <p>
+	 * The mapping is built once and then updated in place whenever a remote URI
+	 * is set or a subtree is removed, moved, or attached. The path arrays are
+	 * replaced on every change, so lookups need no lock.
+	 */
 	static final class SemanticURILocatorService implements ISemanticURILocatorService {
-		private HashMap<String, ArrayList<IPath>> uri2pathMapping = new HashMap<String, ArrayList<IPath>>();
+		private static final IPath[] NO_PATHS = new IPath[0];
+
+		// the mappings of the roots that have been indexed; a root is indexed
+		// under its own lock when it is looked up for the first time, and its
+		// mapping stays valid when the root is unloaded
+		private volatile ConcurrentHashMap<String, ConcurrentHashMap<String, IPath[]>> mappings = new ConcurrentHashMap<String, ConcurrentHashMap<String, IPath[]>>();
 		final SemanticFileSystem fs;
-		boolean needsRebuild;
 
 		/**
 		 * @param fs
@@ -747,101 +1445,200 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 		 * @throws CoreException
 		 */
 		public IPath[] locateURI(URI uri) throws CoreException {
-			try {
-				this.fs.lockForWrite();
-
-				if (this.needsRebuild) {
-					this.rebuildMapping(null);
-				}
-
-				ArrayList<IPath> paths = this.uri2pathMapping.get(uri.toString());
+			ArrayList<IPath> result = new ArrayList<IPath>();
+			for (String rootName : this.fs.getRootNames()) {
+				IPath[] paths = getMapping(rootName).get(uri.toString());
 				if (paths != null) {
-					return paths.toArray(new IPath[paths.size()]);
+					for (IPath iPath : paths) {
+						result.add(iPath);
+					}
 				}
-				return new IPath[0];
-			} finally {
-				this.fs.unlockForWrite();
 			}
+			if (result.isEmpty()) {
+				return NO_PATHS;
+			}
+			return result.toArray(new IPath[result.size()]);
 		}
 
 		/**
 		 * @throws CoreException
 		 */
 		public IPath[] locateURI(URI uri, IPath rootpath) throws CoreException {
-			try {
-				this.fs.lockForWrite();
+			if (rootpath.segmentCount() == 0) {
+				return locateURI(uri);
+			}
 
-				if (this.needsRebuild) {
-					this.rebuildMapping(null);
-				}
+			IPath[] paths = getMapping(rootpath.segment(0)).get(uri.toString());
+			if (paths == null) {
+				return NO_PATHS;
+			}
 
-				ArrayList<IPath> paths = this.uri2pathMapping.get(uri.toString());
-				if (paths != null) {
-					ArrayList<IPath> filteredpaths = new ArrayList<IPath>();
+			ArrayList<IPath> filteredpaths = new ArrayList<IPath>(paths.length);
+			for (IPath iPath : paths) {
+				if (rootpath.isPrefixOf(iPath)) {
+					filteredpaths.add(iPath);
+				}
+			}
+			return filteredpaths.toArray(new IPath[filteredpaths.size()]);
+		}
 
-					for (IPath iPath : paths) {
-						if (rootpath.isPrefixOf(iPath)) {
-							filteredpaths.add(iPath);
-						}
-					}
+		/*
+		 * returns the mapping of a root and indexes the root if necessary;
+		 * this uses the lock of the root only, which may be acquired while
+		 * the current thread holds the lock of another root
+		 */
+		private ConcurrentHashMap<String, IPath[]> getMapping(String rootName) {
+			ConcurrentHashMap<String, IPath[]> mapping = this.mappings.get(rootName);
+			if (mapping != null) {
+				return mapping;
+			}
 
-					return filteredpaths.toArray(new IPath[filteredpaths.size()]);
-				}
-				return new IPath[0];
+			try {
+				this.fs.lockForRead(rootName);
+				return indexRoot(rootName);
 			} finally {
-				this.fs.unlockForWrite();
+				this.fs.unlockForRead();
 			}
 		}
 
+		/*
+		 * the caller must hold the lock of the root
+		 */
+		private synchronized ConcurrentHashMap<String, IPath[]> indexRoot(String rootName) {
+			ConcurrentHashMap<String, IPath[]> mapping = this.mappings.get(rootName);
+			if (mapping != null) {
+				return mapping;
+			}
+
+			mapping = new ConcurrentHashMap<String, IPath[]>();
+			TreeRoot root = this.fs.findRoot(rootName);
+			if (root != null) {
+				this.fs.ensureLoaded(rootName);
+				addSubtree(mapping, root, new Path("/" + rootName)); //$NON-NLS-1$
+			}
+			this.mappings.put(rootName, mapping);
+			return mapping;
+		}
+
 		public IPath getPathForNode(ResourceTreeNode node) {
 			return this.fs.getPathForNode(node);
 		}
 
-		public void rebuildMapping(IProgressMonitor monitor) {
-			this.uri2pathMapping.clear();
+		public synchronized void addURI(IPath path, String uriString) {
+			ConcurrentHashMap<String, IPath[]> mapping = this.mappings.get(path.segment(0));
+			if (mapping != null) {
+				addURI(mapping, path, uriString);
+			}
+		}
 
-			TreeIterator<EObject> contents = this.fs.metadataResource.getAllContents();
+		private static void addURI(ConcurrentHashMap<String, IPath[]> mapping, IPath path, String uriString) {
+			IPath[] paths = mapping.get(uriString);
 
-			while (contents.hasNext()) {
-				EObject eObject = contents.next();
-				if (eObject instanceof ResourceTreeNode) {
-					ResourceTreeNode node = (ResourceTreeNode) eObject;
+			if (paths != null) {
+				IPath[] newPaths = new IPath[paths.length + 1];
+				System.arraycopy(paths, 0, newPaths, 0, paths.length);
+				newPaths[paths.length] = path;
+				mapping.put(uriString, newPaths);
+			} else {
+				mapping.put(uriString, new IPath[] {path});
+			}
+		}
 
-					String uriString = node.getRemoteURI();
+		public synchronized void removeURI(IPath path, String uriString) {
+			ConcurrentHashMap<String, IPath[]> mapping = this.mappings.get(path.segment(0));
+			if (mapping == null) {
+				return;
+			}
 
-					if (uriString != null) {
-						addURI(getPathForNode(node), uriString);
-					}
+			IPath[] paths = mapping.get(uriString);
+
+			if (paths == null) {
+				return;
+			}
+
+			int index = -1;
+			for (int i = 0; i < paths.length; i++) {
+				if (paths[i].equals(path)) {
+					index = i;
+					break;
 				}
 			}
-			this.needsRebuild = false;
-		}
 
-		public void addURI(IPath path, String uriString) {
-			ArrayList<IPath> paths = this.uri2pathMapping.get(uriString);
+			if (index < 0) {
+				return;
+			}
 
-			if (paths != null) {
-				paths.add(path);
+			if (paths.length == 1) {
+				mapping.remove(uriString);
 			} else {
-				paths = new ArrayList<IPath>();
-
-				paths.add(path);
-				this.uri2pathMapping.put(uriString, paths);
+				IPath[] newPaths = new IPath[paths.length - 1];
+				System.arraycopy(paths, 0, newPaths, 0, index);
+				System.arraycopy(paths, index + 1, newPaths, index, newPaths.length - index);
+				mapping.put(uriString, newPaths);
 			}
 		}
 
-		public void removeURI(IPath path, String uriString) {
-			ArrayList<IPath> paths = this.uri2pathMapping.get(uriString);
+		/**
+		 * Adds the URIs of a subtree that has been attached at the given path
+		 * 
+		 * @param node
+		 *            the root of the subtree
+		 * @param path
+		 *            the path of the node
+		 */
+		public synchronized void addSubtree(ResourceTreeNode node, IPath path) {
+			ConcurrentHashMap<String, IPath[]> mapping = this.mappings.get(path.segment(0));
+			if (mapping != null) {
+				addSubtree(mapping, node, path);
+			} else if (path.segmentCount() == 1) {
+				// a new root
+				mapping = new ConcurrentHashMap<String, IPath[]>();
+				addSubtree(mapping, node, path);
+				this.mappings.put(path.segment(0), mapping);
+			}
+		}
 
-			paths.remove(path);
+		private static void addSubtree(ConcurrentHashMap<String, IPath[]> mapping, ResourceTreeNode node, IPath path) {
+			String uriString = node.getRemoteURI();
+			if (uriString != null) {
+				addURI(mapping, path, uriString);
+			}
+			for (ResourceTreeNode child : node.getChildren()) {
+				addSubtree(mapping, child, path.append(child.getName()));
+			}
+		}
 
-			if (paths.isEmpty()) {
-				this.uri2pathMapping.remove(uriString);
+		/**
+		 * Removes the URIs of a subtree; must be called before the subtree is
+		 * detached or moved
+		 * 
+		 * @param node
+		 *            the root of the subtree
+		 * @param path
+		 *            the path of the node
+		 */
+		public synchronized void removeSubtree(ResourceTreeNode node, IPath path) {
+			if (path.segmentCount() == 1) {
+				this.mappings.remove(path.segment(0));
+				return;
+			}
+			if (!this.mappings.containsKey(path.segment(0))) {
+				return;
+			}
+			String uriString = node.getRemoteURI();
+			if (uriString != null) {
+				removeURI(path, uriString);
+			}
+			for (ResourceTreeNode child : node.getChildren()) {
+				removeSubtree(child, path.append(child.getName()));
 			}
 		}
 
-		public void requestRebuild() {
-			this.needsRebuild = true;
+		/**
+		 * Drops all mappings; the roots are indexed again upon lookup
+		 */
+		public synchronized void requestRebuild() {
+			this.mappings = new ConcurrentHashMap<String, ConcurrentHashMap<String, IPath[]>>();
 		}
 
 	}
@@ -850,21 +1647,21 @@ public class SemanticFileSystem extends FileSystem implements ISemanticFileSyste
 	 * @throws CoreException
 	 */
 	public ISemanticURILocatorService getURILocatorService(IProgressMonitor monitor) throws CoreException {
-		try {
-			this.lockForWrite();
+		if (this.uriLocator != null) {
+			return this.uriLocator;
+		}
+		// the roots are indexed upon lookup, so no lock is needed here
+		synchronized (this.rootsLock) {
 			if (this.uriLocator == null) {
 				this.uriLocator = new SemanticURILocatorService(this);
-
-				this.uriLocator.rebuildMapping(monitor);
 			}
 			return this.uriLocator;
-		} finally {
-			this.unlockForWrite();
 		}
 	}
 
 	/**
-	 * 
+	 * Requests a complete rebuild of the URI mapping upon the next lookup; only
+	 * needed for changes that are not reported to the URI locator service
 	 */
 	public void requestURILocatorRebuild() {
 		if (this.uriLocator != null) {
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Coalesces flush requests of the Semantic File System into background
+ * flushes.
+ * <p>
+ * The first request after a flush starts a timer; all requests until the
+ * timer expires are served by a single flush. If many requests arrive before
+ * the timer expires, the flush is started right away. The scheduler also
+ * keeps statistics about the flushes.
+ */
+final class SemanticFlushScheduler {
+
+	// the maximum time a requested flush is delayed
+	private static final long FLUSH_DELAY = 500;
+	// the number of requests that start a flush right away
+	private static final int FLUSH_THRESHOLD = 1000;
+
+	private final SemanticFileSystem fs;
+	private final Job flushJob;
+	private final AtomicInteger pendingRequests = new AtomicInteger();
+
+	private final AtomicLong flushCount = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+	private final AtomicLong nanosUnderLock = new AtomicLong();
+
+	/**
+	 * @param fs
+	 *            the file system
+	 */
+	SemanticFlushScheduler(SemanticFileSystem fs) {
+		this.fs = fs;
+		this.flushJob = new Job(Messages.SemanticFlushScheduler_FlushJob_XGRP) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				SemanticFlushScheduler.this.pendingRequests.set(0);
+				try {
+					SemanticFlushScheduler.this.fs.flushPending();
+				} catch (CoreException e) {
+					SemanticFlushScheduler.this.fs.getLog().log(e);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		this.flushJob.setSystem(true);
+	}
+
+	/**
+	 * Requests a background flush
+	 */
+	void schedule() {
+		int requests = this.pendingRequests.incrementAndGet();
+		if (requests == 1) {
+			this.flushJob.schedule(FLUSH_DELAY);
+		} else if (requests == FLUSH_THRESHOLD) {
+			this.flushJob.schedule();
+		}
+	}
+
+	/**
+	 * Cancels the scheduled flush since the caller flushes synchronously
+	 */
+	void cancel() {
+		if (this.flushJob.cancel()) {
+			this.pendingRequests.set(0);
+		}
+	}
+
+	/**
+	 * Stops scheduling and waits for a running flush to complete
+	 */
+	void shutdown() {
+		this.flushJob.cancel();
+		try {
+			this.flushJob.join();
+		} catch (InterruptedException e) {
+			// $JL-EXC$ the caller flushes anyway
+			Thread.currentThread().interrupt();
+		}
+		this.pendingRequests.set(0);
+	}
+
+	/**
+	 * Records a completed flush
+	 *
+	 * @param bytes
+	 *            the number of bytes written
+	 * @param lockNanos
+	 *            the time spent under the exclusive lock in nanoseconds
+	 */
+	void flushed(long bytes, long lockNanos) {
+		long count = this.flushCount.incrementAndGet();
+		long totalBytes = this.bytesWritten.addAndGet(bytes);
+		long totalNanos = this.nanosUnderLock.addAndGet(lockNanos);
+
+		if (SfsTraceLocation.CORE_DB.isActive()) {
+			SfsTraceLocation.getTrace().trace(
+					SfsTraceLocation.CORE_DB.getLocation(),
+					"Flush " + count + ": " + bytes + " bytes, " + lockNanos / 1000000 + " ms under lock; total " + totalBytes + " bytes, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+							+ totalNanos / 1000000 + " ms under lock"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return the number of flushes
+	 */
+	long getFlushCount() {
+		return this.flushCount.get();
+	}
+
+	/**
+	 * @return the number of bytes written by all flushes
+	 */
+	long getBytesWritten() {
+		return this.bytesWritten.get();
+	}
+
+	/**
+	 * @return the time all flushes spent under the exclusive lock in
+	 *         milliseconds
+	 */
+	long getTimeUnderLock() {
+		return this.nanosUnderLock.get() / 1000000;
+	}
+
+}
@@ -0,0 +1,413 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Hierarchical lock manager for the Semantic File System metadata.
+ * <p>
+ * There is one global lock and one read-write lock per root (i.e. per
+ * semantic project):
+ * <ul>
+ * <li>Work on a subtree acquires the lock of the root of the subtree in the
+ * requested mode; thus work on different roots can run in parallel</li>
+ * <li>Work on the whole database (load, save, full scans) acquires the global
+ * lock in exclusive mode, which excludes work on all roots</li>
+ * </ul>
+ * Locks are reentrant. Each lock call must be paired with a call to
+ * {@link #unlock()}, which releases the locks acquired by the most recent lock
+ * call of the current thread; callers must follow the usual try/finally
+ * pattern.
+ * <p>
+ * A thread holding a lock may acquire further locks, e.g. a content provider
+ * that is called under the lock of its root may access another semantic
+ * project. If such a request conflicts with the lock of another thread,
+ * waiting for that lock could deadlock, since the other thread may in turn
+ * wait for a lock held by this thread. Instead, the thread falls back to the
+ * global lock in exclusive mode and keeps the locks it holds: it waits until
+ * all other threads holding locks have either released them or are waiting
+ * in this lock manager themselves, and then proceeds as if it held the locks
+ * of all roots. The waiting threads continue once it has released the
+ * exclusive lock. Only one thread at a time can fall back to the exclusive
+ * lock; other threads that run into a conflict while holding locks wait for
+ * it, so that the fallback can not deadlock.
+ * <p>
+ * All state is guarded by the monitor of the lock manager; a lock is held for
+ * a short time only in order to update the state.
+ */
+final class SemanticLockManager {
+
+	private static final String[] NO_ROOTS = new String[0];
+
+	// the locks of the roots which are currently held or waited for; a lock is
+	// removed once it is not used anymore
+	private final HashMap<String, RootLock> rootLocks = new HashMap<String, RootLock>();
+
+	// the thread holding the exclusive lock, or falling back to it
+	private Thread exclusiveOwner;
+	private boolean exclusiveGranted;
+	private int exclusiveCount;
+	// threads waiting for the exclusive lock without holding a lock
+	private int exclusiveWaiters;
+
+	// threads holding locks, and those of them that are not waiting in this
+	// lock manager
+	private int holders;
+	private int activeHolders;
+	private int waiters;
+
+	private final ThreadLocal<ArrayList<HeldLock>> heldLocks = new ThreadLocal<ArrayList<HeldLock>>() {
+		@Override
+		protected ArrayList<HeldLock> initialValue() {
+			return new ArrayList<HeldLock>();
+		}
+	};
+
+	private static final class RootLock {
+		Thread writer;
+		int writeCount;
+		final HashMap<Thread, int[]> readers = new HashMap<Thread, int[]>(4);
+		int waitingWriters;
+
+		RootLock() {
+			// nothing
+		}
+
+		boolean isUnused() {
+			return this.writer == null && this.readers.isEmpty() && this.waitingWriters == 0;
+		}
+	}
+
+	private static final class HeldLock {
+		final String[] rootNames;
+		final boolean write;
+		// the root locks have been acquired; they are not acquired while the
+		// thread holds the exclusive lock
+		final boolean recorded;
+		final boolean exclusive;
+
+		HeldLock(String[] rootNames, boolean write, boolean recorded, boolean exclusive) {
+			this.rootNames = rootNames;
+			this.write = write;
+			this.recorded = recorded;
+			this.exclusive = exclusive;
+		}
+	}
+
+	/**
+	 * Acquires the lock of a root in shared or exclusive mode
+	 *
+	 * @param rootName
+	 *            the name of the root
+	 * @param write
+	 *            <code>true</code> for exclusive access to the subtree
+	 */
+	void lockRoot(String rootName, boolean write) {
+		lockRoots(new String[] {rootName}, write);
+	}
+
+	/**
+	 * Acquires the locks of several roots at once
+	 *
+	 * @param rootNames
+	 *            the names of the roots; duplicates are allowed
+	 * @param write
+	 *            <code>true</code> for exclusive access to the subtrees
+	 */
+	void lockRoots(String[] rootNames, boolean write) {
+		String[] names = normalize(rootNames);
+		Thread current = Thread.currentThread();
+		ArrayList<HeldLock> held = this.heldLocks.get();
+		boolean nested = !held.isEmpty();
+		boolean interrupted = false;
+
+		synchronized (this) {
+			while (true) {
+				if (this.exclusiveOwner == current && this.exclusiveGranted) {
+					held.add(new HeldLock(names, write, false, false));
+					break;
+				}
+
+				if (canAcquire(current, names, write, nested)) {
+					if (this.exclusiveOwner == current) {
+						// the conflict has been resolved in the meantime
+						this.exclusiveOwner = null;
+						notifyWaiters();
+					}
+					for (String rootName : names) {
+						acquire(current, rootName, write);
+					}
+					held.add(new HeldLock(names, write, true, false));
+					break;
+				}
+
+				if (nested) {
+					if (this.exclusiveOwner == null) {
+						// waiting for the conflicting lock could deadlock
+						this.exclusiveOwner = current;
+						continue;
+					}
+					if (this.exclusiveOwner == current && this.activeHolders == 1) {
+						this.exclusiveGranted = true;
+						this.exclusiveCount++;
+						held.add(new HeldLock(names, write, false, true));
+						break;
+					}
+				}
+
+				interrupted |= await(names, write, nested && this.exclusiveOwner != current);
+			}
+
+			if (!nested) {
+				this.holders++;
+				this.activeHolders++;
+			}
+		}
+
+		if (interrupted) {
+			current.interrupt();
+		}
+	}
+
+	/**
+	 * Acquires exclusive access to the whole database; if the current thread
+	 * holds a root lock, it keeps it, and it gets exclusive access once all
+	 * other threads holding locks have released them or are waiting for a lock
+	 */
+	void lockExclusive() {
+		Thread current = Thread.currentThread();
+		ArrayList<HeldLock> held = this.heldLocks.get();
+		boolean nested = !held.isEmpty();
+		boolean interrupted = false;
+
+		synchronized (this) {
+			if (!nested) {
+				this.exclusiveWaiters++;
+			}
+			try {
+				while (true) {
+					if (this.exclusiveOwner == current && this.exclusiveGranted) {
+						break;
+					}
+					if (!nested) {
+						if (this.exclusiveOwner == null && this.holders == 0) {
+							this.exclusiveOwner = current;
+							this.exclusiveGranted = true;
+							break;
+						}
+					} else if (this.exclusiveOwner == null) {
+						this.exclusiveOwner = current;
+						continue;
+					} else if (this.exclusiveOwner == current && this.activeHolders == 1) {
+						this.exclusiveGranted = true;
+						break;
+					}
+
+					interrupted |= await(NO_ROOTS, false, nested && this.exclusiveOwner != current);
+				}
+			} finally {
+				if (!nested) {
+					this.exclusiveWaiters--;
+				}
+			}
+
+			this.exclusiveCount++;
+			held.add(new HeldLock(NO_ROOTS, true, false, true));
+			if (!nested) {
+				this.holders++;
+				this.activeHolders++;
+			}
+		}
+
+		if (interrupted) {
+			current.interrupt();
+		}
+	}
+
+	/**
+	 * Releases the locks acquired by the most recent lock call of the current
+	 * thread
+	 *
+	 * @return <code>true</code> if the current thread does not hold any locks
+	 *         any more
+	 */
+	boolean unlock() {
+		Thread current = Thread.currentThread();
+		ArrayList<HeldLock> held = this.heldLocks.get();
+		HeldLock last = held.remove(held.size() - 1);
+
+		synchronized (this) {
+			if (last.recorded) {
+				for (String rootName : last.rootNames) {
+					release(current, rootName, last.write);
+				}
+			}
+			if (last.exclusive && --this.exclusiveCount == 0) {
+				this.exclusiveOwner = null;
+				this.exclusiveGranted = false;
+			}
+			if (held.isEmpty()) {
+				this.holders--;
+				this.activeHolders--;
+			}
+			notifyWaiters();
+		}
+
+		return held.isEmpty();
+	}
+
+	/**
+	 * @return <code>true</code> if the current thread holds any lock
+	 */
+	boolean isLockedByCurrentThread() {
+		return !this.heldLocks.get().isEmpty();
+	}
+
+	private boolean canAcquire(Thread current, String[] names, boolean write, boolean nested) {
+		if (this.exclusiveOwner != null && this.exclusiveOwner != current) {
+			// while another thread falls back to the exclusive lock, only
+			// threads holding locks may proceed in order to release them
+			if (this.exclusiveGranted || !nested) {
+				return false;
+			}
+		}
+		if (!nested && this.exclusiveWaiters > 0) {
+			return false;
+		}
+
+		for (String rootName : names) {
+			RootLock lock = this.rootLocks.get(rootName);
+			if (lock == null) {
+				continue;
+			}
+			if (lock.writer != null) {
+				if (lock.writer != current) {
+					return false;
+				}
+			} else if (write) {
+				// a thread that is the only reader may upgrade its lock
+				if (!lock.readers.isEmpty() && (lock.readers.size() > 1 || !lock.readers.containsKey(current))) {
+					return false;
+				}
+			} else if (lock.waitingWriters > 0 && !nested) {
+				// don't let new readers starve waiting writers
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void acquire(Thread current, String rootName, boolean write) {
+		RootLock lock = getRootLock(rootName);
+		if (write) {
+			lock.writer = current;
+			lock.writeCount++;
+		} else {
+			int[] count = lock.readers.get(current);
+			if (count == null) {
+				count = new int[1];
+				lock.readers.put(current, count);
+			}
+			count[0]++;
+		}
+	}
+
+	private void release(Thread current, String rootName, boolean write) {
+		RootLock lock = this.rootLocks.get(rootName);
+		if (write) {
+			if (--lock.writeCount == 0) {
+				lock.writer = null;
+			}
+		} else {
+			int[] count = lock.readers.get(current);
+			if (--count[0] == 0) {
+				lock.readers.remove(current);
+			}
+		}
+		if (lock.isUnused()) {
+			this.rootLocks.remove(rootName);
+		}
+	}
+
+	/*
+	 * waits until the state of the locks changes; a thread holding locks that
+	 * waits does not keep a thread that falls back to the exclusive lock from
+	 * proceeding
+	 */
+	private boolean await(String[] names, boolean write, boolean holding) {
+		if (write) {
+			for (String rootName : names) {
+				getRootLock(rootName).waitingWriters++;
+			}
+		}
+		if (holding) {
+			this.activeHolders--;
+			notifyWaiters();
+		}
+		this.waiters++;
+
+		boolean interrupted = false;
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			// $JL-EXC$ the lock is acquired anyway; the interrupt is restored
+			interrupted = true;
+		} finally {
+			this.waiters--;
+			if (holding) {
+				this.activeHolders++;
+			}
+			if (write) {
+				for (String rootName : names) {
+					RootLock lock = this.rootLocks.get(rootName);
+					lock.waitingWriters--;
+					if (lock.isUnused()) {
+						this.rootLocks.remove(rootName);
+					}
+				}
+			}
+		}
+		return interrupted;
+	}
+
+	private void notifyWaiters() {
+		if (this.waiters > 0) {
+			notifyAll();
+		}
+	}
+
+	private RootLock getRootLock(String rootName) {
+		RootLock lock = this.rootLocks.get(rootName);
+		if (lock == null) {
+			lock = new RootLock();
+			this.rootLocks.put(rootName, lock);
+		}
+		return lock;
+	}
+
+	private static String[] normalize(String[] rootNames) {
+		String[] sortedNames = rootNames.clone();
+		Arrays.sort(sortedNames);
+
+		ArrayList<String> names = new ArrayList<String>(sortedNames.length);
+		for (int i = 0; i < sortedNames.length; i++) {
+			if (i == 0 || !sortedNames[i].equals(sortedNames[i - 1])) {
+				names.add(sortedNames[i]);
+			}
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+}
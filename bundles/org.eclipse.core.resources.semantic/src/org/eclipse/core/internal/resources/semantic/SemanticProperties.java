@@ -30,7 +30,9 @@ import org.eclipse.core.runtime.QualifiedName;
  */
 public abstract class SemanticProperties extends FileStore implements ISemanticProperties {
 
-	protected ResourceTreeNode node;
+	// replaced when the store joins a reloaded tree; stores are shared
+	// between threads
+	protected volatile ResourceTreeNode node;
 	protected final SemanticFileSystem fs;
 
 	SemanticProperties(SemanticFileSystem fs, ResourceTreeNode node) {
@@ -60,23 +62,13 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 
 		Map<QualifiedName, String> result = new HashMap<QualifiedName, String>();
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			HashMap<String, String> atts = this.node.getPersistentProperties();
 			if (atts == null) {
 				return result;
 			}
 			for (Map.Entry<String, String> entry : atts.entrySet()) {
-				String qualifier;
-				String localName;
-				int index = entry.getKey().indexOf('^');
-				if (index > 0) {
-					qualifier = entry.getKey().substring(0, index);
-					localName = entry.getKey().substring(index + 1);
-				} else {
-					qualifier = null;
-					localName = entry.getKey();
-				}
-				result.put(new QualifiedName(qualifier, localName), entry.getValue());
+				result.put(Util.stringToQualifiedName(entry.getKey()), entry.getValue());
 			}
 
 			return result;
@@ -101,7 +93,7 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 
 		String result = null;
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			HashMap<String, String> nodeProps = this.node.getPersistentProperties();
 			if (nodeProps == null) {
 				return result;
@@ -119,6 +111,39 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 
 	}
 
+	/**
+	 * @throws CoreException
+	 */
+	public Map<QualifiedName, String> getPersistentProperties(QualifiedName... keys) throws CoreException {
+
+		if (SfsTraceLocation.CORE_VERBOSE.isActive()) {
+			SfsTraceLocation.getTrace().traceEntry(SfsTraceLocation.CORE_VERBOSE.getLocation(),
+					new Object[] {getPathForTrace().toString(), keys});
+		}
+
+		Map<QualifiedName, String> result = new HashMap<QualifiedName, String>();
+		try {
+			this.fs.lockForRead(this.node);
+			HashMap<String, String> nodeProps = this.node.getPersistentProperties();
+			if (nodeProps == null) {
+				return result;
+			}
+			for (QualifiedName key : keys) {
+				String value = nodeProps.get(Util.qualifiedNameToString(key));
+				if (value != null) {
+					result.put(key, value);
+				}
+			}
+
+			return result;
+		} finally {
+			this.fs.unlockForRead();
+			if (SfsTraceLocation.CORE_VERBOSE.isActive()) {
+				SfsTraceLocation.getTrace().traceExit(SfsTraceLocation.CORE_VERBOSE.getLocation(), result);
+			}
+		}
+	}
+
 	public void setPersistentProperty(QualifiedName key, String value) throws CoreException {
 
 		if (SfsTraceLocation.CORE_VERBOSE.isActive()) {
@@ -131,13 +156,13 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 
 		String keyString = Util.qualifiedNameToString(key);
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			String oldValue = null;
 
 			HashMap<String, String> map = this.node.getPersistentProperties();
 			if (map == null) {
-				map = new HashMap<String, String>();
+				map = Util.createPropertyMap(1);
 			} else {
 				oldValue = map.get(keyString);
 			}
@@ -160,6 +185,56 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 
 	}
 
+	public void setPersistentProperties(Map<QualifiedName, String> properties) throws CoreException {
+
+		if (SfsTraceLocation.CORE_VERBOSE.isActive()) {
+			SfsTraceLocation.getTrace().traceEntry(SfsTraceLocation.CORE_VERBOSE.getLocation(), getPathForTrace().toString());
+		}
+
+		checkAccessible();
+
+		for (QualifiedName key : properties.keySet()) {
+			Util.assertQualifiedNameValid(key);
+		}
+
+		try {
+			this.fs.lockForWrite(this.node);
+
+			HashMap<String, String> map = this.node.getPersistentProperties();
+			if (map == null) {
+				map = Util.createPropertyMap(properties.size());
+			}
+
+			boolean changed = false;
+			for (Map.Entry<QualifiedName, String> entry : properties.entrySet()) {
+				String keyString = Util.qualifiedNameToString(entry.getKey());
+				String value = entry.getValue();
+				String oldValue = map.get(keyString);
+
+				if (!isEqualValue(value, oldValue)) {
+					if (value != null) {
+						map.put(keyString, value);
+					} else {
+						map.remove(keyString);
+					}
+					changed = true;
+
+					this.notifyPersistentPropertySet(keyString, oldValue, value);
+				}
+			}
+
+			if (changed) {
+				// the map is set once all changes are made, so that the change
+				// is recorded with all of them
+				this.node.setPersistentProperties(map);
+				this.fs.requestFlush(false);
+			}
+		} finally {
+			this.fs.unlockForWrite();
+		}
+
+	}
+
 	protected abstract void notifyPersistentPropertySet(String keyString, String oldValue, String newValue) throws CoreException;
 
 	/**
@@ -176,7 +251,7 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 		Util.assertQualifiedNameValid(key);
 
 		try {
-			this.fs.lockForWrite();
+			this.fs.lockForWrite(this.node);
 
 			HashMap<QualifiedName, Object> map = this.node.getSessionProperties();
 			if (map == null) {
@@ -209,7 +284,7 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 		Map<QualifiedName, Object> result = new HashMap<QualifiedName, Object>();
 
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			HashMap<QualifiedName, Object> atts = this.node.getSessionProperties();
 			if (atts == null) {
 				return result;
@@ -240,7 +315,7 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 
 		Object result = null;
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			HashMap<QualifiedName, Object> nodeProps = this.node.getSessionProperties();
 			if (nodeProps == null) {
 				return result;
@@ -304,7 +379,7 @@ public abstract class SemanticProperties extends FileStore implements ISemanticP
 
 	protected void checkAndJoinTreeIfAnotherEntryExists() {
 		try {
-			this.fs.lockForRead();
+			this.fs.lockForRead(this.node);
 			if (!this.node.isExists()) {
 				ResourceTreeNode other = this.fs.getNodeByPath(this.node.getPath());
 
@@ -369,6 +369,12 @@ public abstract class SemanticResourceAdapterImpl implements ISemanticResource {
 		return store.getPersistentProperty(key);
 	}
 
+	public Map<QualifiedName, String> getPersistentProperties(QualifiedName... keys) throws CoreException {
+		ISemanticFileStoreInternal store = getOwnStore();
+
+		return store.getPersistentProperties(keys);
+	}
+
 	public Map<QualifiedName, Object> getSessionProperties() throws CoreException {
 		ISemanticFileStoreInternal store = getOwnStore();
 
@@ -389,6 +395,14 @@ public abstract class SemanticResourceAdapterImpl implements ISemanticResource {
 
 	}
 
+	public void setPersistentProperties(Map<QualifiedName, String> properties) throws CoreException {
+		checkCurrentRule(RuleType.MODIFY);
+		ISemanticFileStoreInternal store = getOwnStore();
+
+		store.setPersistentProperties(properties);
+
+	}
+
 	public void setSessionProperty(QualifiedName key, Object value) throws CoreException {
 		checkCurrentRule(RuleType.MODIFY);
 		ISemanticFileStoreInternal store = getOwnStore();
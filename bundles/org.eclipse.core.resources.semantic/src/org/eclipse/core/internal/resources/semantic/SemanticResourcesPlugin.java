@@ -37,6 +37,8 @@ public class SemanticResourcesPlugin extends Plugin implements DebugOptionsListe
 
 	private static BundleContext context;
 
+	private static SemanticFileSystem fileSystem;
+
 	@Override
 	public void start(BundleContext actContext) throws Exception {
 		super.start(actContext);
@@ -49,6 +51,15 @@ public class SemanticResourcesPlugin extends Plugin implements DebugOptionsListe
 
 	@Override
 	public void stop(BundleContext actContext) throws Exception {
+		SemanticFileSystem fs;
+		synchronized (SemanticResourcesPlugin.class) {
+			fs = fileSystem;
+			fileSystem = null;
+		}
+		if (fs != null) {
+			// write the changes that are still pending
+			fs.shutdown();
+		}
 		super.stop(actContext);
 		context = null;
 	}
@@ -84,6 +95,17 @@ public class SemanticResourcesPlugin extends Plugin implements DebugOptionsListe
 		return Path.fromOSString(System.getProperty("user.home")); //$NON-NLS-1$
 	}
 
+	/**
+	 * Registers the file system instance which is shut down when the bundle is
+	 * stopped
+	 * 
+	 * @param fs
+	 *            the file system
+	 */
+	static synchronized void setFileSystem(SemanticFileSystem fs) {
+		fileSystem = fs;
+	}
+
 	public void optionsChanged(DebugOptions options) {
 
 		SfsTraceLocation.initializeFromOptions(options, isDebugging());
@@ -14,6 +14,8 @@ package org.eclipse.core.internal.resources.semantic;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.QualifiedName;
@@ -23,6 +25,11 @@ import org.eclipse.core.runtime.QualifiedName;
  */
 public class Util {
 
+	// the persistent property keys are shared by all nodes
+	private static final ConcurrentHashMap<String, String> propertyKeys = new ConcurrentHashMap<String, String>();
+	private static final ConcurrentHashMap<QualifiedName, String> keysByName = new ConcurrentHashMap<QualifiedName, String>();
+	private static final ConcurrentHashMap<String, QualifiedName> namesByKey = new ConcurrentHashMap<String, QualifiedName>();
+
 	private Util() {
 		// static methods only
 	}
@@ -52,11 +59,71 @@ public class Util {
 	 *         name)
 	 */
 	public static String qualifiedNameToString(QualifiedName name) {
-		StringBuilder sb = new StringBuilder(50);
-		sb.append(name.getQualifier());
-		sb.append('^');
-		sb.append(name.getLocalName());
-		return sb.toString();
+		String key = keysByName.get(name);
+		if (key == null) {
+			StringBuilder sb = new StringBuilder(50);
+			sb.append(name.getQualifier());
+			sb.append('^');
+			sb.append(name.getLocalName());
+			key = internPropertyKey(sb.toString());
+			keysByName.put(name, key);
+		}
+		return key;
+	}
+
+	/**
+	 * Converts the string representation of a {@link QualifiedName} back
+	 * 
+	 * @param key
+	 *            the key as returned by
+	 *            {@link #qualifiedNameToString(QualifiedName)}
+	 * @return the qualified name
+	 */
+	public static QualifiedName stringToQualifiedName(String key) {
+		QualifiedName name = namesByKey.get(key);
+		if (name == null) {
+			String qualifier;
+			String localName;
+			int index = key.indexOf('^');
+			if (index > 0) {
+				qualifier = key.substring(0, index);
+				localName = key.substring(index + 1);
+			} else {
+				qualifier = null;
+				localName = key;
+			}
+			name = new QualifiedName(qualifier, localName);
+			namesByKey.put(internPropertyKey(key), name);
+		}
+		return name;
+	}
+
+	/**
+	 * Returns the shared instance of a persistent property key; there are
+	 * only a few distinct keys, but each node holds them
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the shared instance
+	 */
+	public static String internPropertyKey(String key) {
+		String shared = propertyKeys.putIfAbsent(key, key);
+		if (shared != null) {
+			return shared;
+		}
+		return key;
+	}
+
+	/**
+	 * Creates a map for the persistent properties of a node; nodes usually
+	 * carry only a few properties
+	 * 
+	 * @param expectedSize
+	 *            the expected number of properties
+	 * @return the map
+	 */
+	public static HashMap<String, String> createPropertyMap(int expectedSize) {
+		return new HashMap<String, String>(Math.max(2, (int) (expectedSize / 0.75f) + 1));
 	}
 
 	/**
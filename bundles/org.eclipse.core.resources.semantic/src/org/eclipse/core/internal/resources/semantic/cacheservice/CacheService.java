@@ -21,6 +21,7 @@ import org.eclipse.core.internal.resources.semantic.spi.SfsSpiTraceLocation;
 import org.eclipse.core.resources.semantic.ISemanticFileSystem;
 import org.eclipse.core.resources.semantic.spi.ICacheService;
 import org.eclipse.core.resources.semantic.spi.ICacheUpdateCallback;
+import org.eclipse.core.resources.semantic.spi.Util;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -76,7 +77,13 @@ public class CacheService implements ICacheService {
 
 			tempHandle = this.handleFactory.createTemporaryHandle(this, path, append);
 
-			tempHandle.setContents(input, monitor);
+			try {
+				tempHandle.setContents(input, monitor);
+			} catch (CoreException e) {
+				// incomplete content must not remain in the cache
+				discard(tempHandle);
+				throw e;
+			}
 
 		} finally {
 			unlockForWrite();
@@ -232,6 +239,15 @@ public class CacheService implements ICacheService {
 		return this.handleFactory.createCacheContentHandle(this, path);
 	}
 
+	private void discard(ITemporaryContentHandle tempHandle) {
+		try {
+			Util.safeClose(tempHandle.closeAndGetContents());
+		} catch (CoreException e) {
+			// $JL-EXC$ the content is discarded anyway
+		}
+		tempHandle.rollback();
+	}
+
 	/**
 	 * used from {@link CachingOutputStream#close()}
 	 * 
@@ -11,23 +11,26 @@
  *******************************************************************************/
 package org.eclipse.core.internal.resources.semantic.cacheservice;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 import org.eclipse.core.runtime.CoreException;
 
 /**
  * The memory-based content handle
- * 
+ * <p>
+ * The content is either resident in memory or has been spilled to the file
+ * cache of the {@link MemoryCache}.
+ *
  * @since 4.0
  */
 class CachedMemoryHandle implements ICachedContentHandle {
 
 	private final MemoryCache myCache;
 	private final String myPath;
-	private byte[] myContent = new byte[0];
+	private MemoryContent myContent = MemoryContent.EMPTY;
+	private boolean spilled = false;
 
-	boolean exists = false;
+	private volatile boolean exists = false;
 
 	/**
 	 * @param path
@@ -45,35 +48,125 @@ class CachedMemoryHandle implements ICachedContentHandle {
 	}
 
 	public void delete() {
-		this.exists = false;
-		this.myCache.removeStore(this.myPath);
+		this.myCache.removeStore(this.myPath, this);
+		discard(true);
 	}
 
 	/**
 	 * @throws CoreException
 	 */
 	public InputStream openInputStream() throws CoreException {
-		return new ByteArrayInputStream(this.myContent);
+		MemoryContent content;
+		synchronized (this) {
+			if (this.spilled) {
+				return this.myCache.openSpilled(this.myPath);
+			}
+			content = this.myContent;
+		}
+		this.myCache.accessed(this.myPath);
+		return content.openInputStream();
 	}
 
 	/**
 	 * Updates the memory cache with data
-	 * 
+	 *
 	 * @param contents
-	 *            the content
+	 *            the content; the array is taken over and must not be
+	 *            modified afterwards
 	 * @param append
 	 *            if <code>true</code>, the content should be appended,
 	 *            otherwise it will be replaced
+	 * @throws CoreException
+	 *             if spilled content can not be read back for appending
+	 */
+	public void setContents(byte[] contents, boolean append) throws CoreException {
+		synchronized (this) {
+			boolean added = !this.exists || this.spilled;
+			if (this.spilled) {
+				MemoryContent oldContent = MemoryContent.EMPTY;
+				if (append) {
+					oldContent = MemoryContent.wrap(this.myCache.readSpilled(this.myPath));
+				}
+				this.myCache.deleteSpilled(this.myPath);
+				this.myContent = oldContent;
+				this.spilled = false;
+			} else if (!this.exists) {
+				this.myContent = MemoryContent.EMPTY;
+			}
+
+			long oldLength = this.myContent.length();
+			if (append) {
+				this.myContent = this.myContent.append(contents);
+			} else {
+				this.myContent = MemoryContent.wrap(contents);
+			}
+			this.exists = true;
+
+			long delta = added ? this.myContent.length() : this.myContent.length() - oldLength;
+			this.myCache.stored(this.myPath, delta, added);
+		}
+
+		this.myCache.evictIfNeeded();
+	}
+
+	/**
+	 * @return <code>true</code> if the content has been spilled to the file
+	 *         cache
 	 */
-	public void setContents(byte[] contents, boolean append) {
-		this.exists = true;
-		if (append && this.myContent.length > 0) {
-			byte[] oldContent = this.myContent;
-			this.myContent = new byte[oldContent.length + contents.length];
-			System.arraycopy(oldContent, 0, this.myContent, 0, oldContent.length);
-			System.arraycopy(contents, 0, this.myContent, oldContent.length, contents.length);
-		} else {
-			this.myContent = contents;
+	synchronized boolean isSpilled() {
+		return this.spilled;
+	}
+
+	/**
+	 * Moves the content to the file cache; if this fails, the content is
+	 * dropped
+	 *
+	 * @return the number of bytes released
+	 */
+	long spill() {
+		long size;
+		synchronized (this) {
+			if (!this.exists || this.spilled) {
+				return 0;
+			}
+			size = this.myContent.length();
+			this.myCache.released(this.myPath, size);
+			try {
+				this.myCache.writeSpilled(this.myPath, this.myContent);
+				this.spilled = true;
+			} catch (CoreException e) {
+				// the content is fetched again on the next access
+				this.myCache.log(e);
+				this.exists = false;
+			}
+			this.myContent = MemoryContent.EMPTY;
+			if (this.exists) {
+				return size;
+			}
+		}
+		this.myCache.removeStore(this.myPath, this);
+		return size;
+	}
+
+	/**
+	 * Drops the content after the store has been removed from the cache
+	 *
+	 * @param deleteSpilled
+	 *            <code>true</code> if spilled content should be deleted
+	 */
+	synchronized void discard(boolean deleteSpilled) {
+		if (!this.exists) {
+			return;
+		}
+		this.exists = false;
+		if (this.spilled) {
+			this.spilled = false;
+			if (deleteSpilled) {
+				this.myCache.deleteSpilled(this.myPath);
+			}
+			return;
 		}
+		this.myCache.released(this.myPath, this.myContent.length());
+		this.myContent = MemoryContent.EMPTY;
 	}
 }
@@ -177,8 +177,9 @@ public class FileHandleFactory implements IContentHandleFactory {
 	}
 
 	/**
-	 * Renames the file, deletes destination file before, deletes source file in
-	 * case of error
+	 * Renames the file, replacing the destination file; if the destination
+	 * file can not be replaced, the source file becomes an alternative file
+	 * for the destination
 	 * 
 	 * @param source
 	 *            the source file
@@ -191,8 +192,21 @@ public class FileHandleFactory implements IContentHandleFactory {
 		try {
 			lockForWrite();
 
-			if (!this.cleanupBeforeRename(target)) {
-				// make the source content as new alternate content
+			this.cleanupBeforeRename(target);
+
+			// on most platforms, the rename replaces the target in one step,
+			// so readers never miss the cache file
+			if (source.renameTo(target)) {
+				return;
+			}
+
+			// check whether a file exists with original file name and try to
+			// delete it before rename
+			if (target.exists() && !target.delete()) {
+				// alternative name should be used
+				// the original file should not be added to failedDeletions here
+				// failed deletion will be retried on next rename or on cache
+				// entry deletion
 				addAlternativeFile(source, target);
 				return;
 			}
@@ -208,10 +222,7 @@ public class FileHandleFactory implements IContentHandleFactory {
 		}
 	}
 
-	/*
-	 * returns true if the target could be deleted
-	 */
-	private boolean cleanupBeforeRename(File target) {
+	private void cleanupBeforeRename(File target) {
 		String targetPath = target.getAbsolutePath();
 
 		// check whether an alternative file is used and try to delete it since
@@ -222,20 +233,6 @@ public class FileHandleFactory implements IContentHandleFactory {
 
 		// clear the pending deletions flag since target will exist after rename
 		reportDeletionSucceeded(target);
-
-		// check whether a file exists with original file name and try to delete
-		// it before rename
-		if (target.exists()) {
-			if (!target.delete()) {
-				// alternative name should be used
-				// the original file should not be added to failedDeletions here
-				// failed deletion will be retried on next rename or on cache
-				// entry deletion
-				return false;
-			}
-		}
-		// if is safe to rename to original file name
-		return true;
 	}
 
 	/**
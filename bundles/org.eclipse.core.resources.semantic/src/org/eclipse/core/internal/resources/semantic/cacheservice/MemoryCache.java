@@ -11,22 +11,61 @@
  *******************************************************************************/
 package org.eclipse.core.internal.resources.semantic.cacheservice;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.internal.resources.semantic.SemanticResourcesPlugin;
+import org.eclipse.core.internal.resources.semantic.spi.SfsSpiTraceLocation;
+import org.eclipse.core.resources.semantic.ISemanticFileSystem;
+import org.eclipse.core.resources.semantic.SemanticResourceException;
+import org.eclipse.core.resources.semantic.SemanticResourceStatusCode;
+import org.eclipse.core.resources.semantic.spi.Util;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
 
 /**
  * An internal implementation of a memory cache.
- * 
+ * <p>
+ * The cache holds at most a configurable number of bytes in memory (system
+ * property <code>org.eclipse.core.resources.semantic.memoryCacheSize</code>,
+ * default 64 MB). If the budget is exceeded, entries selected by the eviction
+ * policy (system property
+ * <code>org.eclipse.core.resources.semantic.memoryCachePolicy</code>, either
+ * <code>lru</code> or <code>lfu</code>) are spilled to a file cache and served
+ * from there until they are replaced or removed. The spilled content does not
+ * survive a restart.
+ *
  * @since 4.0
  * @noextend This class is not intended to be extended by clients.
- * 
+ *
  */
 class MemoryCache {
 
+	private static final String BUDGET_PROPERTY = "org.eclipse.core.resources.semantic.memoryCacheSize"; //$NON-NLS-1$
+	private static final String POLICY_PROPERTY = "org.eclipse.core.resources.semantic.memoryCachePolicy"; //$NON-NLS-1$
+	private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+	private static final String SPILL_DIR_NAME = ".memoryCache"; //$NON-NLS-1$
+
 	private final static MemoryCache INSTANCE = new MemoryCache();
 
-	private Map<String, CachedMemoryHandle> cacheMap = new HashMap<String, CachedMemoryHandle>();
+	private final ConcurrentHashMap<String, CachedMemoryHandle> cacheMap = new ConcurrentHashMap<String, CachedMemoryHandle>();
+	private final MemoryCachePolicy policy;
+	private final long budget;
+	private final AtomicLong residentBytes = new AtomicLong();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong spillHitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private final Object spillLock = new Object();
+	private FileHandleFactory spillFactory;
 
 	/**
 	 * @return the instance
@@ -37,49 +76,322 @@ class MemoryCache {
 
 	private MemoryCache() {
 		// singleton
+		this.budget = Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET).longValue();
+		this.policy = MemoryCachePolicy.create(System.getProperty(POLICY_PROPERTY, MemoryCachePolicy.LRU));
+	}
+
+	/**
+	 *
+	 * @param path
+	 *            the path
+	 * @return the memory cache store for the path; if there is no content for
+	 *         the path, the returned store is not registered in the cache
+	 */
+	public CachedMemoryHandle getMemoryStore(String path) {
+		CachedMemoryHandle mstore = this.cacheMap.get(path);
+		if (mstore != null && mstore.exists()) {
+			if (mstore.isSpilled()) {
+				this.spillHitCount.incrementAndGet();
+			} else {
+				this.hitCount.incrementAndGet();
+			}
+			return mstore;
+		}
+		this.missCount.incrementAndGet();
+		return new CachedMemoryHandle(path, this);
 	}
 
 	/**
-	 * 
+	 *
 	 * @param path
 	 *            the path
 	 * @return a memory cache store, either a new one or a cached one
 	 */
 	public CachedMemoryHandle getOrCreateMemoryStore(String path) {
-		synchronized (this.cacheMap) {
-
-			CachedMemoryHandle mstore = this.cacheMap.get(path);
-			if (mstore != null) {
-				return mstore;
-			}
-			mstore = new CachedMemoryHandle(path, this);
-			this.cacheMap.put(path, mstore);
+		CachedMemoryHandle mstore = this.cacheMap.get(path);
+		if (mstore != null) {
 			return mstore;
 		}
+		mstore = new CachedMemoryHandle(path, this);
+		CachedMemoryHandle existing = this.cacheMap.putIfAbsent(path, mstore);
+		if (existing != null) {
+			return existing;
+		}
+		return mstore;
 	}
 
 	/**
 	 * Removes a memory cache store from the cache.
-	 * 
+	 *
 	 * @param path
 	 *            the path
 	 */
 	public void removeStore(String path) {
-		this.cacheMap.remove(path);
+		CachedMemoryHandle mstore = this.cacheMap.remove(path);
+		if (mstore != null) {
+			mstore.discard(true);
+		}
 	}
 
-	public void removeStoresRecursively(String path) {
-		ArrayList<String> keysToBeRemoved = new ArrayList<String>();
+	/**
+	 * Removes a given memory cache store from the cache.
+	 *
+	 * @param path
+	 *            the path
+	 * @param mstore
+	 *            the store; it is only removed if it is still registered for
+	 *            the path
+	 */
+	void removeStore(String path, CachedMemoryHandle mstore) {
+		this.cacheMap.remove(path, mstore);
+	}
 
+	/**
+	 * Removes all memory cache stores whose path starts with the given prefix
+	 *
+	 * @param path
+	 *            the prefix
+	 */
+	public void removeStoresRecursively(String path) {
 		for (String storePath : this.cacheMap.keySet()) {
 			if (storePath.startsWith(path)) {
-				keysToBeRemoved.add(storePath);
+				CachedMemoryHandle mstore = this.cacheMap.remove(storePath);
+				if (mstore != null) {
+					mstore.discard(false);
+				}
+			}
+		}
+
+		FileHandleFactory factory = getSpillFactory(false);
+		if (factory != null) {
+			factory.removeContentRecursive(null, new Path(path));
+		}
+	}
+
+	/**
+	 * @return the number of lookups served from memory
+	 */
+	long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * @return the number of lookups served from the spill file cache
+	 */
+	long getSpillHitCount() {
+		return this.spillHitCount.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not find content
+	 */
+	long getMissCount() {
+		return this.missCount.get();
+	}
+
+	/**
+	 * @return the number of entries spilled to the file cache
+	 */
+	long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	/**
+	 * @return the maximum number of bytes held in memory
+	 */
+	long getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * @return the number of bytes held in memory
+	 */
+	long getResidentBytes() {
+		return this.residentBytes.get();
+	}
+
+	/**
+	 * Called by a store after its content became resident or changed its
+	 * size; the store must hold its lock, so that the accounting follows the
+	 * order of its changes, and call {@link #evictIfNeeded()} after releasing
+	 * it
+	 *
+	 * @param path
+	 *            the path
+	 * @param delta
+	 *            the change of the resident size in bytes
+	 * @param added
+	 *            <code>true</code> if the content was not resident before
+	 */
+	void stored(String path, long delta, boolean added) {
+		synchronized (this.policy) {
+			if (added) {
+				this.policy.added(path);
+			} else {
+				this.policy.accessed(path);
 			}
 		}
+		this.residentBytes.addAndGet(delta);
+	}
+
+	/**
+	 * Called by a store whose resident content was read
+	 *
+	 * @param path
+	 *            the path
+	 */
+	void accessed(String path) {
+		synchronized (this.policy) {
+			this.policy.accessed(path);
+		}
+	}
+
+	/**
+	 * Called by a store whose content is no longer resident; the store must
+	 * hold its lock
+	 *
+	 * @param path
+	 *            the path
+	 * @param size
+	 *            the number of bytes released
+	 */
+	void released(String path, long size) {
+		synchronized (this.policy) {
+			this.policy.removed(path);
+		}
+		this.residentBytes.addAndGet(-size);
+	}
+
+	/**
+	 * Spills content until the resident size is within the budget; must not
+	 * be called while holding the lock of a store
+	 */
+	void evictIfNeeded() {
+		while (this.residentBytes.get() > this.budget) {
+			String victim;
+			synchronized (this.policy) {
+				victim = this.policy.evict();
+			}
+			if (victim == null) {
+				return;
+			}
+
+			CachedMemoryHandle mstore = this.cacheMap.get(victim);
+			if (mstore == null) {
+				continue;
+			}
+
+			// the store updates the resident size itself
+			long freed = mstore.spill();
+			this.evictionCount.incrementAndGet();
+
+			if (SfsSpiTraceLocation.CACHESERVICE.isActive()) {
+				SfsSpiTraceLocation.getTrace().trace(SfsSpiTraceLocation.CACHESERVICE.getLocation(),
+						"Memory cache evicted " + victim + " (" + freed + " bytes)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+		}
+	}
+
+	/**
+	 * Writes content to the spill file cache
+	 *
+	 * @param path
+	 *            the path
+	 * @param content
+	 *            the content
+	 * @throws CoreException
+	 *             upon failure
+	 */
+	void writeSpilled(String path, MemoryContent content) throws CoreException {
+		IPath key = new Path(path);
+		ITemporaryContentHandle tempHandle = getSpillFactory(true).createTemporaryHandle(null, key, false);
+		InputStream input = content.openInputStream();
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				tempHandle.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			Util.safeClose(tempHandle.closeAndGetContents());
+			tempHandle.rollback();
+			throw new SemanticResourceException(SemanticResourceStatusCode.FILECACHE_ERROR_WRITING_CONTENT, key, null, e);
+		}
+		Util.safeClose(tempHandle.closeAndGetContents());
+		tempHandle.commit();
+	}
+
+	/**
+	 * @param path
+	 *            the path
+	 * @return a stream on the spilled content
+	 * @throws CoreException
+	 *             upon failure
+	 */
+	InputStream openSpilled(String path) throws CoreException {
+		return getSpillFactory(true).createCacheContentHandle(null, new Path(path)).openInputStream();
+	}
+
+	/**
+	 * @param path
+	 *            the path
+	 * @return the spilled content
+	 * @throws CoreException
+	 *             upon failure
+	 */
+	byte[] readSpilled(String path) throws CoreException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		Util.transferStreams(openSpilled(path), bos, null);
+		return bos.toByteArray();
+	}
+
+	/**
+	 * @param path
+	 *            the path
+	 */
+	void deleteSpilled(String path) {
+		FileHandleFactory factory = getSpillFactory(false);
+		if (factory != null) {
+			factory.createCacheContentHandle(null, new Path(path)).delete();
+		}
+	}
+
+	/**
+	 * Logs a failure
+	 *
+	 * @param e
+	 *            the exception
+	 */
+	void log(CoreException e) {
+		try {
+			ISemanticFileSystem sfs = (ISemanticFileSystem) EFS.getFileSystem(ISemanticFileSystem.SCHEME);
+			sfs.getLog().log(e);
+		} catch (CoreException e1) {
+			// $JL-EXC$ nothing we can do
+		}
+	}
+
+	private FileHandleFactory getSpillFactory(boolean create) {
+		synchronized (this.spillLock) {
+			if (this.spillFactory == null && create) {
+				// spilled content of a previous session is obsolete
+				File spillDir = SemanticResourcesPlugin.getCacheLocation().append(SPILL_DIR_NAME).toFile();
+				deleteRecursively(spillDir);
+				spillDir.mkdirs();
+				this.spillFactory = new FileHandleFactory(spillDir);
+			}
+			return this.spillFactory;
+		}
+	}
 
-		for (String string : keysToBeRemoved) {
-			this.cacheMap.remove(string);
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
 		}
+		file.delete();
 	}
 
 }
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic.cacheservice;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The eviction policy of the {@link MemoryCache}.
+ * <p>
+ * The policy keeps track of the resident entries of the cache and selects the
+ * entry to be evicted if the cache exceeds its budget. Implementations are not
+ * thread-safe; the cache synchronizes on the policy instance.
+ */
+abstract class MemoryCachePolicy {
+
+	/**
+	 * Name of the least recently used policy
+	 */
+	static final String LRU = "lru"; //$NON-NLS-1$
+	/**
+	 * Name of the least frequently used policy
+	 */
+	static final String LFU = "lfu"; //$NON-NLS-1$
+
+	/**
+	 * @param name
+	 *            the name of the policy; unknown names yield the least
+	 *            recently used policy
+	 * @return a new policy instance
+	 */
+	static MemoryCachePolicy create(String name) {
+		if (LFU.equalsIgnoreCase(name)) {
+			return new LfuPolicy();
+		}
+		return new LruPolicy();
+	}
+
+	/**
+	 * An entry became resident
+	 *
+	 * @param key
+	 *            the key
+	 */
+	abstract void added(String key);
+
+	/**
+	 * A resident entry was accessed
+	 *
+	 * @param key
+	 *            the key
+	 */
+	abstract void accessed(String key);
+
+	/**
+	 * An entry is no longer resident
+	 *
+	 * @param key
+	 *            the key
+	 */
+	abstract void removed(String key);
+
+	/**
+	 * Selects the entry to be evicted and forgets about it
+	 *
+	 * @return the key of the entry, or <code>null</code> if there are no
+	 *         resident entries
+	 */
+	abstract String evict();
+
+	/**
+	 * Evicts the least recently used entry.
+	 */
+	private static final class LruPolicy extends MemoryCachePolicy {
+
+		private final LinkedHashMap<String, Boolean> entries = new LinkedHashMap<String, Boolean>(16, 0.75f, true);
+
+		void added(String key) {
+			this.entries.put(key, Boolean.TRUE);
+		}
+
+		void accessed(String key) {
+			this.entries.get(key);
+		}
+
+		void removed(String key) {
+			this.entries.remove(key);
+		}
+
+		String evict() {
+			Iterator<String> it = this.entries.keySet().iterator();
+			if (!it.hasNext()) {
+				return null;
+			}
+			String key = it.next();
+			it.remove();
+			return key;
+		}
+	}
+
+	/**
+	 * Evicts the least frequently used entry among the least recently used
+	 * ones.
+	 * <p>
+	 * Only a small sample from the cold end of the access order is inspected,
+	 * so eviction does not depend on the number of entries. Frequencies are
+	 * halved periodically so that entries which were popular a long time ago
+	 * do not stay in the cache forever.
+	 */
+	private static final class LfuPolicy extends MemoryCachePolicy {
+
+		// the number of entries inspected per eviction
+		private static final int SAMPLE_SIZE = 8;
+		// the number of accesses after which all frequencies are halved
+		private static final int AGING_PERIOD = 10000;
+
+		private final LinkedHashMap<String, int[]> entries = new LinkedHashMap<String, int[]>(16, 0.75f, true);
+		private int accesses = 0;
+
+		void added(String key) {
+			this.entries.put(key, new int[] {1});
+		}
+
+		void accessed(String key) {
+			int[] frequency = this.entries.get(key);
+			if (frequency != null) {
+				frequency[0]++;
+				if (++this.accesses >= AGING_PERIOD) {
+					this.accesses = 0;
+					for (int[] value : this.entries.values()) {
+						value[0] = value[0] >> 1;
+					}
+				}
+			}
+		}
+
+		void removed(String key) {
+			this.entries.remove(key);
+		}
+
+		String evict() {
+			String victim = null;
+			int victimFrequency = Integer.MAX_VALUE;
+			int inspected = 0;
+
+			for (Map.Entry<String, int[]> entry : this.entries.entrySet()) {
+				if (entry.getValue()[0] < victimFrequency) {
+					victim = entry.getKey();
+					victimFrequency = entry.getValue()[0];
+				}
+				if (++inspected >= SAMPLE_SIZE) {
+					break;
+				}
+			}
+
+			if (victim != null) {
+				this.entries.remove(victim);
+			}
+			return victim;
+		}
+	}
+
+}
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic.cacheservice;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The content of a {@link CachedMemoryHandle} as a list of chunks.
+ * <p>
+ * Appending adds chunks instead of copying the existing content; large
+ * appended arrays are taken over without copying. An instance is a view
+ * bounded by its length, not an immutable copy: the instance created by
+ * {@link #append(byte[])} shares the <code>chunks</code> and
+ * <code>used</code> arrays of its predecessor, and the append writes into the
+ * free space of the last chunk and into these arrays. An append never
+ * modifies bytes within the length of an existing view, and readers never
+ * look beyond the length of their view, so a stream opened on a view reads a
+ * stable snapshot without copying.
+ * <p>
+ * This only holds as long as the chunks are modified by appends alone. Only
+ * the most recent view of a content may be appended to; the caller must
+ * serialize appends and publish the new view safely, and the arrays passed
+ * to {@link #wrap(byte[])} and {@link #append(byte[])} must not be modified
+ * afterwards.
+ */
+final class MemoryContent {
+
+	// the capacity of chunks allocated for small appends
+	private static final int CHUNK_SIZE = 8192;
+
+	/**
+	 * The empty content
+	 */
+	static final MemoryContent EMPTY = new MemoryContent(new byte[0][], new int[0], 0, 0);
+
+	private final byte[][] chunks;
+	private final int[] used;
+	private final int count;
+	private final long length;
+
+	private MemoryContent(byte[][] chunks, int[] used, int count, long length) {
+		this.chunks = chunks;
+		this.used = used;
+		this.count = count;
+		this.length = length;
+	}
+
+	/**
+	 * @param content
+	 *            the content; the array is taken over without copying
+	 * @return a content consisting of the given array
+	 */
+	static MemoryContent wrap(byte[] content) {
+		if (content.length == 0) {
+			return EMPTY;
+		}
+		return new MemoryContent(new byte[][] {content}, new int[] {content.length}, 1, content.length);
+	}
+
+	/**
+	 * @return the length in bytes
+	 */
+	long length() {
+		return this.length;
+	}
+
+	/**
+	 * Appends data; the data array must not be modified afterwards
+	 *
+	 * @param data
+	 *            the data
+	 * @return the new view
+	 */
+	MemoryContent append(byte[] data) {
+		if (data.length == 0) {
+			return this;
+		}
+		if (this.count == 0) {
+			return wrap(data);
+		}
+
+		byte[][] newChunks = this.chunks;
+		int[] newUsed = this.used;
+		int newCount = this.count;
+		int offset = 0;
+
+		// fill the free space of the last chunk; the space is beyond the length
+		// of all existing views
+		int last = newCount - 1;
+		int free = newChunks[last].length - newUsed[last];
+		if (free > 0) {
+			int n = Math.min(free, data.length);
+			System.arraycopy(data, 0, newChunks[last], newUsed[last], n);
+			newUsed[last] += n;
+			offset = n;
+		}
+
+		int remaining = data.length - offset;
+		if (remaining > 0) {
+			if (newCount == newChunks.length) {
+				int capacity = newCount * 2;
+				byte[][] grownChunks = new byte[capacity][];
+				int[] grownUsed = new int[capacity];
+				System.arraycopy(newChunks, 0, grownChunks, 0, newCount);
+				System.arraycopy(newUsed, 0, grownUsed, 0, newCount);
+				newChunks = grownChunks;
+				newUsed = grownUsed;
+			}
+
+			byte[] chunk;
+			if (offset == 0 && remaining >= CHUNK_SIZE) {
+				chunk = data;
+			} else {
+				chunk = new byte[Math.max(remaining, CHUNK_SIZE)];
+				System.arraycopy(data, offset, chunk, 0, remaining);
+			}
+			newChunks[newCount] = chunk;
+			newUsed[newCount] = remaining;
+			newCount++;
+		}
+
+		return new MemoryContent(newChunks, newUsed, newCount, this.length + data.length);
+	}
+
+	/**
+	 * @return a stream reading this view
+	 */
+	InputStream openInputStream() {
+		return new ChunkInputStream();
+	}
+
+	/**
+	 * Reads a view without copying; the bytes of the last chunk beyond the
+	 * length of the view are never read
+	 */
+	private final class ChunkInputStream extends InputStream {
+
+		private int chunk = 0;
+		private int chunkPos = 0;
+		private long pos = 0;
+		private long markPos = 0;
+
+		@Override
+		public int read() {
+			if (!advance()) {
+				return -1;
+			}
+			int b = MemoryContent.this.chunks[this.chunk][this.chunkPos] & 0xff;
+			this.chunkPos++;
+			this.pos++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			int total = 0;
+			while (total < len && advance()) {
+				int n = (int) Math.min(len - total, chunkAvailable());
+				System.arraycopy(MemoryContent.this.chunks[this.chunk], this.chunkPos, b, off + total, n);
+				this.chunkPos += n;
+				this.pos += n;
+				total += n;
+			}
+			return total == 0 ? -1 : total;
+		}
+
+		@Override
+		public long skip(long n) {
+			long target = Math.min(MemoryContent.this.length, this.pos + Math.max(n, 0));
+			long skipped = target - this.pos;
+			seek(target);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, MemoryContent.this.length - this.pos);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return true;
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) {
+			this.markPos = this.pos;
+		}
+
+		@Override
+		public synchronized void reset() throws IOException {
+			seek(this.markPos);
+		}
+
+		private long chunkAvailable() {
+			long inChunk = MemoryContent.this.used[this.chunk] - this.chunkPos;
+			return Math.min(inChunk, MemoryContent.this.length - this.pos);
+		}
+
+		/*
+		 * moves to the next chunk if the current one is exhausted; returns
+		 * false at the end of the view
+		 */
+		private boolean advance() {
+			if (this.pos >= MemoryContent.this.length) {
+				return false;
+			}
+			while (this.chunkPos >= MemoryContent.this.used[this.chunk]) {
+				this.chunk++;
+				this.chunkPos = 0;
+			}
+			return true;
+		}
+
+		private void seek(long target) {
+			this.chunk = 0;
+			this.chunkPos = 0;
+			long remaining = target;
+			while (remaining > 0 && remaining >= MemoryContent.this.used[this.chunk]) {
+				remaining -= MemoryContent.this.used[this.chunk];
+				this.chunk++;
+				if (this.chunk == MemoryContent.this.count) {
+					// at the end of the last chunk
+					this.chunk--;
+					this.chunkPos = MemoryContent.this.used[this.chunk];
+					this.pos = target;
+					return;
+				}
+			}
+			this.chunkPos = (int) remaining;
+			this.pos = target;
+		}
+	}
+
+}
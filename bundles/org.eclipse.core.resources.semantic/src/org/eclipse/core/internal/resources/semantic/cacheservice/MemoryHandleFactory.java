@@ -26,7 +26,7 @@ public class MemoryHandleFactory implements IContentHandleFactory {
 
 	public ICachedContentHandle createCacheContentHandle(ICacheService service, IPath path) {
 
-		return MemoryCache.getInstance().getOrCreateMemoryStore(path.toString());
+		return MemoryCache.getInstance().getMemoryStore(path.toString());
 	}
 
 	/**
@@ -42,4 +42,48 @@ public class MemoryHandleFactory implements IContentHandleFactory {
 		MemoryCache.getInstance().removeStoresRecursively(path.addTrailingSeparator().toString());
 	}
 
+	/**
+	 * @return the number of cache lookups served from memory
+	 */
+	public long getHitCount() {
+		return MemoryCache.getInstance().getHitCount();
+	}
+
+	/**
+	 * @return the number of cache lookups served from content that was
+	 *         spilled to the file system
+	 */
+	public long getSpillHitCount() {
+		return MemoryCache.getInstance().getSpillHitCount();
+	}
+
+	/**
+	 * @return the number of cache lookups that did not find content
+	 */
+	public long getMissCount() {
+		return MemoryCache.getInstance().getMissCount();
+	}
+
+	/**
+	 * @return the number of entries spilled to the file system in order to
+	 *         stay within the memory budget
+	 */
+	public long getEvictionCount() {
+		return MemoryCache.getInstance().getEvictionCount();
+	}
+
+	/**
+	 * @return the maximum number of bytes held in memory
+	 */
+	public long getBudget() {
+		return MemoryCache.getInstance().getBudget();
+	}
+
+	/**
+	 * @return the number of bytes held in memory
+	 */
+	public long getResidentBytes() {
+		return MemoryCache.getInstance().getResidentBytes();
+	}
+
 }
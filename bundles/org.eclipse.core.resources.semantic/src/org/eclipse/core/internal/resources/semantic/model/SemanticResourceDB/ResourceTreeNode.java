@@ -124,6 +124,18 @@ public interface ResourceTreeNode extends EObject {
 	 */
 	EList<ResourceTreeNode> getChildren();
 
+	/**
+	 * <!-- begin-user-doc --> Returns the child with the given name using the
+	 * name index of the children list; if several children carry the same
+	 * name, the first one in list order is returned. <!-- end-user-doc -->
+	 * 
+	 * @param childName
+	 *            the name of the child
+	 * @return the child, or <code>null</code>
+	 * @generated NOT
+	 */
+	ResourceTreeNode getChild(String childName);
+
 	/**
 	 * Returns the value of the '<em><b>Parent</b></em>' container reference. It
 	 * is bidirectional and its opposite is '
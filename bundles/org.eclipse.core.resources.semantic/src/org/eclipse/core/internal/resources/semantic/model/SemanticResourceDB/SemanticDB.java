@@ -56,4 +56,16 @@ public interface SemanticDB extends EObject {
 	 */
 	EList<TreeRoot> getRoots();
 
+	/**
+	 * <!-- begin-user-doc --> Returns the root with the given name using the
+	 * name index of the roots list; if several roots carry the same name, the
+	 * first one in list order is returned. <!-- end-user-doc -->
+	 * 
+	 * @param rootName
+	 *            the name of the root
+	 * @return the root, or <code>null</code>
+	 * @generated NOT
+	 */
+	TreeRoot getRoot(String rootName);
+
 } // SemanticDB
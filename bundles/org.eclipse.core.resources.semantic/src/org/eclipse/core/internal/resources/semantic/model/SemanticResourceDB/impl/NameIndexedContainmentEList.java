@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.impl;
+
+import java.util.HashMap;
+
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.util.EObjectContainmentWithInverseEList;
+
+/**
+ * Containment list for tree nodes that keeps a name index of its elements.
+ * <p>
+ * The index maps each name to the first element in list order carrying that
+ * name, so lookups by name return the same element as a linear scan would.
+ * The index is maintained by the list mutation hooks and, for renames, by
+ * {@link ResourceTreeNodeImpl#setName(String)}; it is transient and is rebuilt
+ * while the model is being loaded.
+ * <p>
+ * Like the list itself, the index is not thread-safe; callers are expected to
+ * hold the semantic file system lock.
+ *
+ * @param <E>
+ *            the element type
+ */
+class NameIndexedContainmentEList<E extends ResourceTreeNode> extends EObjectContainmentWithInverseEList<E> {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient HashMap<String, E> nameIndex;
+
+	NameIndexedContainmentEList(Class<?> dataClass, InternalEObject owner, int featureID, int inverseFeatureID) {
+		super(dataClass, owner, featureID, inverseFeatureID);
+	}
+
+	/**
+	 * Returns the first element with the given name
+	 *
+	 * @param name
+	 *            the name
+	 * @return the element, or <code>null</code>
+	 */
+	E getByName(String name) {
+		if (this.nameIndex == null) {
+			return null;
+		}
+		return this.nameIndex.get(name);
+	}
+
+	/**
+	 * Updates the index after an element has been renamed
+	 *
+	 * @param element
+	 *            the renamed element
+	 * @param oldName
+	 *            the name before the rename
+	 */
+	void elementRenamed(E element, String oldName) {
+		if (this.nameIndex == null) {
+			return;
+		}
+		if (this.nameIndex.get(oldName) == element) {
+			reindex(oldName);
+		}
+		indexAdded(element);
+	}
+
+	@Override
+	protected void didAdd(int index, E newObject) {
+		super.didAdd(index, newObject);
+		if (this.nameIndex == null) {
+			this.nameIndex = new HashMap<String, E>();
+		}
+		if (index == this.size - 1) {
+			// appended: an element with the same name that is already indexed
+			// comes first
+			if (!this.nameIndex.containsKey(newObject.getName())) {
+				this.nameIndex.put(newObject.getName(), newObject);
+			}
+		} else {
+			indexAdded(newObject);
+		}
+	}
+
+	@Override
+	protected void didRemove(int index, E oldObject) {
+		super.didRemove(index, oldObject);
+		if (this.nameIndex != null && this.nameIndex.get(oldObject.getName()) == oldObject) {
+			reindex(oldObject.getName());
+		}
+	}
+
+	@Override
+	protected void didSet(int index, E newObject, E oldObject) {
+		super.didSet(index, newObject, oldObject);
+		if (this.nameIndex == null) {
+			this.nameIndex = new HashMap<String, E>();
+		}
+		if (this.nameIndex.get(oldObject.getName()) == oldObject) {
+			reindex(oldObject.getName());
+		}
+		indexAdded(newObject);
+	}
+
+	@Override
+	protected void didMove(int index, E movedObject, int oldIndex) {
+		super.didMove(index, movedObject, oldIndex);
+		if (this.nameIndex != null) {
+			reindex(movedObject.getName());
+		}
+	}
+
+	@Override
+	protected void didClear(int oldSize, Object[] oldData) {
+		// the default implementation calls didRemove for each element which
+		// would rescan the (already empty) list
+		this.nameIndex = null;
+	}
+
+	private void indexAdded(E element) {
+		E indexed = this.nameIndex.get(element.getName());
+		if (indexed == null || indexOf(element) < indexOf(indexed)) {
+			this.nameIndex.put(element.getName(), element);
+		}
+	}
+
+	private void reindex(String name) {
+		for (int i = 0; i < this.size; i++) {
+			@SuppressWarnings("unchecked")
+			E element = (E) this.data[i];
+			if (name == null ? element.getName() == null : name.equals(element.getName())) {
+				this.nameIndex.put(name, element);
+				return;
+			}
+		}
+		this.nameIndex.remove(name);
+	}
+
+}
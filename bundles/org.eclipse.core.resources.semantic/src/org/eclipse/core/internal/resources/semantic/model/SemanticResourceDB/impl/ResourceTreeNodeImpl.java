@@ -28,7 +28,6 @@ import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
 import org.eclipse.emf.ecore.impl.EObjectImpl;
-import org.eclipse.emf.ecore.util.EObjectContainmentWithInverseEList;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.InternalEList;
 
@@ -327,30 +326,52 @@ public class ResourceTreeNodeImpl extends EObjectImpl implements ResourceTreeNod
 	}
 
 	/**
-	 * <!-- begin-user-doc --> <!-- end-user-doc -->
+	 * <!-- begin-user-doc --> Keeps the name index of the containing list up
+	 * to date. <!-- end-user-doc -->
 	 * 
-	 * @generated
+	 * @generated NOT
 	 */
+	@SuppressWarnings("unchecked")
 	public void setName(String newName) {
 		String oldName = name;
 		name = newName;
+		InternalEObject container = eInternalContainer();
+		if (container != null && eContainmentFeature() != null) {
+			Object containingList = container.eGet(eContainmentFeature());
+			if (containingList instanceof NameIndexedContainmentEList) {
+				((NameIndexedContainmentEList<ResourceTreeNode>) containingList).elementRenamed(this, oldName);
+			}
+		}
 		if (eNotificationRequired())
 			eNotify(new ENotificationImpl(this, Notification.SET, SemanticResourceDBPackage.RESOURCE_TREE_NODE__NAME, oldName, name));
 	}
 
 	/**
-	 * <!-- begin-user-doc --> <!-- end-user-doc -->
+	 * <!-- begin-user-doc --> The children are held in a list that maintains
+	 * a name index, see {@link #getChild(String)}. <!-- end-user-doc -->
 	 * 
-	 * @generated
+	 * @generated NOT
 	 */
 	public EList<ResourceTreeNode> getChildren() {
 		if (children == null) {
-			children = new EObjectContainmentWithInverseEList<ResourceTreeNode>(ResourceTreeNode.class, this,
+			children = new NameIndexedContainmentEList<ResourceTreeNode>(ResourceTreeNode.class, this,
 					SemanticResourceDBPackage.RESOURCE_TREE_NODE__CHILDREN, SemanticResourceDBPackage.RESOURCE_TREE_NODE__PARENT);
 		}
 		return children;
 	}
 
+	/**
+	 * <!-- begin-user-doc --> <!-- end-user-doc -->
+	 * 
+	 * @generated NOT
+	 */
+	public ResourceTreeNode getChild(String childName) {
+		if (children == null) {
+			return null;
+		}
+		return ((NameIndexedContainmentEList<ResourceTreeNode>) children).getByName(childName);
+	}
+
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
 	 * 
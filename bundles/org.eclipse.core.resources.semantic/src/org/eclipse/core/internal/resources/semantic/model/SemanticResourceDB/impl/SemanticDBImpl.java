@@ -24,7 +24,6 @@ import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.EObjectImpl;
-import org.eclipse.emf.ecore.util.EObjectContainmentWithInverseEList;
 import org.eclipse.emf.ecore.util.InternalEList;
 
 /**
@@ -73,18 +72,31 @@ public class SemanticDBImpl extends EObjectImpl implements SemanticDB {
 	}
 
 	/**
-	 * <!-- begin-user-doc --> <!-- end-user-doc -->
+	 * <!-- begin-user-doc --> The roots are held in a list that maintains a
+	 * name index, see {@link #getRoot(String)}. <!-- end-user-doc -->
 	 * 
-	 * @generated
+	 * @generated NOT
 	 */
 	public EList<TreeRoot> getRoots() {
 		if (roots == null) {
-			roots = new EObjectContainmentWithInverseEList<TreeRoot>(TreeRoot.class, this, SemanticResourceDBPackage.SEMANTIC_DB__ROOTS,
+			roots = new NameIndexedContainmentEList<TreeRoot>(TreeRoot.class, this, SemanticResourceDBPackage.SEMANTIC_DB__ROOTS,
 					SemanticResourceDBPackage.TREE_ROOT__PARENT_DB);
 		}
 		return roots;
 	}
 
+	/**
+	 * <!-- begin-user-doc --> <!-- end-user-doc -->
+	 * 
+	 * @generated NOT
+	 */
+	public TreeRoot getRoot(String rootName) {
+		if (roots == null) {
+			return null;
+		}
+		return ((NameIndexedContainmentEList<TreeRoot>) roots).getByName(rootName);
+	}
+
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
 	 * 
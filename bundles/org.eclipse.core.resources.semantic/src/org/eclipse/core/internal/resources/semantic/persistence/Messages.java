@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic.persistence;
+
+import org.eclipse.osgi.util.NLS;
+
+public class Messages extends NLS {
+	private static final String BUNDLE_NAME = "org.eclipse.core.internal.resources.semantic.persistence.messages"; //$NON-NLS-1$
+	static {
+		// initialize resource bundle
+		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
+	}
+
+	private Messages() {
+		//
+	}
+
+	public static String SemanticDBJournal_EmptyPath_XMSG;
+	public static String SemanticDBJournal_InvalidJournal_XMSG;
+	public static String SemanticDBJournal_JournalTruncated_XMSG;
+	public static String SemanticDBJournal_RecordingFailed_XMSG;
+	public static String SemanticDBJournal_UnknownRecord_XMSG;
+	public static String SemanticDBSegments_RenameFailed_XMSG;
+}
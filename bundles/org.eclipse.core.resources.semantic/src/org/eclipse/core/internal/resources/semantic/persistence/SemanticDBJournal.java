@@ -0,0 +1,866 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.internal.resources.semantic.Util;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticDB;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBPackage;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeRoot;
+import org.eclipse.core.internal.resources.semantic.util.ISemanticFileSystemLog;
+import org.eclipse.core.resources.semantic.SemanticResourceException;
+import org.eclipse.core.resources.semantic.SemanticResourceStatusCode;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Append-only change journal for the Semantic File System metadata.
+ * <p>
+ * Changes of the persistent state of the {@link SemanticDB} are recorded by an
+ * adapter and written to the journal file by {@link #flush()}; this way, the
+ * cost of a flush is proportional to the size of the change rather than to the
+ * size of the database. A checkpoint writes a complete snapshot of the
+ * database after which the journal is reset; upon startup, the journal is
+ * replayed on top of the last snapshot.
+ * <p>
+ * All records overwrite state at a path (a subtree is put, removed, or an
+ * attribute is set; renames and moves are recorded as removal and put), so
+ * replaying the journal on a snapshot that already contains some or all of
+ * its changes yields the same result. Thus, a crash between writing a
+ * snapshot and resetting the journal does no harm.
+ * <p>
+ * Each record is written as length, payload, and CRC32 of the payload; a
+ * damaged tail (e.g. after a crash during a flush) is detected and dropped
+ * upon replay.
+ */
+public final class SemanticDBJournal {
+
+	private static final int MAGIC = 0x53464a31; // "SFJ1"
+
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_REMOVE = 2;
+	private static final byte RECORD_SET = 3;
+
+	private static final String[] ROOT_PATH = new String[0];
+
+	private final File journalFile;
+	private final ISemanticFileSystemLog log;
+	private final JournalRecorder recorder = new JournalRecorder();
+
+	// guarded by this
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private int pendingRecords = 0;
+	private boolean recordingFailed = false;
+	// the roots with changes since the last reset
+	private HashSet<String> changedRoots = new HashSet<String>();
+	// the changes of the batch of the current thread; not set outside of
+	// batches
+	private final ThreadLocal<BatchChanges> batchChanges = new ThreadLocal<BatchChanges>();
+
+	// guarded by writeLock
+	private final Object writeLock = new Object();
+	private long journalSize = -1;
+
+	/**
+	 * @param journalFile
+	 *            the journal file
+	 * @param log
+	 *            the log
+	 */
+	public SemanticDBJournal(File journalFile, ISemanticFileSystemLog log) {
+		this.journalFile = journalFile;
+		this.log = log;
+	}
+
+	/**
+	 * Starts recording changes of the database
+	 *
+	 * @param db
+	 *            the database
+	 */
+	public void attach(SemanticDB db) {
+		db.eAdapters().add(this.recorder);
+	}
+
+	/**
+	 * Stops recording changes of the database
+	 *
+	 * @param db
+	 *            the database
+	 */
+	void detach(SemanticDB db) {
+		db.eAdapters().remove(this.recorder);
+	}
+
+	/**
+	 * Starts recording changes of nodes that have been added to a recorded
+	 * parent without notification
+	 *
+	 * @param parent
+	 *            the parent
+	 */
+	void attachChildren(ResourceTreeNode parent) {
+		if (parent.eAdapters().contains(this.recorder)) {
+			for (ResourceTreeNode child : parent.getChildren()) {
+				child.eAdapters().add(this.recorder);
+			}
+		}
+	}
+
+	/**
+	 * Stops recording changes of a node that has been removed from the
+	 * database without notification, and of its children
+	 *
+	 * @param node
+	 *            the node
+	 */
+	void detach(ResourceTreeNode node) {
+		node.eAdapters().remove(this.recorder);
+	}
+
+	/**
+	 * Starts a batch for the current thread; the changes made by this thread
+	 * are not recorded one by one. Instead, the paths of the changed nodes are
+	 * collected, and {@link #endBatch(Map)} records the final state of each of
+	 * them once.
+	 *
+	 * @return <code>false</code> if the current thread is already in a batch
+	 */
+	public boolean beginBatch() {
+		if (this.batchChanges.get() != null) {
+			return false;
+		}
+		this.batchChanges.set(new BatchChanges());
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if the current thread is in a batch
+	 */
+	public boolean isInBatch() {
+		return this.batchChanges.get() != null;
+	}
+
+	/**
+	 * @return the names of the roots changed by the batch of the current
+	 *         thread
+	 */
+	public Set<String> getBatchRoots() {
+		return new HashSet<String>(this.batchChanges.get().roots);
+	}
+
+	/**
+	 * Ends the batch of the current thread and records the current state of
+	 * the nodes changed during the batch: subtrees that have been added,
+	 * removed, or renamed are put or removed, and changed attributes of other
+	 * nodes are set; the cost is proportional to the size of the changes
+	 * rather than to the size of the changed roots. The caller must hold the
+	 * locks of the changed roots.
+	 *
+	 * @param roots
+	 *            the current roots by name for the roots changed by the
+	 *            batch; <code>null</code> values for removed roots
+	 */
+	public void endBatch(Map<String, TreeRoot> roots) {
+		BatchChanges changes = this.batchChanges.get();
+		this.batchChanges.remove();
+
+		try {
+			for (ChangedNode changed : changes.nodes.values()) {
+				if (!changed.replaced || changes.isCoveredByParent(changed.path)) {
+					continue;
+				}
+				ResourceTreeNode node = findNode(roots, changed.path);
+				if (node != null) {
+					// nodes added during the batch are not yet observed
+					attachSubtree(node);
+					String[] parentPath = new String[changed.path.length - 1];
+					System.arraycopy(changed.path, 0, parentPath, 0, parentPath.length);
+					this.recorder.recordPut(parentPath, node);
+				} else {
+					this.recorder.recordRemove(changed.path);
+				}
+			}
+			for (ChangedNode changed : changes.nodes.values()) {
+				if (changed.features.isEmpty() || changes.isCovered(changed.path)) {
+					continue;
+				}
+				ResourceTreeNode node = findNode(roots, changed.path);
+				if (node == null) {
+					continue;
+				}
+				for (String featureName : changed.features) {
+					EStructuralFeature feature = node.eClass().getEStructuralFeature(featureName);
+					this.recorder.recordSet(changed.path, featureName, node.eGet(feature));
+				}
+			}
+		} catch (IOException e) {
+			recordingFailed(e);
+		}
+	}
+
+	/**
+	 * Marks a root as changed so that its segment is written with the next
+	 * snapshot
+	 *
+	 * @param rootName
+	 *            the root name
+	 */
+	synchronized void markChanged(String rootName) {
+		this.changedRoots.add(rootName);
+	}
+
+	private void attachSubtree(ResourceTreeNode node) {
+		if (!node.eAdapters().contains(this.recorder)) {
+			node.eAdapters().add(this.recorder);
+		}
+		for (ResourceTreeNode child : node.getChildren()) {
+			attachSubtree(child);
+		}
+	}
+
+	/**
+	 * @return the names of the roots that have been changed since the last
+	 *         reset
+	 */
+	public synchronized Set<String> getChangedRoots() {
+		return new HashSet<String>(this.changedRoots);
+	}
+
+	/**
+	 * @param rootName
+	 *            the root name
+	 * @return <code>true</code> if the root has been changed since the last
+	 *         reset
+	 */
+	public synchronized boolean isRootChanged(String rootName) {
+		return this.changedRoots.contains(rootName);
+	}
+
+	/**
+	 * @return <code>true</code> if changes have been recorded that are not
+	 *         yet written to the journal file
+	 */
+	synchronized boolean hasPendingChanges() {
+		return this.pendingRecords > 0;
+	}
+
+	/**
+	 * @return <code>true</code> if a change could not be recorded; the next
+	 *         flush must write a snapshot
+	 */
+	public synchronized boolean isCheckpointRequired() {
+		return this.recordingFailed;
+	}
+
+	/**
+	 * Writes the recorded changes to the journal file
+	 *
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             on write failure; the changes remain pending
+	 */
+	public long flush() throws IOException {
+		synchronized (this.writeLock) {
+			byte[] bytes;
+			int records;
+			synchronized (this) {
+				if (this.pendingRecords == 0) {
+					return 0;
+				}
+				bytes = this.pending.toByteArray();
+				records = this.pendingRecords;
+			}
+
+			if (this.journalSize < 0) {
+				this.journalSize = initJournalFile();
+			}
+
+			FileOutputStream fos = new FileOutputStream(this.journalFile, true);
+			try {
+				fos.write(bytes);
+				fos.getFD().sync();
+			} finally {
+				Util.safeClose(fos);
+			}
+
+			this.journalSize += bytes.length;
+
+			synchronized (this) {
+				// records may have been added in the meantime
+				byte[] all = this.pending.toByteArray();
+				this.pending = new ByteArrayOutputStream();
+				this.pending.write(all, bytes.length, all.length - bytes.length);
+				this.pendingRecords -= records;
+			}
+			return bytes.length;
+		}
+	}
+
+	/**
+	 * @return the size of the journal file in bytes
+	 */
+	public long getSize() {
+		synchronized (this.writeLock) {
+			if (this.journalSize < 0) {
+				return this.journalFile.length();
+			}
+			return this.journalSize;
+		}
+	}
+
+	/**
+	 * Resets the journal after a snapshot has been written; the caller must
+	 * make sure that no changes are recorded concurrently
+	 *
+	 * @throws IOException
+	 *             on write failure
+	 */
+	public void reset() throws IOException {
+		synchronized (this.writeLock) {
+			synchronized (this) {
+				this.pending = new ByteArrayOutputStream();
+				this.pendingRecords = 0;
+				this.recordingFailed = false;
+				this.changedRoots = new HashSet<String>();
+			}
+			writeHeader();
+		}
+	}
+
+	/**
+	 * Applies the journal to the database; the caller must make sure that the
+	 * database is not accessed concurrently and that this journal does not
+	 * record the database changes while replaying
+	 *
+	 * @param db
+	 *            the database
+	 * @param segments
+	 *            the segments, used to load the roots affected by the journal
+	 * @return the number of records applied
+	 * @throws IOException
+	 *             on read failure
+	 */
+	public int replay(SemanticDB db, SemanticDBSegments segments) throws IOException {
+		synchronized (this.writeLock) {
+			if (!this.journalFile.exists()) {
+				return 0;
+			}
+
+			int applied = 0;
+			long position = 0;
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IOException(NLS.bind(Messages.SemanticDBJournal_InvalidJournal_XMSG, this.journalFile.getAbsolutePath()));
+				}
+				position = 4;
+
+				CRC32 crc = new CRC32();
+				while (true) {
+					byte[] payload;
+					try {
+						int length = in.readInt();
+						if (length <= 0 || length > this.journalFile.length()) {
+							break;
+						}
+						payload = new byte[length];
+						in.readFully(payload);
+						crc.reset();
+						crc.update(payload);
+						if (in.readInt() != (int) crc.getValue()) {
+							break;
+						}
+					} catch (EOFException e) {
+						// $JL-EXC$ incomplete last record
+						break;
+					}
+
+					applyRecord(db, segments, new DataInputStream(new ByteArrayInputStream(payload)));
+					applied++;
+					position += 4 + payload.length + 4;
+				}
+			} catch (EOFException e) {
+				// $JL-EXC$ empty or incomplete header
+			} finally {
+				Util.safeClose(in);
+			}
+
+			if (position < this.journalFile.length()) {
+				this.log.log(new SemanticResourceException(SemanticResourceStatusCode.SFS_INITIALIZATION_ERROR, Path.EMPTY,
+						NLS.bind(Messages.SemanticDBJournal_JournalTruncated_XMSG, this.journalFile.getAbsolutePath(), Long
+								.valueOf(position))));
+				truncate(position);
+			}
+			this.journalSize = -1;
+
+			return applied;
+		}
+	}
+
+	private long initJournalFile() throws IOException {
+		long length = this.journalFile.length();
+		if (length < 4) {
+			writeHeader();
+			return 4;
+		}
+		return length;
+	}
+
+	private void writeHeader() throws IOException {
+		FileOutputStream fos = new FileOutputStream(this.journalFile, false);
+		try {
+			DataOutputStream out = new DataOutputStream(fos);
+			out.writeInt(MAGIC);
+			out.flush();
+			fos.getFD().sync();
+		} finally {
+			Util.safeClose(fos);
+		}
+		this.journalSize = 4;
+	}
+
+	private void truncate(long position) throws IOException {
+		if (position < 4) {
+			writeHeader();
+			return;
+		}
+		RandomAccessFile raf = new RandomAccessFile(this.journalFile, "rw"); //$NON-NLS-1$
+		try {
+			raf.setLength(position);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void applyRecord(SemanticDB db, SemanticDBSegments segments, DataInputStream in) throws IOException {
+		// each record has its own string table
+		SemanticDBSerializer serializer = new SemanticDBSerializer();
+
+		byte recordType = in.readByte();
+		String[] path = serializer.readPath(in);
+
+		if (path.length == 0) {
+			throw new IOException(Messages.SemanticDBJournal_EmptyPath_XMSG);
+		}
+
+		// the root must be written with the next checkpoint
+		synchronized (this) {
+			this.changedRoots.add(path[0]);
+		}
+
+		switch (recordType) {
+			case RECORD_PUT : {
+				ResourceTreeNode node = serializer.readNode(in);
+				removeNode(db, segments, path);
+				if (path.length == 1) {
+					if (node instanceof TreeRoot) {
+						((TreeRoot) node).setParentDB(db);
+					}
+				} else {
+					ResourceTreeNode parent = findNode(db, segments, path, path.length - 1);
+					if (parent != null) {
+						node.setParent(parent);
+					}
+				}
+				break;
+			}
+			case RECORD_REMOVE :
+				removeNode(db, segments, path);
+				break;
+			case RECORD_SET : {
+				String featureName = serializer.readString(in);
+				Object value = serializer.readValue(in);
+				ResourceTreeNode node = findNode(db, segments, path, path.length);
+				if (node != null) {
+					EStructuralFeature feature = node.eClass().getEStructuralFeature(featureName);
+					if (feature != null) {
+						node.eSet(feature, value);
+					}
+				}
+				break;
+			}
+			default :
+				throw new IOException(NLS.bind(Messages.SemanticDBJournal_UnknownRecord_XMSG, Byte.valueOf(recordType)));
+		}
+	}
+
+	private static ResourceTreeNode findNode(SemanticDB db, SemanticDBSegments segments, String[] path, int segmentCount)
+			throws IOException {
+		TreeRoot root = db.getRoot(path[0]);
+		if (root != null && segmentCount > 1) {
+			segments.ensureLoaded(root);
+		}
+		ResourceTreeNode node = root;
+		for (int i = 1; i < segmentCount && node != null; i++) {
+			node = node.getChild(path[i]);
+		}
+		return node;
+	}
+
+	private static ResourceTreeNode findNode(Map<String, TreeRoot> roots, String[] path) {
+		ResourceTreeNode node = roots.get(path[0]);
+		for (int i = 1; i < path.length && node != null; i++) {
+			node = node.getChild(path[i]);
+		}
+		return node;
+	}
+
+	private static void removeNode(SemanticDB db, SemanticDBSegments segments, String[] path) throws IOException {
+		ResourceTreeNode node = findNode(db, segments, path, path.length);
+		if (node instanceof TreeRoot) {
+			((TreeRoot) node).setParentDB(null);
+		} else if (node != null) {
+			node.setParent(null);
+		}
+	}
+
+	private synchronized void addRecord(String rootName, byte[] payload) {
+		this.changedRoots.add(rootName);
+
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		DataOutputStream out = new DataOutputStream(this.pending);
+		try {
+			out.writeInt(payload.length);
+			out.write(payload);
+			out.writeInt((int) crc.getValue());
+		} catch (IOException e) {
+			// $JL-EXC$ can't happen for in-memory streams
+			this.recordingFailed = true;
+		}
+		this.pendingRecords++;
+	}
+
+	private synchronized void recordingFailed(IOException e) {
+		this.recordingFailed = true;
+		this.log.log(new SemanticResourceException(SemanticResourceStatusCode.SFS_ERROR_WRITING_METADATA, Path.EMPTY,
+				Messages.SemanticDBJournal_RecordingFailed_XMSG, e));
+	}
+
+	/**
+	 * Computes the path of a node that is contained in the database
+	 *
+	 * @return the path segments, or <code>null</code> if the node is not
+	 *         contained in the database
+	 */
+	static String[] getPath(ResourceTreeNode node) {
+		List<String> segments = new ArrayList<String>();
+		EObject current = node;
+		while (current instanceof ResourceTreeNode) {
+			segments.add(0, ((ResourceTreeNode) current).getName());
+			current = current.eContainer();
+		}
+		if (!(current instanceof SemanticDB)) {
+			return null;
+		}
+		return segments.toArray(new String[segments.size()]);
+	}
+
+	private static String[] append(String[] path, String name) {
+		String[] result = new String[path.length + 1];
+		System.arraycopy(path, 0, result, 0, path.length);
+		result[path.length] = name;
+		return result;
+	}
+
+	private static String toKey(String[] path, int segmentCount) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < segmentCount; i++) {
+			sb.append('/').append(path[i]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A node changed during a batch
+	 */
+	private static final class ChangedNode {
+		final String[] path;
+		// the subtree at the path has been added, removed, or renamed
+		boolean replaced;
+		// the names of the changed attributes
+		final HashSet<String> features = new HashSet<String>();
+
+		ChangedNode(String[] path) {
+			this.path = path;
+		}
+	}
+
+	/**
+	 * The changes of a batch by path
+	 */
+	private static final class BatchChanges {
+		final HashSet<String> roots = new HashSet<String>();
+		final HashMap<String, ChangedNode> nodes = new HashMap<String, ChangedNode>();
+
+		BatchChanges() {
+			// nothing to initialize
+		}
+
+		ChangedNode getNode(String[] path) {
+			String key = toKey(path, path.length);
+			ChangedNode node = this.nodes.get(key);
+			if (node == null) {
+				node = new ChangedNode(path);
+				this.nodes.put(key, node);
+			}
+			return node;
+		}
+
+		/*
+		 * whether a parent of the path is put or removed as a whole
+		 */
+		boolean isCoveredByParent(String[] path) {
+			for (int i = 1; i < path.length; i++) {
+				ChangedNode parent = this.nodes.get(toKey(path, i));
+				if (parent != null && parent.replaced) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * whether the path or a parent of it is put or removed as a whole
+		 */
+		boolean isCovered(String[] path) {
+			ChangedNode node = this.nodes.get(toKey(path, path.length));
+			return (node != null && node.replaced) || isCoveredByParent(path);
+		}
+	}
+
+	/**
+	 * Records the changes of all contained nodes
+	 */
+	private final class JournalRecorder extends EContentAdapter {
+
+		JournalRecorder() {
+			// nothing to initialize
+		}
+
+		@Override
+		public void notifyChanged(Notification notification) {
+			BatchChanges batch = SemanticDBJournal.this.batchChanges.get();
+			if (batch == null) {
+				// maintains the adapters on the contained nodes; in a batch,
+				// this is done once at its end
+				super.notifyChanged(notification);
+			}
+
+			if (!(notification.getFeature() instanceof EStructuralFeature)) {
+				return;
+			}
+
+			EStructuralFeature feature = (EStructuralFeature) notification.getFeature();
+			if (feature.isTransient()) {
+				return;
+			}
+			// the property map is changed in place and set again, which is
+			// reported as touch
+			if (notification.isTouch() && feature != SemanticResourceDBPackage.Literals.RESOURCE_TREE_NODE__PERSISTENT_PROPERTIES) {
+				return;
+			}
+
+			if (batch != null) {
+				recordBatchChange(batch, notification);
+				return;
+			}
+
+			try {
+				Object notifier = notification.getNotifier();
+				if (notifier instanceof SemanticDB) {
+					if (feature == SemanticResourceDBPackage.Literals.SEMANTIC_DB__ROOTS) {
+						recordContainmentChange(ROOT_PATH, notification);
+					}
+				} else if (notifier instanceof ResourceTreeNode) {
+					ResourceTreeNode node = (ResourceTreeNode) notifier;
+					String[] path = getPath(node);
+					if (path == null) {
+						return;
+					}
+
+					if (feature == SemanticResourceDBPackage.Literals.RESOURCE_TREE_NODE__CHILDREN) {
+						recordContainmentChange(path, notification);
+					} else if (feature instanceof EReference) {
+						// parent and parentDB are covered by the containment
+						return;
+					} else if (feature == SemanticResourceDBPackage.Literals.RESOURCE_TREE_NODE__NAME) {
+						if (notification.getEventType() == Notification.SET) {
+							String[] parentPath = new String[path.length - 1];
+							System.arraycopy(path, 0, parentPath, 0, parentPath.length);
+							recordRemove(append(parentPath, (String) notification.getOldValue()));
+							recordPut(parentPath, node);
+						}
+					} else if (notification.getEventType() == Notification.SET || notification.getEventType() == Notification.UNSET) {
+						recordSet(path, feature.getName(), node.eGet(feature));
+					}
+				}
+			} catch (IOException e) {
+				recordingFailed(e);
+			}
+		}
+
+		private void recordBatchChange(BatchChanges batch, Notification notification) {
+			Object notifier = notification.getNotifier();
+			EStructuralFeature feature = (EStructuralFeature) notification.getFeature();
+			if (notifier instanceof SemanticDB) {
+				if (feature == SemanticResourceDBPackage.Literals.SEMANTIC_DB__ROOTS) {
+					markBatchContainmentChange(batch, ROOT_PATH, notification);
+				}
+			} else if (notifier instanceof ResourceTreeNode) {
+				ResourceTreeNode node = (ResourceTreeNode) notifier;
+				String[] path = getPath(node);
+				if (path == null) {
+					return;
+				}
+
+				if (feature == SemanticResourceDBPackage.Literals.RESOURCE_TREE_NODE__CHILDREN) {
+					markBatchContainmentChange(batch, path, notification);
+				} else if (feature instanceof EReference) {
+					// parent and parentDB are covered by the containment
+					return;
+				} else if (feature == SemanticResourceDBPackage.Literals.RESOURCE_TREE_NODE__NAME) {
+					String[] parentPath = new String[path.length - 1];
+					System.arraycopy(path, 0, parentPath, 0, parentPath.length);
+					if (notification.getOldValue() instanceof String) {
+						markBatchReplaced(batch, append(parentPath, (String) notification.getOldValue()));
+					}
+					markBatchReplaced(batch, path);
+				} else {
+					markBatchRoot(batch, path[0]);
+					batch.getNode(path).features.add(feature.getName());
+				}
+			}
+		}
+
+		private void markBatchContainmentChange(BatchChanges batch, String[] parentPath, Notification notification) {
+			if (notification.getEventType() == Notification.MOVE) {
+				// moves don't change the persistent state
+				return;
+			}
+			for (Object value : new Object[] {notification.getNewValue(), notification.getOldValue()}) {
+				if (value instanceof ResourceTreeNode) {
+					markBatchReplaced(batch, append(parentPath, ((ResourceTreeNode) value).getName()));
+				} else if (value instanceof List<?>) {
+					for (Object child : (List<?>) value) {
+						markBatchReplaced(batch, append(parentPath, ((ResourceTreeNode) child).getName()));
+					}
+				}
+			}
+		}
+
+		private void markBatchReplaced(BatchChanges batch, String[] path) {
+			markBatchRoot(batch, path[0]);
+			batch.getNode(path).replaced = true;
+		}
+
+		private void markBatchRoot(BatchChanges batch, String rootName) {
+			if (batch.roots.add(rootName)) {
+				markChanged(rootName);
+			}
+		}
+
+		private void recordContainmentChange(String[] parentPath, Notification notification) throws IOException {
+			switch (notification.getEventType()) {
+				case Notification.ADD :
+					recordPut(parentPath, (ResourceTreeNode) notification.getNewValue());
+					break;
+				case Notification.ADD_MANY :
+					for (Object child : (List<?>) notification.getNewValue()) {
+						recordPut(parentPath, (ResourceTreeNode) child);
+					}
+					break;
+				case Notification.REMOVE :
+					recordRemove(append(parentPath, ((ResourceTreeNode) notification.getOldValue()).getName()));
+					break;
+				case Notification.REMOVE_MANY :
+					for (Object child : (List<?>) notification.getOldValue()) {
+						recordRemove(append(parentPath, ((ResourceTreeNode) child).getName()));
+					}
+					break;
+				case Notification.SET :
+					if (notification.getOldValue() != null) {
+						recordRemove(append(parentPath, ((ResourceTreeNode) notification.getOldValue()).getName()));
+					}
+					if (notification.getNewValue() != null) {
+						recordPut(parentPath, (ResourceTreeNode) notification.getNewValue());
+					}
+					break;
+				default :
+					// moves don't change the persistent state
+					break;
+			}
+		}
+
+		void recordPut(String[] parentPath, ResourceTreeNode node) throws IOException {
+			String[] path = append(parentPath, node.getName());
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+			SemanticDBSerializer serializer = new SemanticDBSerializer();
+			out.writeByte(RECORD_PUT);
+			serializer.writePath(out, path);
+			serializer.writeNode(out, node);
+			out.flush();
+			addRecord(path[0], bos.toByteArray());
+		}
+
+		void recordRemove(String[] path) throws IOException {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+			SemanticDBSerializer serializer = new SemanticDBSerializer();
+			out.writeByte(RECORD_REMOVE);
+			serializer.writePath(out, path);
+			out.flush();
+			addRecord(path[0], bos.toByteArray());
+		}
+
+		void recordSet(String[] path, String featureName, Object value) throws IOException {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+			SemanticDBSerializer serializer = new SemanticDBSerializer();
+			out.writeByte(RECORD_SET);
+			serializer.writePath(out, path);
+			serializer.writeString(out, featureName);
+			serializer.writeValue(out, value);
+			out.flush();
+			addRecord(path[0], bos.toByteArray());
+		}
+	}
+
+}
@@ -0,0 +1,484 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.internal.resources.semantic.Util;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticDB;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBPackage;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeRoot;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Segmented storage of the Semantic File System metadata.
+ * <p>
+ * The index file contains the roots without their children; the children of
+ * each root are stored in a segment file of their own. Upon startup, only
+ * the index is read; the children of a root are loaded the first time the
+ * root is locked, and they may be unloaded again once the root has not been
+ * used for a while.
+ * <p>
+ * A root can only be unloaded if its segment file is up to date, i.e. if it
+ * has not been changed since the last checkpoint, and if its nodes carry no
+ * transient state like session properties. The unloaded nodes are marked as
+ * non-existing with their path, so that file stores referring to them join
+ * the reloaded tree.
+ * <p>
+ * If a segment file can not be read, the root is marked as broken; it stays
+ * without children and must not be changed, since its changes could not be
+ * written without losing the content of the segment file.
+ */
+public final class SemanticDBSegments {
+
+	private static final String SEGMENT_FOLDER = "segments"; //$NON-NLS-1$
+	private static final String SEGMENT_PREFIX = "root"; //$NON-NLS-1$
+	private static final String SEGMENT_SUFFIX = ".seg"; //$NON-NLS-1$
+	private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final File indexFile;
+	private final File segmentFolder;
+	private final SemanticDBJournal journal;
+
+	// guarded by this
+	private final HashMap<TreeRoot, Segment> segments = new HashMap<TreeRoot, Segment>();
+	private int nextSegmentId = 0;
+
+	private static final class Segment {
+		final String fileName;
+		// guarded by the segment
+		boolean loaded;
+		boolean written;
+		boolean broken;
+		volatile long lastAccess;
+
+		Segment(String fileName, boolean loaded, boolean written) {
+			this.fileName = fileName;
+			this.loaded = loaded;
+			this.written = written;
+			this.lastAccess = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @param indexFile
+	 *            the index file
+	 * @param journal
+	 *            the journal that records the changes of the database
+	 */
+	public SemanticDBSegments(File indexFile, SemanticDBJournal journal) {
+		this.indexFile = indexFile;
+		this.segmentFolder = new File(indexFile.getParentFile(), SEGMENT_FOLDER);
+		this.journal = journal;
+	}
+
+	/**
+	 * Reads the index; the caller must hold the exclusive lock
+	 *
+	 * @return the database containing the roots without children
+	 * @throws IOException
+	 *             on read failure
+	 */
+	public SemanticDB load() throws IOException {
+		ArrayList<String> segmentNames = new ArrayList<String>();
+		SemanticDB db;
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.indexFile), BUFFER_SIZE));
+		try {
+			db = new SemanticDBSerializer().readIndex(in, segmentNames);
+		} finally {
+			Util.safeClose(in);
+		}
+
+		synchronized (this) {
+			this.segments.clear();
+			for (int i = 0; i < segmentNames.size(); i++) {
+				this.segments.put(db.getRoots().get(i), new Segment(segmentNames.get(i), false, true));
+			}
+		}
+
+		recoverSegmentFiles(segmentNames);
+		deleteUnreferencedFiles(new HashSet<String>(segmentNames));
+
+		return db;
+	}
+
+	/**
+	 * Makes sure that the children of a root are loaded
+	 * <p>
+	 * The caller must hold the lock of the root; loading does not need
+	 * exclusive access to the root.
+	 *
+	 * @param root
+	 *            the root
+	 * @return <code>true</code> if the children have been loaded by this call
+	 * @throws IOException
+	 *             on read failure; the root remains unloaded and is marked as
+	 *             broken
+	 */
+	public boolean ensureLoaded(TreeRoot root) throws IOException {
+		Segment segment = getSegment(root);
+		segment.lastAccess = System.currentTimeMillis();
+
+		synchronized (segment) {
+			if (segment.loaded || segment.broken) {
+				return false;
+			}
+
+			List<ResourceTreeNode> children;
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(getSegmentFile(segment)), BUFFER_SIZE));
+				try {
+					children = new SemanticDBSerializer().readSegment(in);
+				} finally {
+					Util.safeClose(in);
+				}
+			} catch (IOException e) {
+				segment.broken = true;
+				throw e;
+			}
+
+			// loading does not change the persistent state
+			boolean deliver = root.eDeliver();
+			root.eSetDeliver(false);
+			try {
+				for (ResourceTreeNode child : children) {
+					child.setParent(root);
+				}
+			} finally {
+				root.eSetDeliver(deliver);
+			}
+			this.journal.attachChildren(root);
+
+			segment.loaded = true;
+			return true;
+		}
+	}
+
+	/**
+	 * @param root
+	 *            the root
+	 * @return <code>true</code> if the segment of the root could not be read;
+	 *         the root must not be changed
+	 */
+	public boolean isBroken(TreeRoot root) {
+		Segment segment = getSegment(root);
+		synchronized (segment) {
+			return segment.broken;
+		}
+	}
+
+	/**
+	 * Loads the children of all roots; the caller must hold the exclusive lock
+	 *
+	 * @param db
+	 *            the database
+	 * @throws IOException
+	 *             on read failure
+	 */
+	void loadAll(SemanticDB db) throws IOException {
+		for (TreeRoot root : db.getRoots()) {
+			ensureLoaded(root);
+		}
+	}
+
+	/**
+	 * Returns the roots that are loaded and have not been used since the given
+	 * time
+	 *
+	 * @param db
+	 *            the database
+	 * @param idleSince
+	 *            the time in milliseconds
+	 * @return the roots
+	 */
+	public List<TreeRoot> getIdleRoots(SemanticDB db, long idleSince) {
+		ArrayList<TreeRoot> result = new ArrayList<TreeRoot>();
+		synchronized (this) {
+			for (Map.Entry<TreeRoot, Segment> entry : this.segments.entrySet()) {
+				Segment segment = entry.getValue();
+				if (segment.lastAccess < idleSince && entry.getKey().getParentDB() == db) {
+					synchronized (segment) {
+						if (segment.loaded) {
+							result.add(entry.getKey());
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return <code>true</code> if any root is loaded
+	 */
+	public synchronized boolean isAnyLoaded() {
+		for (Segment segment : this.segments.values()) {
+			synchronized (segment) {
+				if (segment.loaded) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Unloads the children of a root; the caller must hold the write lock of
+	 * the root
+	 *
+	 * @param root
+	 *            the root
+	 * @param idleSince
+	 *            the root is only unloaded if it has not been used since this
+	 *            time
+	 * @return <code>true</code> if the root has been unloaded
+	 */
+	public boolean unload(TreeRoot root, long idleSince) {
+		Segment segment = getSegment(root);
+
+		synchronized (segment) {
+			if (!segment.loaded || !segment.written || segment.lastAccess >= idleSince) {
+				return false;
+			}
+			if (this.journal.isRootChanged(root.getName()) || hasTransientState(root)) {
+				return false;
+			}
+
+			ArrayList<ResourceTreeNode> children = new ArrayList<ResourceTreeNode>(root.getChildren());
+
+			boolean deliver = root.eDeliver();
+			root.eSetDeliver(false);
+			try {
+				root.getChildren().clear();
+			} finally {
+				root.eSetDeliver(deliver);
+			}
+
+			String rootPath = '/' + root.getName();
+			for (ResourceTreeNode child : children) {
+				this.journal.detach(child);
+				markUnloaded(child, rootPath);
+			}
+
+			segment.loaded = false;
+			return true;
+		}
+	}
+
+	/**
+	 * Writes the segments of the given roots and of all roots that have not
+	 * been written yet, as well as the index; the caller must hold the
+	 * exclusive lock
+	 * <p>
+	 * Each file is written to a temporary file first which then replaces the
+	 * old file. Segment files are written before the index, so a crash leaves
+	 * a consistent state when the journal is replayed.
+	 *
+	 * @param db
+	 *            the database
+	 * @param changedRoots
+	 *            the names of the changed roots
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             on write failure
+	 */
+	public long write(SemanticDB db, Set<String> changedRoots) throws IOException {
+		this.segmentFolder.mkdirs();
+
+		long bytesWritten = 0;
+
+		ArrayList<TreeRoot> roots = new ArrayList<TreeRoot>(db.getRoots());
+		ArrayList<String> segmentNames = new ArrayList<String>(roots.size());
+
+		for (TreeRoot root : roots) {
+			Segment segment = getSegment(root);
+			segmentNames.add(segment.fileName);
+
+			synchronized (segment) {
+				// an unloaded segment is up to date; a broken segment keeps
+				// its file
+				if (segment.loaded && (!segment.written || changedRoots.contains(root.getName()))) {
+					File segmentFile = getSegmentFile(segment);
+					File tempFile = new File(this.segmentFolder, segment.fileName + TEMP_SUFFIX);
+
+					FileOutputStream fos = new FileOutputStream(tempFile);
+					try {
+						DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+						new SemanticDBSerializer().writeSegment(out, root);
+						out.flush();
+						fos.getFD().sync();
+						bytesWritten += out.size();
+					} finally {
+						Util.safeClose(fos);
+					}
+					replace(tempFile, segmentFile);
+					segment.written = true;
+				}
+			}
+		}
+
+		File tempFile = new File(this.indexFile.getParentFile(), this.indexFile.getName() + TEMP_SUFFIX);
+		FileOutputStream fos = new FileOutputStream(tempFile);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+			new SemanticDBSerializer().writeIndex(out, roots, segmentNames);
+			out.flush();
+			fos.getFD().sync();
+			bytesWritten += out.size();
+		} finally {
+			Util.safeClose(fos);
+		}
+		replace(tempFile, this.indexFile);
+
+		// forget removed roots
+		synchronized (this) {
+			for (Iterator<TreeRoot> it = this.segments.keySet().iterator(); it.hasNext();) {
+				if (it.next().getParentDB() != db) {
+					it.remove();
+				}
+			}
+		}
+		deleteUnreferencedFiles(new HashSet<String>(segmentNames));
+
+		return bytesWritten;
+	}
+
+	/**
+	 * Replaces a file by another one
+	 *
+	 * @param source
+	 *            the new file
+	 * @param target
+	 *            the file to be replaced
+	 * @throws IOException
+	 *             if the file could not be renamed
+	 */
+	static void replace(File source, File target) throws IOException {
+		if (!source.renameTo(target)) {
+			// File.renameTo does not replace existing files on all platforms
+			target.delete();
+			if (!source.renameTo(target)) {
+				throw new IOException(NLS.bind(Messages.SemanticDBSegments_RenameFailed_XMSG, source.getAbsolutePath(), target
+						.getAbsolutePath()));
+			}
+		}
+	}
+
+	private synchronized Segment getSegment(TreeRoot root) {
+		Segment segment = this.segments.get(root);
+		if (segment == null) {
+			// a new root is completely in memory
+			segment = new Segment(newSegmentName(), true, false);
+			this.segments.put(root, segment);
+		}
+		return segment;
+	}
+
+	private String newSegmentName() {
+		HashSet<String> used = new HashSet<String>();
+		for (Segment segment : this.segments.values()) {
+			used.add(segment.fileName);
+		}
+
+		String name;
+		do {
+			name = SEGMENT_PREFIX + this.nextSegmentId++ + SEGMENT_SUFFIX;
+		} while (used.contains(name) || new File(this.segmentFolder, name).exists());
+		return name;
+	}
+
+	private File getSegmentFile(Segment segment) {
+		return new File(this.segmentFolder, segment.fileName);
+	}
+
+	/*
+	 * a crash in replace() after the old segment file has been deleted leaves
+	 * only the complete temporary file
+	 */
+	private void recoverSegmentFiles(List<String> segmentNames) throws IOException {
+		for (String segmentName : segmentNames) {
+			File segmentFile = new File(this.segmentFolder, segmentName);
+			File tempFile = new File(this.segmentFolder, segmentName + TEMP_SUFFIX);
+			if (!segmentFile.exists() && tempFile.exists()) {
+				if (!tempFile.renameTo(segmentFile)) {
+					throw new IOException(NLS.bind(Messages.SemanticDBSegments_RenameFailed_XMSG, tempFile.getAbsolutePath(), segmentFile
+							.getAbsolutePath()));
+				}
+			}
+		}
+	}
+
+	private void deleteUnreferencedFiles(Set<String> referenced) {
+		File[] files = this.segmentFolder.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if (name.endsWith(TEMP_SUFFIX)) {
+				// the temporary file of a referenced segment is only obsolete
+				// if the segment file exists
+				String segmentName = name.substring(0, name.length() - TEMP_SUFFIX.length());
+				if (referenced.contains(segmentName) && !new File(this.segmentFolder, segmentName).exists()) {
+					continue;
+				}
+			} else if (referenced.contains(name)) {
+				continue;
+			}
+			file.delete();
+		}
+	}
+
+	private static boolean hasTransientState(ResourceTreeNode node) {
+		if (node.getSessionProperties() != null || node.getDynamicContentProviderID() != null) {
+			return true;
+		}
+		if (node.eIsSet(SemanticResourceDBPackage.Literals.RESOURCE_TREE_NODE__CHILDREN)) {
+			for (ResourceTreeNode child : node.getChildren()) {
+				if (hasTransientState(child)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static void markUnloaded(ResourceTreeNode node, String parentPath) {
+		String path = parentPath + '/' + node.getName();
+		if (node.eIsSet(SemanticResourceDBPackage.Literals.RESOURCE_TREE_NODE__CHILDREN)) {
+			for (ResourceTreeNode child : node.getChildren()) {
+				markUnloaded(child, path);
+			}
+		}
+		node.setPath(path);
+		node.setExists(false);
+	}
+
+}
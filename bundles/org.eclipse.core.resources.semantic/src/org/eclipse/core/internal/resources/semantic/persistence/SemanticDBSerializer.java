@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.resources.semantic.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.internal.resources.semantic.Util;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticDB;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBFactory;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBPackage;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeNodeType;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeRoot;
+
+/**
+ * Binary encoding of the persistent state of Semantic File System metadata
+ * nodes.
+ * <p>
+ * Only the persistent attributes are written; transient attributes like the
+ * path of non-existing nodes or session properties are not.
+ * <p>
+ * Strings are interned: the first occurrence of a string is written as is,
+ * further occurrences as reference to the first one. Upon reading, equal
+ * strings are shared, which also reduces the heap consumption of the loaded
+ * model. An instance keeps the string table of one stream and must be used
+ * for either writing or reading it.
+ */
+final class SemanticDBSerializer {
+
+	private static final int INDEX_MAGIC = 0x53464442; // "SFDB"
+	private static final int SEGMENT_MAGIC = 0x53465347; // "SFSG"
+	private static final int END_MARKER = 0x454e4421; // "END!"
+	private static final int VERSION = 2;
+
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_STRING = 1;
+	private static final byte VALUE_BOOLEAN = 2;
+	private static final byte VALUE_NODE_TYPE = 3;
+	private static final byte VALUE_MAP = 4;
+
+	private static final byte KIND_NODE = 0;
+	private static final byte KIND_ROOT = 1;
+
+	private static final int STRING_NULL = -1;
+	private static final int STRING_NEW = -2;
+
+	private static final String UTF8 = "UTF-8"; //$NON-NLS-1$
+
+	private final HashMap<String, Integer> writtenStrings = new HashMap<String, Integer>();
+	private final ArrayList<String> readStrings = new ArrayList<String>();
+
+	/**
+	 * Writes the index of the database, i.e. the roots without their children
+	 * and the names of the segments holding the children
+	 *
+	 * @param out
+	 *            the output
+	 * @param roots
+	 *            the roots
+	 * @param segmentNames
+	 *            the segment names, in the order of the roots
+	 * @throws IOException
+	 *             on write failure
+	 */
+	void writeIndex(DataOutput out, List<TreeRoot> roots, List<String> segmentNames) throws IOException {
+		out.writeInt(INDEX_MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(roots.size());
+		for (int i = 0; i < roots.size(); i++) {
+			writeString(out, segmentNames.get(i));
+			writeNode(out, roots.get(i), false);
+		}
+		// allows to detect truncated files
+		out.writeInt(END_MARKER);
+	}
+
+	/**
+	 * Reads an index written by
+	 * {@link #writeIndex(DataOutput, List, List)}
+	 * <p>
+	 * Roots that don't exist are skipped.
+	 *
+	 * @param in
+	 *            the input
+	 * @param segmentNames
+	 *            receives the segment names, in the order of the roots of
+	 *            the returned database
+	 * @return the database, with roots only
+	 * @throws IOException
+	 *             on read failure or if the index is invalid
+	 */
+	SemanticDB readIndex(DataInput in, List<String> segmentNames) throws IOException {
+		readHeader(in, INDEX_MAGIC);
+
+		SemanticDB db = SemanticResourceDBFactory.eINSTANCE.createSemanticDB();
+		int rootCount = in.readInt();
+		for (int i = 0; i < rootCount; i++) {
+			String segmentName = readString(in);
+			ResourceTreeNode root = readNode(in);
+			if (!(root instanceof TreeRoot)) {
+				throw new IOException("Invalid root node " + root.getName()); //$NON-NLS-1$
+			}
+			if (root.isExists()) {
+				((TreeRoot) root).setParentDB(db);
+				segmentNames.add(segmentName);
+			}
+		}
+
+		readEndMarker(in);
+		return db;
+	}
+
+	/**
+	 * Writes the children of a root
+	 *
+	 * @param out
+	 *            the output
+	 * @param root
+	 *            the root
+	 * @throws IOException
+	 *             on write failure
+	 */
+	void writeSegment(DataOutput out, TreeRoot root) throws IOException {
+		out.writeInt(SEGMENT_MAGIC);
+		out.writeInt(VERSION);
+		writeChildren(out, root);
+		out.writeInt(END_MARKER);
+	}
+
+	/**
+	 * Reads the children of a root written by
+	 * {@link #writeSegment(DataOutput, TreeRoot)}
+	 *
+	 * @param in
+	 *            the input
+	 * @return the children that exist
+	 * @throws IOException
+	 *             on read failure or if the segment is invalid
+	 */
+	List<ResourceTreeNode> readSegment(DataInput in) throws IOException {
+		readHeader(in, SEGMENT_MAGIC);
+
+		int childCount = in.readInt();
+		List<ResourceTreeNode> children = new ArrayList<ResourceTreeNode>(childCount);
+		for (int i = 0; i < childCount; i++) {
+			ResourceTreeNode child = readNode(in);
+			if (child.isExists()) {
+				children.add(child);
+			}
+		}
+
+		readEndMarker(in);
+		return children;
+	}
+
+	private static void readHeader(DataInput in, int magic) throws IOException {
+		if (in.readInt() != magic) {
+			throw new IOException("Not a metadata file"); //$NON-NLS-1$
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported metadata version " + version); //$NON-NLS-1$
+		}
+	}
+
+	private static void readEndMarker(DataInput in) throws IOException {
+		if (in.readInt() != END_MARKER) {
+			throw new IOException("Metadata file is truncated"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Writes a node and all its children
+	 *
+	 * @param out
+	 *            the output
+	 * @param node
+	 *            the node
+	 * @throws IOException
+	 *             on write failure
+	 */
+	void writeNode(DataOutput out, ResourceTreeNode node) throws IOException {
+		writeNode(out, node, true);
+	}
+
+	private void writeNode(DataOutput out, ResourceTreeNode node, boolean withChildren) throws IOException {
+		boolean isRoot = node instanceof TreeRoot;
+
+		out.writeByte(isRoot ? KIND_ROOT : KIND_NODE);
+		writeString(out, node.getName());
+		out.writeBoolean(node.isExists());
+		out.writeBoolean(node.isLocalOnly());
+		out.writeInt(node.getType().getValue());
+		writeString(out, node.getTemplateID());
+		writeString(out, node.getQueryPart());
+		writeString(out, node.getRemoteURI());
+		if (isRoot) {
+			writeString(out, ((TreeRoot) node).getRootURI());
+		}
+		writeMap(out, node.getPersistentProperties());
+
+		if (withChildren) {
+			writeChildren(out, node);
+		} else {
+			out.writeInt(0);
+		}
+	}
+
+	private void writeChildren(DataOutput out, ResourceTreeNode node) throws IOException {
+		// avoid creating empty children lists for leaves
+		if (node.eIsSet(SemanticResourceDBPackage.Literals.RESOURCE_TREE_NODE__CHILDREN)) {
+			out.writeInt(node.getChildren().size());
+			for (ResourceTreeNode child : node.getChildren()) {
+				writeNode(out, child, true);
+			}
+		} else {
+			out.writeInt(0);
+		}
+	}
+
+	/**
+	 * Reads a node and all its children
+	 * <p>
+	 * Children that don't exist are skipped, as they would be removed upon
+	 * startup anyway.
+	 *
+	 * @param in
+	 *            the input
+	 * @return the node, a {@link TreeRoot} if a root was written
+	 * @throws IOException
+	 *             on read failure
+	 */
+	ResourceTreeNode readNode(DataInput in) throws IOException {
+		byte kind = in.readByte();
+
+		ResourceTreeNode node;
+		if (kind == KIND_ROOT) {
+			node = SemanticResourceDBFactory.eINSTANCE.createTreeRoot();
+		} else if (kind == KIND_NODE) {
+			node = SemanticResourceDBFactory.eINSTANCE.createResourceTreeNode();
+		} else {
+			throw new IOException("Unknown node kind " + kind); //$NON-NLS-1$
+		}
+
+		node.setName(readString(in));
+		node.setExists(in.readBoolean());
+		node.setLocalOnly(in.readBoolean());
+		node.setType(readNodeType(in.readInt()));
+		node.setTemplateID(readString(in));
+		node.setQueryPart(readString(in));
+		node.setRemoteURI(readString(in));
+		if (kind == KIND_ROOT) {
+			((TreeRoot) node).setRootURI(readString(in));
+		}
+		node.setPersistentProperties(readMap(in));
+
+		int childCount = in.readInt();
+		for (int i = 0; i < childCount; i++) {
+			ResourceTreeNode child = readNode(in);
+			if (child.isExists()) {
+				// setParent avoids the uniqueness check of the children list
+				child.setParent(node);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Writes an attribute value
+	 *
+	 * @param out
+	 *            the output
+	 * @param value
+	 *            the value, one of the persistent attribute types
+	 * @throws IOException
+	 *             on write failure or if the value type is not supported
+	 */
+	@SuppressWarnings("unchecked")
+	void writeValue(DataOutput out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(VALUE_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(VALUE_STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(VALUE_BOOLEAN);
+			out.writeBoolean(((Boolean) value).booleanValue());
+		} else if (value instanceof TreeNodeType) {
+			out.writeByte(VALUE_NODE_TYPE);
+			out.writeInt(((TreeNodeType) value).getValue());
+		} else if (value instanceof Map) {
+			out.writeByte(VALUE_MAP);
+			writeMap(out, (Map<String, String>) value);
+		} else {
+			throw new IOException("Unsupported value type " + value.getClass().getName()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads an attribute value
+	 *
+	 * @param in
+	 *            the input
+	 * @return the value
+	 * @throws IOException
+	 *             on read failure
+	 */
+	Object readValue(DataInput in) throws IOException {
+		byte valueType = in.readByte();
+		switch (valueType) {
+			case VALUE_NULL :
+				return null;
+			case VALUE_STRING :
+				return readString(in);
+			case VALUE_BOOLEAN :
+				return Boolean.valueOf(in.readBoolean());
+			case VALUE_NODE_TYPE :
+				return readNodeType(in.readInt());
+			case VALUE_MAP :
+				return readMap(in);
+			default :
+				throw new IOException("Unknown value type " + valueType); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Writes a path given as segments
+	 *
+	 * @param out
+	 *            the output
+	 * @param segments
+	 *            the segments
+	 * @throws IOException
+	 *             on write failure
+	 */
+	void writePath(DataOutput out, String[] segments) throws IOException {
+		out.writeInt(segments.length);
+		for (String segment : segments) {
+			writeString(out, segment);
+		}
+	}
+
+	/**
+	 * Reads a path written by {@link #writePath(DataOutput, String[])}
+	 *
+	 * @param in
+	 *            the input
+	 * @return the segments
+	 * @throws IOException
+	 *             on read failure
+	 */
+	String[] readPath(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid path length " + length); //$NON-NLS-1$
+		}
+		String[] segments = new String[length];
+		for (int i = 0; i < length; i++) {
+			segments[i] = readString(in);
+		}
+		return segments;
+	}
+
+	void writeString(DataOutput out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(STRING_NULL);
+			return;
+		}
+
+		Integer index = this.writtenStrings.get(value);
+		if (index != null) {
+			out.writeInt(index.intValue());
+			return;
+		}
+
+		this.writtenStrings.put(value, Integer.valueOf(this.writtenStrings.size()));
+		// DataOutput.writeUTF is limited to 64k
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(STRING_NEW);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	String readString(DataInput in) throws IOException {
+		int index = in.readInt();
+		if (index == STRING_NULL) {
+			return null;
+		}
+
+		if (index != STRING_NEW) {
+			if (index < 0 || index >= this.readStrings.size()) {
+				throw new IOException("Invalid string reference " + index); //$NON-NLS-1$
+			}
+			return this.readStrings.get(index);
+		}
+
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid string length " + length); //$NON-NLS-1$
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		String value = new String(bytes, UTF8);
+		this.readStrings.add(value);
+		return value;
+	}
+
+	private void writeMap(DataOutput out, Map<String, String> map) throws IOException {
+		if (map == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+
+	private HashMap<String, String> readMap(DataInput in) throws IOException {
+		int size = in.readInt();
+		if (size < 0) {
+			return null;
+		}
+		HashMap<String, String> map = Util.createPropertyMap(size);
+		for (int i = 0; i < size; i++) {
+			String key = Util.internPropertyKey(readString(in));
+			map.put(key, readString(in));
+		}
+		return map;
+	}
+
+	private static TreeNodeType readNodeType(int value) throws IOException {
+		TreeNodeType type = TreeNodeType.get(value);
+		if (type == null) {
+			throw new IOException("Unknown node type " + value); //$NON-NLS-1$
+		}
+		return type;
+	}
+
+}
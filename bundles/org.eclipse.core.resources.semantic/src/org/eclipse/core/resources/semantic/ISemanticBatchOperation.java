@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2010 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * A group of changes to the Semantic File System that are written together.
+ * 
+ * @see ISemanticFileSystem#run(ISemanticBatchOperation, IProgressMonitor)
+ * @since 0.7
+ */
+public interface ISemanticBatchOperation {
+
+	/**
+	 * Performs the changes
+	 * 
+	 * @param monitor
+	 *            may be null
+	 * @throws CoreException
+	 *             upon failure
+	 */
+	public void run(IProgressMonitor monitor) throws CoreException;
+
+}
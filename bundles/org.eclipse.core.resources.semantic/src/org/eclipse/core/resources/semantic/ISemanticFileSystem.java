@@ -139,6 +139,46 @@ public interface ISemanticFileSystem {
 	 */
 	public String getPathToDb();
 
+	/**
+	 * Writes all pending changes of the Semantic File System metadata.
+	 * <p>
+	 * Changes are usually written in the background shortly after they have
+	 * been made; when this method returns, all changes made before the call
+	 * are durable.
+	 * 
+	 * @throws CoreException
+	 *             upon failure
+	 * @since 0.7
+	 */
+	public void flush() throws CoreException;
+
+	/**
+	 * Runs a batch of changes to the Semantic File System.
+	 * <p>
+	 * The changes made by the current thread during the operation are not
+	 * recorded one by one; instead, the metadata of the changed projects is
+	 * written once when the operation has ended, even if it failed. Thus, many
+	 * small changes like adding thousands of resources are much cheaper inside
+	 * a batch. Changes made by other threads are not affected.
+	 * <p>
+	 * The changes are durable when this method returns; if the process
+	 * terminates during the operation, some or all of them may be lost. A
+	 * batch run from within another batch is part of the outer batch.
+	 * <p>
+	 * A batch is not atomic: each change takes effect immediately and is
+	 * visible to other threads, and if the operation fails, the changes made
+	 * before the failure are kept and written; they are not rolled back.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param monitor
+	 *            may be null; passed to the operation
+	 * @throws CoreException
+	 *             if the operation fails or the metadata can not be written
+	 * @since 0.7
+	 */
+	public void run(ISemanticBatchOperation operation, IProgressMonitor monitor) throws CoreException;
+
 	/**
 	 * @return the log
 	 */
@@ -58,6 +58,22 @@ public interface ISemanticProperties {
 
 	public String getPersistentProperty(QualifiedName key) throws CoreException;
 
+	/**
+	 * Returns the values of several persistent properties of this resource.
+	 * <p>
+	 * This is cheaper than calling {@link #getPersistentProperty(QualifiedName)}
+	 * for each key.
+	 * 
+	 * @param keys
+	 *            the keys
+	 * @return the potentially empty map; keys of properties that don't exist
+	 *         are not contained
+	 * @throws CoreException
+	 *             in case of failure
+	 * @since 0.7
+	 */
+	public Map<QualifiedName, String> getPersistentProperties(QualifiedName... keys) throws CoreException;
+
 	/**
 	 * Sets the value of the persistent property. If the supplied value is
 	 * <code>null</code>, the persistent property is removed. The change is made
@@ -77,6 +93,22 @@ public interface ISemanticProperties {
 	 */
 	public void setPersistentProperty(QualifiedName key, String value) throws CoreException;
 
+	/**
+	 * Sets the values of several persistent properties at once. Properties with
+	 * a <code>null</code> value are removed; properties whose keys are not
+	 * contained in the map are not changed. The changes are written to disk
+	 * once.
+	 * 
+	 * @param properties
+	 *            the keys and values; see
+	 *            {@link #setPersistentProperty(QualifiedName, String)} for the
+	 *            restrictions of the keys
+	 * @throws CoreException
+	 *             for example if a key has a <code>null</code> qualifier
+	 * @since 0.7
+	 */
+	public void setPersistentProperties(Map<QualifiedName, String> properties) throws CoreException;
+
 	/**
 	 * Returns a (shallow) copy of the Map with the session Properties.
 	 * <p>
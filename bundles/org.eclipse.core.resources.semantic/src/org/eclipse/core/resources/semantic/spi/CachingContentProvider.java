@@ -13,10 +13,22 @@ package org.eclipse.core.resources.semantic.spi;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.internal.resources.semantic.SemanticResourcesPlugin;
+import org.eclipse.core.internal.resources.semantic.spi.SfsSpiTraceLocation;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceStatus;
 import org.eclipse.core.resources.semantic.ISemanticFileSystem;
@@ -27,7 +39,12 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.QualifiedName;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.osgi.util.NLS;
 
 /**
@@ -41,7 +58,10 @@ import org.eclipse.osgi.util.NLS;
  * {@link #openInputStreamInternal(ISemanticFileStore, IProgressMonitor, ICacheTimestampSetter)}
  * . Later calls to
  * {@link #openInputStream(ISemanticFileStore, IProgressMonitor)} will be
- * delegated to that copy.
+ * delegated to that copy. If several threads miss the cache for the same file
+ * at the same time, only one of them retrieves the data; the others wait and
+ * read the cached copy. Waiting ends if the progress monitor of the waiting
+ * thread is canceled.
  * <p>
  * By default, calls to
  * {@link #openOutputStream(ISemanticFileStore, int, IProgressMonitor)} will
@@ -59,6 +79,22 @@ import org.eclipse.osgi.util.NLS;
 public abstract class CachingContentProvider extends ContentProvider {
 
 	private static final QualifiedName RESOURCE_TIMESTAMP = new QualifiedName(SemanticResourcesPlugin.PLUGIN_ID, "ResourceTimestamp"); //$NON-NLS-1$
+	// the interval for progress reporting while waiting for parallel cache fill
+	private static final long FILL_PROGRESS_INTERVAL = 100;
+
+	// the interval for checking the monitor while waiting for a fetch of
+	// another thread
+	private static final long FETCH_WAIT_INTERVAL = 100;
+
+	// the fetches in progress by cache service and path; other threads
+	// missing the same cache for the same path wait for the fetch instead of
+	// fetching again. This is global on purpose: the cache services are
+	// shared by all instances of a content provider, and the instance
+	// serving a path may be replaced while a fetch is in progress
+	private static final ConcurrentHashMap<FetchKey, CountDownLatch> fetchesInProgress = new ConcurrentHashMap<FetchKey, CountDownLatch>();
+
+	private final AtomicLong fetchCount = new AtomicLong();
+	private final AtomicLong avoidedFetchCount = new AtomicLong();
 	// TODO 0.1: add convenience/helper methods to cleanup cache along with
 	// file/folder removal
 	// TODO 0.1: add helpers for write-through error handling
@@ -126,36 +162,162 @@ public abstract class CachingContentProvider extends ContentProvider {
 		ICacheService cacheService = this.getCacheService();
 
 		IPath path = childStore.getPath();
+		FetchKey key = new FetchKey(cacheService, path);
+
+		while (!cacheService.hasContent(path)) {
+
+			CountDownLatch fetch = new CountDownLatch(1);
+			CountDownLatch otherFetch = fetchesInProgress.putIfAbsent(key, fetch);
+
+			if (otherFetch != null) {
+				// another thread is fetching the content; if it fails, try
+				// again
+				awaitFetch(otherFetch, monitor);
+				if (cacheService.hasContent(path)) {
+					long avoided = this.avoidedFetchCount.incrementAndGet();
+					if (SfsSpiTraceLocation.CACHESERVICE.isActive()) {
+						SfsSpiTraceLocation.getTrace().trace(SfsSpiTraceLocation.CACHESERVICE.getLocation(),
+								"Shared fetch of " + path + ", " + avoided + " of " + (this.fetchCount.get() + avoided) + " fetches avoided"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					}
+				}
+				continue;
+			}
 
-		if (!cacheService.hasContent(path)) {
+			try {
+				// the content may have been added after the first check
+				if (!cacheService.hasContent(path)) {
+					this.fetchCount.incrementAndGet();
+					fetchIntoCache(childStore, cacheService, monitor);
+				}
+			} finally {
+				fetchesInProgress.remove(key);
+				fetch.countDown();
+			}
+		}
 
-			ICacheTimestampSetter setter = new ICacheTimestampSetter() {
+		return cacheService.getContent(path);
+	}
 
-				long lastTimestamp = 0;
+	/**
+	 * @return the number of remote fetches done by
+	 *         {@link #openInputStream(ISemanticFileStore, IProgressMonitor)}
+	 *         of this content provider instance
+	 * @since 0.7
+	 */
+	public long getFetchCount() {
+		return this.fetchCount.get();
+	}
 
-				public void setTimestamp(long timestamp) {
-					this.lastTimestamp = timestamp;
-				}
+	/**
+	 * @return the number of remote fetches that
+	 *         {@link #openInputStream(ISemanticFileStore, IProgressMonitor)}
+	 *         of this content provider instance avoided by waiting for a
+	 *         concurrent fetch of the same content
+	 * @since 0.7
+	 */
+	public long getAvoidedFetchCount() {
+		return this.avoidedFetchCount.get();
+	}
 
-				public long getTimestamp() {
-					return this.lastTimestamp;
-				}
-			};
+	private void fetchIntoCache(ISemanticFileStore childStore, ICacheService cacheService, IProgressMonitor monitor) throws CoreException {
+		ICacheTimestampSetter setter = new TimestampSetter(0);
 
-			InputStream is = null;
+		InputStream is = null;
 
-			try {
-				is = openInputStreamInternal(childStore, monitor, setter);
+		try {
+			is = openInputStreamInternal(childStore, monitor, setter);
 
-				cacheService.addContent(path, is, EFS.NONE, monitor);
+			cacheService.addContent(childStore.getPath(), is, EFS.NONE, monitor);
 
-				setResourceTimestamp(childStore, setter.getTimestamp(), monitor);
-			} finally {
-				Util.safeClose(is);
+			setResourceTimestamp(childStore, setter.getTimestamp(), monitor);
+		} finally {
+			Util.safeClose(is);
+		}
+	}
+
+	private static final class TimestampSetter implements ICacheTimestampSetter {
+
+		private long lastTimestamp;
+
+		TimestampSetter(long timestamp) {
+			this.lastTimestamp = timestamp;
+		}
+
+		public void setTimestamp(long timestamp) {
+			this.lastTimestamp = timestamp;
+		}
+
+		public long getTimestamp() {
+			return this.lastTimestamp;
+		}
+	}
+
+	/*
+	 * the monitor of a parallel fill worker; it reports the cancellation of
+	 * the fill to the content provider and lets it cancel the whole fill
+	 */
+	private static final class FillWorkerMonitor extends NullProgressMonitor {
+
+		private final AtomicBoolean canceled;
+
+		FillWorkerMonitor(AtomicBoolean canceled) {
+			this.canceled = canceled;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return this.canceled.get();
+		}
+
+		@Override
+		public void setCanceled(boolean value) {
+			if (value) {
+				this.canceled.set(true);
 			}
 		}
+	}
 
-		return cacheService.getContent(path);
+	private static final class FetchKey {
+
+		private final ICacheService cacheService;
+		private final IPath path;
+
+		FetchKey(ICacheService cacheService, IPath path) {
+			this.cacheService = cacheService;
+			this.path = path;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FetchKey)) {
+				return false;
+			}
+			FetchKey other = (FetchKey) obj;
+			return this.cacheService == other.cacheService && this.path.equals(other.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(this.cacheService) + this.path.hashCode();
+		}
+	}
+
+	/*
+	 * waits for the fetch of another thread; cancellation of the monitor or
+	 * interruption of the thread ends the wait
+	 */
+	private static void awaitFetch(CountDownLatch fetch, IProgressMonitor monitor) {
+		IProgressMonitor actMonitor = Util.monitorFor(monitor);
+		try {
+			while (!fetch.await(FETCH_WAIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+				if (actMonitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
 	}
 
 	public final OutputStream openOutputStream(final ISemanticFileStore childStore, int options, final IProgressMonitor monitor)
@@ -265,12 +427,133 @@ public abstract class CachingContentProvider extends ContentProvider {
 	 * Recursively goes down the hierarchy and fills the cache.
 	 * <p>
 	 * If the resource is writable, the cache will not be filled.
+	 * <p>
+	 * The files are fetched by up to {@link #getFillCacheConcurrency()} workers
+	 * in parallel; failures are added to the status.
 	 * 
 	 * @param semanticFileStore
 	 * @param monitor
 	 * @param status
 	 */
 	protected void fillCache(ISemanticFileStore semanticFileStore, IProgressMonitor monitor, MultiStatus status) {
+		fillCache(semanticFileStore, false, monitor, status);
+	}
+
+	/**
+	 * Recursively goes down the hierarchy and brings the cache up to date.
+	 * <p>
+	 * Other than
+	 * {@link #fillCache(ISemanticFileStore, IProgressMonitor, MultiStatus)},
+	 * this also checks files that are already cached: for them,
+	 * {@link #openInputStreamIfChanged(ISemanticFileStore, IProgressMonitor, ICacheTimestampSetter)}
+	 * is called, and the cached content is kept if the remote repository
+	 * reports it as unchanged. Thus, refreshing an unchanged hierarchy does not
+	 * transfer any content if the content provider supports conditional
+	 * requests.
+	 * <p>
+	 * If the resource is writable, the cache will not be touched.
+	 * 
+	 * @param semanticFileStore
+	 *            the store
+	 * @param monitor
+	 *            may be null
+	 * @param status
+	 *            the result status
+	 * @since 0.7
+	 */
+	protected void revalidateCache(ISemanticFileStore semanticFileStore, IProgressMonitor monitor, MultiStatus status) {
+		fillCache(semanticFileStore, true, monitor, status);
+	}
+
+	/**
+	 * Opens the remote content of a file unless it is equal to the cached
+	 * content.
+	 * <p>
+	 * This is called by
+	 * {@link #revalidateCache(ISemanticFileStore, IProgressMonitor, MultiStatus)}
+	 * for files that are cached. Initially, the timestamp setter reports the
+	 * timestamp of the cached content, which can be used for conditional
+	 * requests, e.g. with an HTTP <code>If-Modified-Since</code> header;
+	 * content providers may also keep entity tags in persistent properties.
+	 * If the remote repository reports the content as unchanged,
+	 * implementations return <code>null</code>. Otherwise, they report the
+	 * new timestamp and return the content like
+	 * {@link #openInputStreamInternal(ISemanticFileStore, IProgressMonitor, ICacheTimestampSetter)}
+	 * .
+	 * <p>
+	 * The default implementation always retrieves the content.
+	 * 
+	 * @param store
+	 *            the file store
+	 * @param monitor
+	 *            may be null
+	 * @param timeStampSetter
+	 *            a callback to obtain the cached and to report the new
+	 *            content timestamp
+	 * @return the input stream, or <code>null</code> if the cached content is
+	 *         still current
+	 * @throws CoreException
+	 *             in case of failure
+	 * @since 0.7
+	 */
+	protected InputStream openInputStreamIfChanged(ISemanticFileStore store, IProgressMonitor monitor,
+			ICacheTimestampSetter timeStampSetter) throws CoreException {
+		return openInputStreamInternal(store, monitor, timeStampSetter);
+	}
+
+	private void fillCache(ISemanticFileStore semanticFileStore, boolean revalidate, IProgressMonitor monitor, MultiStatus status) {
+
+		ArrayList<ISemanticFileStore> files = new ArrayList<ISemanticFileStore>();
+		collectFilesToFill(semanticFileStore, revalidate, monitor, status, files);
+
+		if (files.isEmpty()) {
+			return;
+		}
+
+		IProgressMonitor progress = new SubProgressMonitor(Util.monitorFor(monitor), 1);
+		progress.beginTask(NLS.bind(Messages.CachingContentProvider_FillCache_XGRP, semanticFileStore.getPath().toString()), files.size());
+		try {
+			int workers = Math.min(getFillCacheConcurrency(), files.size());
+			if (workers <= 1) {
+				for (ISemanticFileStore file : files) {
+					if (progress.isCanceled()) {
+						return;
+					}
+					progress.subTask(file.getPath().toString());
+					IStatus result = fillCacheForFile(file, revalidate, progress);
+					if (!result.isOK()) {
+						status.add(result);
+					}
+					progress.worked(1);
+				}
+			} else {
+				fillCacheInParallel(semanticFileStore, files, revalidate, workers, progress, status);
+			}
+		} finally {
+			progress.done();
+		}
+	}
+
+	/**
+	 * The maximum number of files fetched in parallel by
+	 * {@link #fillCache(ISemanticFileStore, IProgressMonitor, MultiStatus)}.
+	 * <p>
+	 * The default is 1, i.e. files are fetched one after the other on the
+	 * calling thread. Content providers whose
+	 * {@link #openInputStreamInternal(ISemanticFileStore, IProgressMonitor, ICacheTimestampSetter)}
+	 * and {@link #fetchResourceInfo(ISemanticFileStore, int, IProgressMonitor)}
+	 * implementations are thread-safe may return a higher number in order to
+	 * hide the latency of the remote repository.
+	 * 
+	 * @return the maximum number of parallel fetches
+	 * @since 0.7
+	 */
+	protected int getFillCacheConcurrency() {
+		return 1;
+	}
+
+	private void collectFilesToFill(ISemanticFileStore semanticFileStore, boolean revalidate, IProgressMonitor monitor,
+			MultiStatus status, List<ISemanticFileStore> files) {
 
 		if (semanticFileStore.getType() != ISemanticFileStore.FILE) {
 
@@ -285,13 +568,17 @@ public abstract class CachingContentProvider extends ContentProvider {
 					ISemanticFileStore sfs = (ISemanticFileStore) store;
 					String providerId = sfs.getContentProviderID();
 					if (providerId == null) {
-						fillCache((ISemanticFileStore) store, monitor, status);
+						collectFilesToFill((ISemanticFileStore) store, revalidate, monitor, status, files);
 					} else {
 						try {
 							// delegation to other content provider
 							ISemanticContentProvider provider = sfs.getEffectiveContentProvider();
 							if (provider instanceof CachingContentProvider) {
-								((CachingContentProvider) provider).fillCache((ISemanticFileStore) store, monitor, status);
+								if (revalidate) {
+									((CachingContentProvider) provider).revalidateCache((ISemanticFileStore) store, monitor, status);
+								} else {
+									((CachingContentProvider) provider).fillCache((ISemanticFileStore) store, monitor, status);
+								}
 							}
 						} catch (CoreException e) {
 							status.add(e.getStatus());
@@ -309,23 +596,142 @@ public abstract class CachingContentProvider extends ContentProvider {
 			if (semanticFileStore.isLocalOnly()) {
 				return;
 			}
-			// if this is not read-only, we don't overwrite the timestamp
-			boolean readOnly;
+			files.add(semanticFileStore);
+		}
+	}
+
+	/*
+	 * fills the cache for a single file; the cache update and the timestamp
+	 * update are done on the current thread
+	 */
+	private IStatus fillCacheForFile(ISemanticFileStore semanticFileStore, boolean revalidate, IProgressMonitor monitor) {
+		// if this is not read-only, we don't overwrite the timestamp
+		boolean readOnly;
+		try {
+			readOnly = fetchResourceInfo(semanticFileStore, ISemanticFileSystem.RESOURCE_INFO_READ_ONLY, monitor).isReadOnly();
+		} catch (CoreException e) {
+			return e.getStatus();
+		}
+
+		if (readOnly) {
 			try {
-				readOnly = fetchResourceInfo(semanticFileStore, ISemanticFileSystem.RESOURCE_INFO_READ_ONLY, monitor).isReadOnly();
+				if (revalidate && getCacheService().hasContent(semanticFileStore.getPath())) {
+					revalidateFile(semanticFileStore, monitor);
+				} else {
+					// required to obtain the correct timestamp
+					Util.safeClose(openInputStream(semanticFileStore, monitor));
+				}
 			} catch (CoreException e) {
-				status.add(e.getStatus());
+				return e.getStatus();
+			}
+		}
+		return Status.OK_STATUS;
+	}
+
+	private void revalidateFile(ISemanticFileStore semanticFileStore, IProgressMonitor monitor) throws CoreException {
+		ICacheService cacheService = this.getCacheService();
+		IPath path = semanticFileStore.getPath();
+		ICacheTimestampSetter setter = new TimestampSetter(getResourceTimestampInternal(semanticFileStore));
+
+		InputStream is = null;
+		try {
+			is = openInputStreamIfChanged(semanticFileStore, monitor, setter);
+			if (is == null) {
 				return;
 			}
 
-			if (readOnly) {
-				// required to obtain the correct timestamp
-				try {
-					Util.safeClose(openInputStream(semanticFileStore, monitor));
-				} catch (CoreException e) {
-					status.add(e.getStatus());
+			try {
+				cacheService.addContent(path, is, EFS.NONE, monitor);
+			} catch (CoreException e) {
+				// the content provider may already have recorded the state of
+				// the new content; don't keep the old content under it
+				cacheService.removeContent(path, monitor);
+				throw e;
+			}
+
+			setResourceTimestamp(semanticFileStore, setter.getTimestamp(), monitor);
+		} finally {
+			Util.safeClose(is);
+		}
+	}
+
+	/*
+	 * the workers take the files from a shared queue; the calling thread
+	 * reports the progress per file, forwards cancellation to the monitors of
+	 * the workers and merges the results
+	 */
+	private void fillCacheInParallel(ISemanticFileStore semanticFileStore, List<ISemanticFileStore> files, final boolean revalidate,
+			int workers, IProgressMonitor progress, MultiStatus status) {
+
+		final ConcurrentLinkedQueue<ISemanticFileStore> queue = new ConcurrentLinkedQueue<ISemanticFileStore>(files);
+		final List<IStatus> results = Collections.synchronizedList(new ArrayList<IStatus>());
+		final AtomicInteger filled = new AtomicInteger();
+		final AtomicBoolean canceled = new AtomicBoolean();
+		final AtomicReference<String> current = new AtomicReference<String>();
+		final CountDownLatch finished = new CountDownLatch(workers);
+
+		String jobName = NLS.bind(Messages.CachingContentProvider_FillCache_XGRP, semanticFileStore.getPath().toString());
+		for (int i = 0; i < workers; i++) {
+			Job job = new Job(jobName) {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					IProgressMonitor workerMonitor = new FillWorkerMonitor(canceled);
+					try {
+						ISemanticFileStore file;
+						while (!canceled.get() && (file = queue.poll()) != null) {
+							current.set(file.getPath().toString());
+							IStatus result = fillCacheForFile(file, revalidate, workerMonitor);
+							if (!result.isOK()) {
+								results.add(result);
+							}
+							filled.incrementAndGet();
+						}
+					} catch (OperationCanceledException e) {
+						// $JL-EXC$ the content provider has seen the cancellation
+						canceled.set(true);
+					} finally {
+						finished.countDown();
+					}
+					return Status.OK_STATUS;
 				}
+			};
+			job.setSystem(true);
+			job.schedule();
+		}
+
+		boolean interrupted = false;
+		int reported = 0;
+		String reportedFile = null;
+		boolean done = false;
+		while (!done) {
+			try {
+				done = finished.await(FILL_PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// $JL-EXC$ stop taking new files, but wait for the running ones
+				interrupted = true;
+				canceled.set(true);
+			}
+			String file = current.get();
+			if (file != null && !file.equals(reportedFile)) {
+				progress.subTask(file);
+				reportedFile = file;
 			}
+			int count = filled.get();
+			progress.worked(count - reported);
+			reported = count;
+			if (progress.isCanceled()) {
+				canceled.set(true);
+			}
+		}
+
+		synchronized (results) {
+			for (IStatus result : results) {
+				status.add(result);
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
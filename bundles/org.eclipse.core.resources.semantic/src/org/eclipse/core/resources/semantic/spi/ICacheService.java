@@ -47,6 +47,13 @@ public interface ICacheService {
 	public void addContent(IPath path, InputStream input, int options, IProgressMonitor monitor) throws CoreException;
 
 	/**
+	 * Opens the cached content.
+	 * <p>
+	 * The content is only available as a stream; there is no channel view,
+	 * since all consumers, including the input streams of the semantic file
+	 * stores, read streams. The stream keeps reading the content it was
+	 * opened on even if the content is replaced in the meantime.
+	 * 
 	 * @param path
 	 *            the path
 	 * @return the content the content
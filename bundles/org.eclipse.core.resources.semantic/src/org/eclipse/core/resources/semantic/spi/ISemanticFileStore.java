@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.core.resources.semantic.spi;
 
+import java.util.Collection;
 import java.util.Map;
 
 import org.eclipse.core.filesystem.IFileStore;
@@ -192,6 +193,33 @@ public interface ISemanticFileStore extends ISemanticProperties, IFileStore {
 	 */
 	public void remove(IProgressMonitor monitor) throws CoreException;
 
+	/**
+	 * Removes and adds several children in one step.
+	 * <p>
+	 * This is equivalent to calling {@link #remove(IProgressMonitor)} on the
+	 * children to remove, followed by {@link #addChildFolder(String)} and
+	 * {@link #addChildResource(String, boolean, String, Map)} for the children
+	 * to add, but the metadata is changed under a single lock and persisted
+	 * once. If a child to add already exists and is not removed, or if a name
+	 * is to be added more than once, nothing is changed.
+	 * 
+	 * @param namesToRemove
+	 *            the names of the children to remove; names of children that
+	 *            do not exist are ignored
+	 * @param folderNamesToAdd
+	 *            the names of the child folders to add
+	 * @param filesToAdd
+	 *            the names of the child files to add, mapped to the persistent
+	 *            properties of the new files or <code>null</code>
+	 * @param monitor
+	 *            may be null
+	 * @throws CoreException
+	 *             in case of failure
+	 * @since 0.7
+	 */
+	public void updateChildren(Collection<String> namesToRemove, Collection<String> folderNamesToAdd,
+			Map<String, Map<QualifiedName, String>> filesToAdd, IProgressMonitor monitor) throws CoreException;
+
 	/**
 	 * Removes the file store and it's children forcefully without consulting
 	 * corresponding content providers.
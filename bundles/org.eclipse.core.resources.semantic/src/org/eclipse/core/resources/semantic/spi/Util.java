@@ -11,9 +11,12 @@
  *******************************************************************************/
 package org.eclipse.core.resources.semantic.spi;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.core.resources.semantic.SemanticResourceException;
 import org.eclipse.core.resources.semantic.SemanticResourceStatusCode;
@@ -28,12 +31,20 @@ import org.eclipse.core.runtime.SubProgressMonitor;
  */
 public class Util {
 
+	private static final int BUFFER_SIZE = 8192;
+	// the number of bytes transferred between file channels per step
+	private static final long CHANNEL_TRANSFER_SIZE = 1024 * 1024;
+
 	/**
-	 * Singleton buffer created to avoid buffer creations in the transferStreams
-	 * method. Used as an optimization, based on the assumption that multiple
-	 * writes won't happen in a given instance of FileStore.
+	 * Per-thread buffer created to avoid buffer creations in the
+	 * transferStreams method without serializing concurrent transfers.
 	 */
-	private static final byte[] buffer = new byte[8192];
+	private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
 	private static final String EMPTY = ""; //$NON-NLS-1$
 
 	/**
@@ -49,7 +60,10 @@ public class Util {
 
 	/**
 	 * Transfers the contents of an input stream to an output stream, using a
-	 * large buffer.
+	 * large buffer. If both streams are plain file streams, the bytes are
+	 * copied by the file channels without passing through the buffer.
+	 * <p>
+	 * Transfers on different threads run concurrently.
 	 * 
 	 * @param source
 	 *            The input stream to transfer
@@ -65,28 +79,27 @@ public class Util {
 	public static final void transferStreams(InputStream source, OutputStream destination, IProgressMonitor monitor) throws CoreException {
 		IProgressMonitor actMonitor = Util.monitorFor(monitor);
 		try {
-			/*
-			 * Note: although synchronizing on the buffer is thread-safe, it may
-			 * result in slower performance in the future if we want to allow
-			 * concurrent writes.
-			 */
-			synchronized (buffer) {
-				while (true) {
-					int bytesRead = -1;
-					try {
-						bytesRead = source.read(buffer);
-					} catch (IOException e) {
-						throw new SemanticResourceException(SemanticResourceStatusCode.UTIL_BYTE_TRANSER, new Path(EMPTY), Messages.Util_TransferRead_XMSG, e);
-					}
-					if (bytesRead == -1)
-						break;
-					try {
-						destination.write(buffer, 0, bytesRead);
-					} catch (IOException e) {
-						throw new SemanticResourceException(SemanticResourceStatusCode.UTIL_BYTE_TRANSER, new Path(EMPTY), Messages.Util_TransferWrite_XMSG, e);
-					}
-					actMonitor.worked(1);
+			if (source.getClass() == FileInputStream.class && destination.getClass() == FileOutputStream.class) {
+				transferChannels(((FileInputStream) source).getChannel(), ((FileOutputStream) destination).getChannel(), actMonitor);
+				return;
+			}
+
+			byte[] buffer = buffers.get();
+			while (true) {
+				int bytesRead = -1;
+				try {
+					bytesRead = source.read(buffer);
+				} catch (IOException e) {
+					throw new SemanticResourceException(SemanticResourceStatusCode.UTIL_BYTE_TRANSER, new Path(EMPTY), Messages.Util_TransferRead_XMSG, e);
 				}
+				if (bytesRead == -1)
+					break;
+				try {
+					destination.write(buffer, 0, bytesRead);
+				} catch (IOException e) {
+					throw new SemanticResourceException(SemanticResourceStatusCode.UTIL_BYTE_TRANSER, new Path(EMPTY), Messages.Util_TransferWrite_XMSG, e);
+				}
+				actMonitor.worked(1);
 			}
 		} finally {
 			Util.safeClose(source);
@@ -94,6 +107,35 @@ public class Util {
 		}
 	}
 
+	/*
+	 * lets the operating system copy the bytes between files; reports one unit
+	 * of work per buffer size as the stream based transfer does
+	 */
+	private static void transferChannels(FileChannel source, FileChannel destination, IProgressMonitor monitor) throws CoreException {
+		long position;
+		long size;
+		try {
+			position = source.position();
+			size = source.size();
+		} catch (IOException e) {
+			throw new SemanticResourceException(SemanticResourceStatusCode.UTIL_BYTE_TRANSER, new Path(EMPTY), Messages.Util_TransferRead_XMSG, e);
+		}
+		while (position < size) {
+			long transferred;
+			try {
+				transferred = source.transferTo(position, Math.min(CHANNEL_TRANSFER_SIZE, size - position), destination);
+			} catch (IOException e) {
+				throw new SemanticResourceException(SemanticResourceStatusCode.UTIL_BYTE_TRANSER, new Path(EMPTY), Messages.Util_TransferWrite_XMSG, e);
+			}
+			if (transferred <= 0) {
+				// the source was truncated concurrently
+				break;
+			}
+			position += transferred;
+			monitor.worked((int) ((transferred + BUFFER_SIZE - 1) / BUFFER_SIZE));
+		}
+	}
+
 	/**
 	 * Closes a stream and ignores any resulting exception.
 	 * 
@@ -26,6 +26,9 @@ public class Messages extends NLS {
 	public static String SampleRESTReadonlyContentProvider_MethodNotSupported_XMSG;
 	public static String SampleRESTReadonlyContentProvider_MethodResult_XMSG;
 	public static String SampleRESTReadonlyContentProvider_RemoteUriNotSet_XMSG;
+	public static String SampleWSDLXSDContentProvider_ResolveDependencies_XGRP;
+	public static String SampleWebDAVContentProvider_UploadFailed_XMSG;
+	public static String SampleWebDAVContentProvider_Upload_XGRP;
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.core.resources.semantic.examples.providers;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -18,16 +19,38 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.eclipse.core.resources.semantic.examples.webdav.HttpConnectionPool;
 
 /**
- *
+ * HTTP and HTTPS requests are sent using the {@link HttpConnectionPool}; other
+ * protocols are handled by {@link URLConnection}.
  */
 public class RESTUtil {
 
 	private static final Object FILE_SCHEME = "file"; //$NON-NLS-1$
+	private static final String HTTP_SCHEME = "http"; //$NON-NLS-1$
+	private static final String HTTPS_SCHEME = "https"; //$NON-NLS-1$
+	private static final String ETAG = "ETag"; //$NON-NLS-1$
+	private static final String IF_NONE_MATCH = "If-None-Match"; //$NON-NLS-1$
+	private static final String IF_MODIFIED_SINCE = "If-Modified-Since"; //$NON-NLS-1$
+	private static final String LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
+	private static final String DATE = "Date"; //$NON-NLS-1$
+	private static final String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz"; //$NON-NLS-1$
 
 	/**
 	 * Call-back interface for setting the timestamp and content type.
@@ -52,6 +75,21 @@ public class RESTUtil {
 
 	}
 
+	/**
+	 * Call-back interface for conditional requests; also reports the entity
+	 * tag.
+	 * 
+	 */
+	public interface IRESTConditionalCallback extends IRESTCallback {
+		/**
+		 * sets the entity tag
+		 * 
+		 * @param eTag
+		 *            the entity tag reported, may be <code>null</code>
+		 */
+		public void setETag(String eTag);
+	}
+
 	/**
 	 * Opens an input stream for the given URI
 	 * 
@@ -66,6 +104,10 @@ public class RESTUtil {
 	public static InputStream openInputStream(String remoteURI, IRESTCallback setter) throws IOException {
 		final URI uri = URI.create(remoteURI);
 
+		if (isHttp(uri)) {
+			return openHttpInputStream(uri, 0, null, setter);
+		}
+
 		URL url = uri.toURL();
 
 		URLConnection conn = url.openConnection();
@@ -81,6 +123,146 @@ public class RESTUtil {
 		return conn.getInputStream();
 	}
 
+	/**
+	 * Opens an input stream for the given URI unless the remote content is
+	 * unchanged.
+	 * <p>
+	 * For HTTP, a conditional request is sent; for other protocols, the last
+	 * modification time is compared.
+	 * 
+	 * @param remoteURI
+	 *            the URI
+	 * @param ifModifiedSince
+	 *            the timestamp of the known content, or 0
+	 * @param ifNoneMatch
+	 *            the entity tag of the known content, or <code>null</code>
+	 * @param setter
+	 *            the callback setter
+	 * @return the input stream, or <code>null</code> if the content is
+	 *         unchanged
+	 * @throws IOException
+	 *             upon failure
+	 */
+	public static InputStream openInputStreamIfModified(String remoteURI, long ifModifiedSince, String ifNoneMatch,
+			IRESTConditionalCallback setter) throws IOException {
+		final URI uri = URI.create(remoteURI);
+
+		if (isHttp(uri)) {
+			return openHttpInputStream(uri, ifModifiedSince, ifNoneMatch, setter);
+		}
+
+		URL url = uri.toURL();
+
+		URLConnection conn = url.openConnection();
+		if (conn instanceof HttpURLConnection) {
+			HttpURLConnection httpConn = (HttpURLConnection) conn;
+			if (ifModifiedSince != 0) {
+				httpConn.setIfModifiedSince(ifModifiedSince);
+			}
+			if (ifNoneMatch != null) {
+				httpConn.setRequestProperty(IF_NONE_MATCH, ifNoneMatch);
+			}
+			if (httpConn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				httpConn.disconnect();
+				return null;
+			}
+		} else if (ifModifiedSince != 0 && conn.getLastModified() == ifModifiedSince) {
+			conn.getInputStream().close();
+			return null;
+		}
+
+		if (conn.getLastModified() != 0) {
+			setter.setTimestamp(conn.getLastModified());
+		} else {
+			setter.setTimestamp(conn.getDate());
+		}
+		setter.setContentType(conn.getContentType());
+		setter.setETag(conn.getHeaderField(ETAG));
+
+		return conn.getInputStream();
+	}
+
+	private static boolean isHttp(URI uri) {
+		return HTTP_SCHEME.equalsIgnoreCase(uri.getScheme()) || HTTPS_SCHEME.equalsIgnoreCase(uri.getScheme());
+	}
+
+	/*
+	 * sends a GET request using the shared connection pool; the connection is
+	 * returned to the pool when the returned stream is closed
+	 */
+	private static InputStream openHttpInputStream(URI uri, long ifModifiedSince, String ifNoneMatch, IRESTCallback setter)
+			throws IOException {
+		HttpGet getMethod = new HttpGet(uri);
+		if (ifModifiedSince != 0) {
+			getMethod.addHeader(IF_MODIFIED_SINCE, createHttpDateFormat().format(new Date(ifModifiedSince)));
+		}
+		if (ifNoneMatch != null) {
+			getMethod.addHeader(IF_NONE_MATCH, ifNoneMatch);
+		}
+
+		HttpResponse response = HttpConnectionPool.execute(getMethod);
+		boolean release = true;
+		try {
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+				return null;
+			}
+			if (statusCode != HttpStatus.SC_OK) {
+				throw new IOException(response.getStatusLine().getReasonPhrase());
+			}
+
+			HttpEntity entity = response.getEntity();
+			if (setter != null) {
+				long timestamp = getHttpDate(response, LAST_MODIFIED);
+				if (timestamp == 0) {
+					timestamp = getHttpDate(response, DATE);
+				}
+				setter.setTimestamp(timestamp);
+				if (entity != null && entity.getContentType() != null) {
+					setter.setContentType(entity.getContentType().getValue());
+				} else {
+					setter.setContentType(null);
+				}
+				if (setter instanceof IRESTConditionalCallback) {
+					Header eTag = response.getFirstHeader(ETAG);
+					((IRESTConditionalCallback) setter).setETag(eTag != null ? eTag.getValue() : null);
+				}
+			}
+
+			InputStream is;
+			if (entity != null) {
+				is = entity.getContent();
+			} else {
+				is = new ByteArrayInputStream(new byte[0]);
+			}
+			release = false;
+			return is;
+		} finally {
+			if (release) {
+				HttpConnectionPool.release(response);
+			}
+		}
+	}
+
+	private static long getHttpDate(HttpResponse response, String headerName) {
+		Header header = response.getFirstHeader(headerName);
+		if (header == null) {
+			return 0;
+		}
+		try {
+			return createHttpDateFormat().parse(header.getValue()).getTime();
+		} catch (ParseException e) {
+			// $JL-EXC$ treat like a missing header
+			return 0;
+		}
+	}
+
+	private static SimpleDateFormat createHttpDateFormat() {
+		SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT")); //$NON-NLS-1$
+		return format;
+	}
+
 	/**
 	 * Opens an output stream for a file URI
 	 * 
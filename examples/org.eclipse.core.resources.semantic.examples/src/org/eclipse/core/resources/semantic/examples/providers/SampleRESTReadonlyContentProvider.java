@@ -15,13 +15,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 
-import org.eclipse.core.filesystem.EFS;
-import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.resources.semantic.ISemanticFileSystem;
 import org.eclipse.core.resources.semantic.SemanticResourceException;
 import org.eclipse.core.resources.semantic.SemanticResourceStatusCode;
 import org.eclipse.core.resources.semantic.SyncDirection;
-import org.eclipse.core.resources.semantic.examples.providers.RESTUtil.IRESTCallback;
+import org.eclipse.core.resources.semantic.examples.providers.RESTUtil.IRESTConditionalCallback;
 import org.eclipse.core.resources.semantic.examples.remote.SemanticResourcesPluginExamplesCore;
 import org.eclipse.core.resources.semantic.spi.CachingContentProvider;
 import org.eclipse.core.resources.semantic.spi.FileCacheServiceFactory;
@@ -36,6 +34,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.osgi.util.NLS;
 
@@ -45,6 +44,11 @@ import org.eclipse.osgi.util.NLS;
  */
 public class SampleRESTReadonlyContentProvider extends CachingContentProvider implements ISemanticContentProviderREST {
 
+	// the number of files fetched in parallel when filling the cache
+	private static final int FILL_CACHE_CONCURRENCY = 4;
+
+	private static final QualifiedName RESOURCE_ETAG = new QualifiedName(SemanticResourcesPluginExamplesCore.PLUGIN_ID, "ETag"); //$NON-NLS-1$
+
 	/**
 	 * @throws CoreException
 	 */
@@ -53,9 +57,25 @@ public class SampleRESTReadonlyContentProvider extends CachingContentProvider im
 		return new FileCacheServiceFactory();
 	}
 
+	@Override
+	protected int getFillCacheConcurrency() {
+		return FILL_CACHE_CONCURRENCY;
+	}
+
 	@Override
 	public InputStream openInputStreamInternal(final ISemanticFileStore store, IProgressMonitor monitor,
 			final ICacheTimestampSetter timeStampSetter) throws CoreException {
+		return openRemoteInputStream(store, 0, null, timeStampSetter);
+	}
+
+	@Override
+	protected InputStream openInputStreamIfChanged(ISemanticFileStore store, IProgressMonitor monitor,
+			ICacheTimestampSetter timeStampSetter) throws CoreException {
+		return openRemoteInputStream(store, timeStampSetter.getTimestamp(), store.getPersistentProperty(RESOURCE_ETAG), timeStampSetter);
+	}
+
+	private InputStream openRemoteInputStream(final ISemanticFileStore store, long ifModifiedSince, String ifNoneMatch,
+			final ICacheTimestampSetter timeStampSetter) throws CoreException {
 		String remoteURI = this.getURIStringInternal(store);
 
 		if (remoteURI == null) {
@@ -64,7 +84,7 @@ public class SampleRESTReadonlyContentProvider extends CachingContentProvider im
 		}
 
 		try {
-			return RESTUtil.openInputStream(remoteURI, new IRESTCallback() {
+			return RESTUtil.openInputStreamIfModified(remoteURI, ifModifiedSince, ifNoneMatch, new IRESTConditionalCallback() {
 				public void setTimestamp(long timestamp) {
 					timeStampSetter.setTimestamp(timestamp);
 				}
@@ -78,6 +98,15 @@ public class SampleRESTReadonlyContentProvider extends CachingContentProvider im
 					}
 				}
 
+				public void setETag(String eTag) {
+					try {
+						store.setPersistentProperty(RESOURCE_ETAG, eTag);
+					} catch (CoreException e) {
+						// $JL-EXC$ the next refresh transfers the content
+						e.printStackTrace();
+					}
+				}
+
 			});
 		} catch (IOException e) {
 			throw new SemanticResourceException(SemanticResourceStatusCode.REMOTE_CONNECT_EXCEPTION, store.getPath(), e.getMessage(), e);
@@ -146,28 +175,9 @@ public class SampleRESTReadonlyContentProvider extends CachingContentProvider im
 
 	public void synchronizeContentWithRemote(ISemanticFileStore semanticFileStore, SyncDirection direction, IProgressMonitor monitor,
 			MultiStatus status) {
-		if (semanticFileStore.getType() == ISemanticFileStore.FILE) {
-			if (semanticFileStore.isLocalOnly()) {
-				return;
-			}
-
-			if (direction == SyncDirection.INCOMING || direction == SyncDirection.BOTH) {
-				this.dropCache(semanticFileStore, monitor, this.deleteAllVisitor, status);
-				this.fillCache(semanticFileStore, monitor, status);
-			}
-		} else {
-			IFileStore[] childStores;
-			try {
-				childStores = semanticFileStore.childStores(EFS.NONE, monitor);
-			} catch (CoreException e) {
-				status.add(e.getStatus());
-				return;
-			}
-			for (IFileStore store : childStores) {
-				if (store instanceof ISemanticFileStore) {
-					synchronizeContentWithRemote((ISemanticFileStore) store, direction, monitor, status);
-				}
-			}
+		if (direction == SyncDirection.INCOMING || direction == SyncDirection.BOTH) {
+			// unchanged files keep their cached content
+			this.revalidateCache(semanticFileStore, monitor, status);
 		}
 	}
 
@@ -13,14 +13,25 @@ package org.eclipse.core.resources.semantic.examples.providers;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.resources.semantic.ISemanticBatchOperation;
+import org.eclipse.core.resources.semantic.ISemanticFileSystem;
 import org.eclipse.core.resources.semantic.SyncDirection;
 import org.eclipse.core.resources.semantic.examples.remote.SemanticResourcesPluginExamplesCore;
 import org.eclipse.core.resources.semantic.spi.ISemanticFileStore;
@@ -30,13 +41,30 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  *
  */
 public class SampleWSDLXSDContentProvider extends SampleRESTReadonlyContentProvider {
 
+	private static final int MAX_PARALLEL_FETCHES = 4;
+	private static final String SCHEMA_LOCATION = "schemaLocation"; //$NON-NLS-1$
+
+	private static final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+
+	static {
+		parserFactory.setNamespaceAware(true);
+	}
+
 	@Override
 	public void addFileFromRemoteByURI(ISemanticFileStore parentStore, String name, URI uri, IProgressMonitor monitor) throws CoreException {
 		super.addFileFromRemoteByURI(parentStore, name, uri, monitor);
@@ -45,6 +73,11 @@ public class SampleWSDLXSDContentProvider extends SampleRESTReadonlyContentProvi
 
 	/**
 	 * Adds the dependent files
+	 * <p>
+	 * The import graph is resolved level by level; the documents of a level
+	 * are fetched and scanned in parallel. Each document is fetched at most
+	 * once per call, even if it is imported by several others. The added
+	 * resources are written to the metadata in one batch.
 	 * 
 	 * @param store
 	 *            the store
@@ -55,53 +88,85 @@ public class SampleWSDLXSDContentProvider extends SampleRESTReadonlyContentProvi
 	 * @throws CoreException
 	 *             on failure
 	 */
-	public void addDependentFiles(ISemanticFileStore store, String uri, IProgressMonitor monitor) throws CoreException {
-		InputStream is = store.openInputStream(EFS.NONE, monitor);
-		List<String> uris;
+	public void addDependentFiles(final ISemanticFileStore store, final String uri, IProgressMonitor monitor) throws CoreException {
+		ISemanticFileSystem sfs = (ISemanticFileSystem) store.getFileSystem();
+		sfs.run(new ISemanticBatchOperation() {
+			public void run(IProgressMonitor monitor1) throws CoreException {
+				resolveDependentFiles(store, uri, monitor1);
+			}
+		}, monitor);
+	}
 
-		try {
-			StringBuffer buf = RESTUtil.readStreamIntoStringBuffer(is, "UTF-8"); //$NON-NLS-1$
+	private void resolveDependentFiles(ISemanticFileStore store, String uri, IProgressMonitor monitor) throws CoreException {
+		IProgressMonitor actMonitor = Util.monitorFor(monitor);
 
-			uris = this.findRelativeURLs(buf);
+		Set<String> resolvedURIs = new HashSet<String>();
+		resolvedURIs.add(uri);
 
-		} catch (IOException e) {
-			// $JL-EXC$ ignore
-			throw new CoreException(new Status(IStatus.ERROR, SemanticResourcesPluginExamplesCore.PLUGIN_ID, e.getMessage(), e));
-		} finally {
-			Util.safeClose(is);
-		}
+		List<ISemanticFileStore> stores = Collections.singletonList(store);
+		List<String> uris = Collections.singletonList(uri);
 
-		String rootURI = uri.substring(0, uri.lastIndexOf("/")); //$NON-NLS-1$
+		while (!stores.isEmpty()) {
+			String[][] imports = this.readImports(stores, actMonitor);
 
-		for (String uriString : uris) {
-			if (uriString.contains(":")) { //$NON-NLS-1$
-				// this is an absolute URI; ignore
-				continue;
-			}
+			List<ISemanticFileStore> nextStores = new ArrayList<ISemanticFileStore>();
+			List<String> nextURIs = new ArrayList<String>();
 
-			if (uriString.contains("?")) { //$NON-NLS-1$
-				// this is an invalid file name; ignore
-				continue;
-			}
+			for (int i = 0; i < imports.length; i++) {
+				String documentURI = uris.get(i);
+				String rootURI = documentURI.substring(0, documentURI.lastIndexOf("/")); //$NON-NLS-1$
 
-			if (uriString.startsWith("/")) { //$NON-NLS-1$
-				// this is an URI that is not relative to the document; ignore
-				continue;
-			}
+				for (String uriString : imports[i]) {
+					if (!isRelativeLocation(uriString)) {
+						continue;
+					}
+
+					String dependentURI = rootURI + "/" + uriString; //$NON-NLS-1$
+					if (!resolvedURIs.add(dependentURI)) {
+						// already resolved in this call
+						continue;
+					}
 
-			String[] parts = uriString.split("/"); //$NON-NLS-1$
+					String[] parts = uriString.split("/"); //$NON-NLS-1$
+
+					ISemanticFileStore newStore = addChildrenHierarchy((ISemanticFileStore) stores.get(i).getParent(), rootURI, parts, 0,
+							actMonitor);
+					if (newStore != null) {
+						nextStores.add(newStore);
+						nextURIs.add(dependentURI);
+					}
+				}
+			}
 
-			addDependentFiles((ISemanticFileStore) store.getParent(), rootURI, parts, 0, monitor);
+			stores = nextStores;
+			uris = nextURIs;
 		}
 	}
 
-	private void addDependentFiles(ISemanticFileStore parentStore, String rootURI, String[] parts, int index, IProgressMonitor monitor)
-			throws CoreException {
-		addChildrenHierarchy(parentStore, rootURI, parts, index, monitor);
+	private boolean isRelativeLocation(String uriString) {
+		if (uriString.contains(":")) { //$NON-NLS-1$
+			// this is an absolute URI; ignore
+			return false;
+		}
+
+		if (uriString.contains("?")) { //$NON-NLS-1$
+			// this is an invalid file name; ignore
+			return false;
+		}
+
+		if (uriString.startsWith("/")) { //$NON-NLS-1$
+			// this is an URI that is not relative to the document; ignore
+			return false;
+		}
+		return true;
 	}
 
-	private void addChildrenHierarchy(ISemanticFileStore childStore, String rootURI, String[] parts, int index, IProgressMonitor monitor)
-			throws CoreException {
+	/*
+	 * creates the missing folders and the file; returns the new file or null
+	 * if the file already existed
+	 */
+	private ISemanticFileStore addChildrenHierarchy(ISemanticFileStore childStore, String rootURI, String[] parts, int index,
+			IProgressMonitor monitor) throws CoreException {
 
 		IFileStore child = childStore.getChild(parts[index]);
 
@@ -112,49 +177,146 @@ public class SampleWSDLXSDContentProvider extends SampleRESTReadonlyContentProvi
 
 			child = childStore.getChild(parts[index]);
 
-			addChildrenHierarchy((ISemanticFileStore) child, rootURI + "/" + parts[index], parts, index + 1, monitor); //$NON-NLS-1$
-		} else {
-			// create a file
-			if (!child.fetchInfo().exists()) {
-				super.addFileFromRemoteByURI(childStore, parts[index], URI.create(rootURI + "/" + parts[index]), monitor); //$NON-NLS-1$
+			return addChildrenHierarchy((ISemanticFileStore) child, rootURI + "/" + parts[index], parts, index + 1, monitor); //$NON-NLS-1$
+		}
 
-				this.addDependentFiles((ISemanticFileStore) childStore.getChild(parts[index]), rootURI + "/" + parts[index], monitor); //$NON-NLS-1$
-			}
+		// create a file
+		if (!child.fetchInfo().exists()) {
+			super.addFileFromRemoteByURI(childStore, parts[index], URI.create(rootURI + "/" + parts[index]), monitor); //$NON-NLS-1$
+
+			return (ISemanticFileStore) childStore.getChild(parts[index]);
 		}
+		return null;
 	}
 
-	private List<String> findRelativeURLs(StringBuffer buf) {
-		List<String> uris = new ArrayList<String>();
+	/*
+	 * fetches and scans the documents with a bounded number of parallel
+	 * requests; the first failure is thrown
+	 */
+	private String[][] readImports(final List<ISemanticFileStore> stores, IProgressMonitor monitor) throws CoreException {
+		final String[][] result = new String[stores.size()][];
+
+		if (result.length == 1) {
+			result[0] = readImports(stores.get(0), monitor);
+			return result;
+		}
+
+		final CoreException[] failures = new CoreException[result.length];
+		final AtomicInteger next = new AtomicInteger();
+		final int workers = Math.min(MAX_PARALLEL_FETCHES, result.length);
+		final CountDownLatch finished = new CountDownLatch(workers);
+
+		for (int i = 0; i < workers; i++) {
+			Job job = new Job(NLS.bind(Messages.SampleWSDLXSDContentProvider_ResolveDependencies_XGRP, stores.get(0).getPath().toString())) {
+				@Override
+				protected IStatus run(IProgressMonitor jobMonitor) {
+					try {
+						int index;
+						while ((index = next.getAndIncrement()) < result.length) {
+							try {
+								result[index] = readImports(stores.get(index), new NullProgressMonitor());
+							} catch (CoreException e) {
+								failures[index] = e;
+								// no need to continue
+								next.set(result.length);
+							}
+						}
+					} finally {
+						finished.countDown();
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			job.setSystem(true);
+			job.schedule();
+		}
+
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					if (finished.await(100, TimeUnit.MILLISECONDS)) {
+						break;
+					}
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+				if (monitor.isCanceled()) {
+					// the running requests are completed in the background
+					next.set(result.length);
+					throw new OperationCanceledException();
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
 
-		if (buf.indexOf("<wsdl:") < 0) { //$NON-NLS-1$
-			Pattern pattern = Pattern.compile("(<import)(.*)( schemaLocation=\")([^\"]+)"); //$NON-NLS-1$
-			Matcher matcher = pattern.matcher(buf);
-			while (matcher.find()) {
-				String relativeURLString = matcher.group(4);
-				uris.add(relativeURLString);
+		for (CoreException failure : failures) {
+			if (failure != null) {
+				throw failure;
 			}
+		}
+		return result;
+	}
 
-			pattern = Pattern.compile("(<import schemaLocation=\")([^\"]+)"); //$NON-NLS-1$
-			matcher = pattern.matcher(buf);
-			while (matcher.find()) {
-				String relativeURLString = matcher.group(2);
-				uris.add(relativeURLString);
+	/*
+	 * returns the schema locations of the import and include elements; the
+	 * content is scanned as a stream, and content that is not well-formed is
+	 * scanned up to the first error
+	 */
+	private String[] readImports(ISemanticFileStore store, IProgressMonitor monitor) throws CoreException {
+		InputStream is = store.openInputStream(EFS.NONE, monitor);
+		ImportHandler handler = new ImportHandler();
+
+		try {
+			SAXParser parser;
+			synchronized (parserFactory) {
+				parser = parserFactory.newSAXParser();
 			}
-		} else {
-			Pattern pattern = Pattern.compile("(<xsd:import)(.*)( schemaLocation=\")([^\"]+)"); //$NON-NLS-1$
-			Matcher matcher = pattern.matcher(buf);
-			while (matcher.find()) {
-				String relativeURLString = matcher.group(4);
-				uris.add(relativeURLString);
+			parser.parse(is, handler);
+		} catch (SAXException e) {
+			// $JL-EXC$ use the locations found so far
+		} catch (ParserConfigurationException e) {
+			throw new CoreException(new Status(IStatus.ERROR, SemanticResourcesPluginExamplesCore.PLUGIN_ID, e.getMessage(), e));
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, SemanticResourcesPluginExamplesCore.PLUGIN_ID, e.getMessage(), e));
+		} finally {
+			Util.safeClose(is);
+		}
+
+		return handler.locations.toArray(new String[handler.locations.size()]);
+	}
+
+	private static final class ImportHandler extends DefaultHandler {
+
+		final List<String> locations = new ArrayList<String>();
+
+		ImportHandler() {
+			// nothing
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			String name = localName;
+			if (name == null || name.length() == 0) {
+				name = qName.substring(qName.indexOf(':') + 1);
 			}
-			pattern = Pattern.compile("(<xsd:import schemaLocation=\")([^\"]+)"); //$NON-NLS-1$
-			matcher = pattern.matcher(buf);
-			while (matcher.find()) {
-				String relativeURLString = matcher.group(2);
-				uris.add(relativeURLString);
+
+			if (name.equals("import") || name.equals("include")) { //$NON-NLS-1$ //$NON-NLS-2$
+				String location = attributes.getValue(SCHEMA_LOCATION);
+				if (location != null) {
+					this.locations.add(location);
+				}
 			}
 		}
-		return uris;
+
+		@Override
+		public InputSource resolveEntity(String publicId, String systemId) {
+			// don't fetch external DTDs
+			return new InputSource(new StringReader("")); //$NON-NLS-1$
+		}
 	}
 
 	@Override
@@ -15,15 +15,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.resources.semantic.ISemanticBatchOperation;
 import org.eclipse.core.resources.semantic.ISemanticFileSystem;
 import org.eclipse.core.resources.semantic.SemanticResourceException;
 import org.eclipse.core.resources.semantic.SemanticResourceStatusCode;
 import org.eclipse.core.resources.semantic.SyncDirection;
 import org.eclipse.core.resources.semantic.examples.remote.SemanticResourcesPluginExamplesCore;
+import org.eclipse.core.resources.semantic.examples.webdav.HttpConnectionPool;
 import org.eclipse.core.resources.semantic.examples.webdav.WebDAVResourceNotFoundException;
 import org.eclipse.core.resources.semantic.examples.webdav.WebDAVUtil;
 import org.eclipse.core.resources.semantic.examples.webdav.WebDAVUtil.IWebDAVCallback;
@@ -52,8 +66,11 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.team.core.history.IFileHistory;
 import org.eclipse.team.core.history.IFileRevision;
@@ -67,7 +84,16 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 	private static final QualifiedName SUPPORTS_LOCKING = new QualifiedName(SemanticResourcesPluginExamplesCore.PLUGIN_ID,
 			"SupportsLocking"); //$NON-NLS-1$
 	private static final QualifiedName LOCK_TOKEN = new QualifiedName(SemanticResourcesPluginExamplesCore.PLUGIN_ID, "LockToken"); //$NON-NLS-1$
+	private static final QualifiedName COLLECTION_VERSION = new QualifiedName(SemanticResourcesPluginExamplesCore.PLUGIN_ID,
+			"CollectionVersion"); //$NON-NLS-1$
+	private static final QualifiedName DIRTY_STORES = new QualifiedName(SemanticResourcesPluginExamplesCore.PLUGIN_ID, "DirtyStores"); //$NON-NLS-1$
 	private static final String TRUE = "true"; //$NON-NLS-1$
+	private static final String DIRTY_STORES_SEPARATOR = "\n"; //$NON-NLS-1$
+	private static final int MAX_UPLOAD_ATTEMPTS = 3;
+	private static final long UPLOAD_RETRY_DELAY = 500;
+
+	// guards the dirty store indexes
+	private static final Object dirtyStoresLock = new Object();
 
 	@Override
 	public void onCacheUpdate(ISemanticFileStore childStore, InputStream newContent, long timestamp, boolean append,
@@ -75,8 +101,11 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 		super.onCacheUpdate(childStore, newContent, timestamp, append, monitor);
 		try {
 			childStore.setLocalOnly(false);
-			childStore.setPersistentProperty(LOCAL_CHANGE, TRUE);
-			childStore.setPersistentProperty(RESOURCE_ETAG, null);
+			Map<QualifiedName, String> properties = new HashMap<QualifiedName, String>();
+			properties.put(LOCAL_CHANGE, TRUE);
+			properties.put(RESOURCE_ETAG, null);
+			childStore.setPersistentProperties(properties);
+			this.markDirty(childStore, true);
 		} catch (CoreException e) {
 			SemanticResourcesPluginExamplesCore.getDefault().getLog()
 					.log(new Status(IStatus.ERROR, SemanticResourcesPluginExamplesCore.PLUGIN_ID, e.getMessage(), e));
@@ -308,7 +337,8 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 		this.setReadOnlyInternal(newChild, true);
 
 		try {
-			refreshStoreHierarchy(SyncDirection.INCOMING, newChild, uri, monitor);
+			refreshStoreHierarchy(SyncDirection.INCOMING, newChild, uri, monitor, new MultiStatus(
+					SemanticResourcesPluginExamplesCore.PLUGIN_ID, IStatus.OK, "", null)); //$NON-NLS-1$
 		} catch (CoreException e) {
 			deleteCache(newChild, monitor);
 			newChild.remove(monitor);
@@ -327,7 +357,8 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 		newChild.setRemoteURIString(uriString);
 
 		try {
-			refreshStoreHierarchy(SyncDirection.INCOMING, newChild, uri, monitor);
+			refreshStoreHierarchy(SyncDirection.INCOMING, newChild, uri, monitor, new MultiStatus(
+					SemanticResourcesPluginExamplesCore.PLUGIN_ID, IStatus.OK, "", null)); //$NON-NLS-1$
 		} catch (CoreException e) {
 			deleteCache(newChild, monitor);
 			newChild.remove(monitor);
@@ -335,30 +366,24 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 		}
 	}
 
-	private void refreshStoreHierarchy(SyncDirection direction, ISemanticFileStore root, URI rootURI, IProgressMonitor monitor)
-			throws CoreException {
-		try {
-			if (root.getType() == ISemanticFileStore.FILE) {
-				updateSingleFile(direction, root, rootURI, monitor);
-			} else {
-				WebDAVNode rootNode = WebDAVUtil.retrieveRemoteState(rootURI, monitor);
-				if (direction.equals(SyncDirection.INCOMING) || direction.equals(SyncDirection.BOTH)) {
-					updateChildrenIncoming(root, rootNode, monitor);
-				}
+	private void refreshStoreHierarchy(SyncDirection direction, ISemanticFileStore root, URI rootURI, IProgressMonitor monitor,
+			MultiStatus status) throws CoreException {
+		if (root.getType() == ISemanticFileStore.FILE) {
+			updateSingleFile(direction, root, rootURI, monitor, status);
+		} else {
+			if (direction.equals(SyncDirection.INCOMING) || direction.equals(SyncDirection.BOTH)) {
+				updateHierarchyIncomingInBatch(root, rootURI, monitor);
+			}
 
-				if (direction.equals(SyncDirection.OUTGOING) || direction.equals(SyncDirection.BOTH)) {
-					updateChildrenOutgoing(root, monitor);
-				}
+			if (direction.equals(SyncDirection.OUTGOING) || direction.equals(SyncDirection.BOTH)) {
+				updateChildrenOutgoing(root, monitor, status);
 			}
-		} catch (IOException e) {
-			// TODO define proper error code and improve error handling
-			throw new SemanticResourceException(SemanticResourceStatusCode.SYNC_ERROR, root.getPath(), e.getMessage(), e);
 		}
 
 	}
 
-	private void updateSingleFile(SyncDirection direction, ISemanticFileStore store, URI rootURI, IProgressMonitor monitor)
-			throws CoreException {
+	private void updateSingleFile(SyncDirection direction, ISemanticFileStore store, URI rootURI, IProgressMonitor monitor,
+			MultiStatus status) throws CoreException {
 		if (direction.equals(SyncDirection.INCOMING) || direction.equals(SyncDirection.BOTH)) {
 			if (this.isReadOnlyInternal(store)) {
 				try {
@@ -379,7 +404,7 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 			}
 		}
 		if (direction.equals(SyncDirection.OUTGOING) || direction.equals(SyncDirection.BOTH)) {
-			this.uploadFileStoreContent(store, monitor);
+			status.merge(this.uploadFileStoreContent(store, monitor));
 		}
 	}
 
@@ -395,14 +420,113 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 		return cacheService.getContent(path);
 	}
 
-	private void updateChildrenIncoming(ISemanticFileStore root, WebDAVNode rootNode, IProgressMonitor monitor) throws CoreException {
+	/*
+	 * the incoming changes of a large tree consist of many small changes of
+	 * the metadata, which are written together
+	 */
+	private void updateHierarchyIncomingInBatch(final ISemanticFileStore root, final URI rootURI, IProgressMonitor monitor)
+			throws CoreException {
+		ISemanticFileSystem sfs = (ISemanticFileSystem) root.getFileSystem();
+		sfs.run(new ISemanticBatchOperation() {
+			public void run(IProgressMonitor monitor1) throws CoreException {
+				try {
+					updateHierarchyIncoming(root, rootURI, monitor1);
+				} catch (IOException e) {
+					// TODO define proper error code and improve error handling
+					throw new SemanticResourceException(SemanticResourceStatusCode.SYNC_ERROR, root.getPath(), e.getMessage(), e);
+				}
+			}
+		}, monitor);
+	}
+
+	/*
+	 * Crawls the remote tree level by level with depth 1 requests, which are
+	 * issued in parallel for the collections of a level. A collection is only
+	 * listed if its ETag or modification time differs from the one recorded by
+	 * the previous synchronization; this assumes that the server changes these
+	 * for a collection whenever the content of the collection changes. The
+	 * versions are recorded after the complete crawl succeeded so that a
+	 * failed synchronization is repeated completely.
+	 */
+	private void updateHierarchyIncoming(ISemanticFileStore root, URI rootURI, IProgressMonitor monitor) throws CoreException,
+			IOException {
+		List<ISemanticFileStore> collections = new ArrayList<ISemanticFileStore>();
+		List<URI> collectionURIs = new ArrayList<URI>();
+		List<ISemanticFileStore> listedCollections = new ArrayList<ISemanticFileStore>();
+		List<String> listedVersions = new ArrayList<String>();
+
+		collections.add(root);
+		collectionURIs.add(rootURI);
+
+		while (!collections.isEmpty()) {
+			WebDAVNode[] nodes = WebDAVUtil.retrieveRemoteStates(collectionURIs, monitor);
+
+			List<ISemanticFileStore> nextCollections = new ArrayList<ISemanticFileStore>();
+			for (int i = 0; i < nodes.length; i++) {
+				if (nodes[i] == null) {
+					continue;
+				}
+				updateChildrenIncoming(collections.get(i), nodes[i], nextCollections, monitor);
+				listedCollections.add(collections.get(i));
+				listedVersions.add(getCollectionVersion(nodes[i]));
+			}
+
+			collections = nextCollections;
+			collectionURIs = new ArrayList<URI>(nextCollections.size());
+			for (ISemanticFileStore collection : nextCollections) {
+				collectionURIs.add(getWebDAVURIForStore(collection));
+			}
+		}
+
+		for (int i = 0; i < listedCollections.size(); i++) {
+			ISemanticFileStore collection = listedCollections.get(i);
+			if (collection.isExists()) {
+				collection.setPersistentProperty(COLLECTION_VERSION, listedVersions.get(i));
+			}
+		}
+	}
+
+	private String getCollectionVersion(WebDAVNode node) {
+		if (node.etag != null) {
+			return node.etag;
+		}
+		if (node.lastModified != 0) {
+			return Long.toString(node.lastModified);
+		}
+		return null;
+	}
+
+	private boolean isCollectionUnchanged(ISemanticFileStore collection, WebDAVNode node) throws CoreException {
+		String version = getCollectionVersion(node);
+		return version != null && version.equals(collection.getPersistentProperty(COLLECTION_VERSION));
+	}
+
+	/*
+	 * updates the direct children of a collection; the child collections that
+	 * need to be listed are added to the given list. The children are matched
+	 * by name in a single pass, and the added and removed children are applied
+	 * in one batch.
+	 */
+	private void updateChildrenIncoming(ISemanticFileStore root, WebDAVNode rootNode, List<ISemanticFileStore> collectionsToList,
+			IProgressMonitor monitor) throws CoreException {
+		HashMap<String, ISemanticFileStore> existingChildren = new HashMap<String, ISemanticFileStore>();
+		for (IFileStore store : root.childStores(EFS.NONE, monitor)) {
+			existingChildren.put(store.getName(), (ISemanticFileStore) store);
+		}
+
+		List<String> foldersToAdd = new ArrayList<String>();
+		Map<String, Map<QualifiedName, String>> filesToAdd = new HashMap<String, Map<QualifiedName, String>>();
+		List<WebDAVNode> addedFiles = new ArrayList<WebDAVNode>();
+
 		for (WebDAVNode node : rootNode.children) {
-			String nodeName = node.path.segment(node.path.segmentCount() - 1);
-			if (root.hasChild(nodeName)) {
+			String nodeName = node.path.lastSegment();
+			ISemanticFileStore child = existingChildren.remove(nodeName);
+			if (child != null) {
 				// child exists
-				ISemanticFileStore child = (ISemanticFileStore) root.getChild(nodeName);
 				if (node.isFolder) {
-					updateChildrenIncoming(child, node, monitor);
+					if (!isCollectionUnchanged(child, node)) {
+						collectionsToList.add(child);
+					}
 				} else {
 					if (this.isReadOnlyInternal(child)) {
 						boolean changed = checkAndSetWebDAVModificationProperties(child, node.lastModified, node.etag, node.contentType,
@@ -415,93 +539,337 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 			} else {
 				// new child
 				if (node.isFolder) {
-					root.addChildFolder(nodeName);
-					ISemanticFileStore child = (ISemanticFileStore) root.getChild(nodeName);
-					updateChildrenIncoming(child, node, monitor);
+					foldersToAdd.add(nodeName);
 				} else {
-					root.addChildResource(nodeName, false, null, null);
-
-					ISemanticFileStore child = (ISemanticFileStore) root.getChild(nodeName);
-					this.setContentTypeInternal(child, node.contentType);
-					this.setResourceTimestamp(child, node.lastModified, monitor);
-					this.setReadOnly(child, true, monitor);
-					child.setPersistentProperty(RESOURCE_ETAG, node.etag);
+					Map<QualifiedName, String> properties = new HashMap<QualifiedName, String>();
+					if (node.etag != null) {
+						properties.put(RESOURCE_ETAG, node.etag);
+					}
 					if (node.supportsLocking) {
-						child.setPersistentProperty(SUPPORTS_LOCKING, TRUE);
+						properties.put(SUPPORTS_LOCKING, TRUE);
 					}
+					filesToAdd.put(nodeName, properties);
+					addedFiles.add(node);
 				}
 			}
 		}
 
-		IFileStore[] existingChildren = root.childStores(EFS.NONE, monitor);
+		// the remaining children do not exist remotely anymore
+		List<String> namesToRemove = new ArrayList<String>();
+		for (ISemanticFileStore child : existingChildren.values()) {
+			if (!this.isModifiedLocally(child)) {
+				namesToRemove.add(child.getName());
+			}
+		}
+
+		if (namesToRemove.isEmpty() && foldersToAdd.isEmpty() && filesToAdd.isEmpty()) {
+			return;
+		}
+
+		root.updateChildren(namesToRemove, foldersToAdd, filesToAdd, monitor);
+
+		for (String nodeName : foldersToAdd) {
+			collectionsToList.add((ISemanticFileStore) root.getChild(nodeName));
+		}
+
+		for (WebDAVNode node : addedFiles) {
+			ISemanticFileStore child = (ISemanticFileStore) root.getChild(node.path.lastSegment());
+			this.setContentTypeInternal(child, node.contentType);
+			this.setResourceTimestamp(child, node.lastModified, monitor);
+			this.setReadOnly(child, true, monitor);
+		}
+	}
+
+	/*
+	 * Uploads the locally changed files below a folder. The files are taken
+	 * from the dirty store index instead of walking the complete tree, and are
+	 * uploaded in parallel.
+	 */
+	private void updateChildrenOutgoing(ISemanticFileStore root, IProgressMonitor monitor, MultiStatus status) throws CoreException {
+		// TODO create remote WebDAV folder if needed
+		List<ISemanticFileStore> dirtyFiles = this.collectDirtyFiles(root, monitor);
+
+		this.uploadFiles(root, dirtyFiles, monitor, status);
+	}
+
+	/*
+	 * The locally changed files are recorded in a persistent property of the
+	 * store carrying the remote URI as paths relative to that store. The index
+	 * is built by a walk over the tree upon the first outgoing synchronization
+	 * and is maintained afterwards when content is changed, uploaded, or
+	 * reverted; entries of files that are gone or no longer changed are
+	 * dropped here.
+	 */
+	private List<ISemanticFileStore> collectDirtyFiles(ISemanticFileStore store, IProgressMonitor monitor) throws CoreException {
+		ISemanticFileStore remoteRoot = findParentWithURI(store);
+		if (remoteRoot == null) {
+			return Collections.emptyList();
+		}
+
+		int rootSegmentCount = remoteRoot.getPath().segmentCount();
+		IPath relativePath = store.getPath().removeFirstSegments(rootSegmentCount);
+		List<ISemanticFileStore> result = new ArrayList<ISemanticFileStore>();
 
-		for (IFileStore store : existingChildren) {
-			ISemanticFileStore child = (ISemanticFileStore) store;
-			boolean found = false;
-			for (WebDAVNode node : rootNode.children) {
-				String nodeName = node.path.segment(node.path.segmentCount() - 1);
-				if (nodeName.equals(child.getName())) {
-					found = true;
-					break;
+		synchronized (dirtyStoresLock) {
+			Set<String> paths = this.readDirtyStores(remoteRoot);
+			boolean changed = false;
+
+			if (paths == null) {
+				paths = new LinkedHashSet<String>();
+				this.collectModifiedFiles(remoteRoot, rootSegmentCount, paths, monitor);
+				changed = true;
+			}
+
+			for (Iterator<String> it = paths.iterator(); it.hasNext();) {
+				IPath path = new Path(it.next());
+				if (!relativePath.isPrefixOf(path)) {
+					continue;
+				}
+				ISemanticFileStore file = this.findStore(remoteRoot, path);
+				if (file != null && file.getType() == ISemanticFileStore.FILE && this.isUploadRequired(file)) {
+					result.add(file);
+				} else {
+					it.remove();
+					changed = true;
 				}
 			}
-			if (!found) {
-				if (!this.isModifiedLocally(child)) {
-					child.remove(monitor);
+
+			if (changed) {
+				this.writeDirtyStores(remoteRoot, paths);
+			}
+		}
+		return result;
+	}
+
+	private void collectModifiedFiles(ISemanticFileStore store, int rootSegmentCount, Set<String> paths, IProgressMonitor monitor)
+			throws CoreException {
+		for (IFileStore childStore : store.childStores(EFS.NONE, monitor)) {
+			ISemanticFileStore child = (ISemanticFileStore) childStore;
+
+			if (child.getType() == ISemanticFileStore.FILE) {
+				if (this.isUploadRequired(child)) {
+					paths.add(child.getPath().removeFirstSegments(rootSegmentCount).toString());
 				}
+			} else if (child.getRemoteURIString() == null) {
+				// folders with their own remote URI keep their own index
+				this.collectModifiedFiles(child, rootSegmentCount, paths, monitor);
 			}
 		}
 	}
 
-	private void updateChildrenOutgoing(ISemanticFileStore root, IProgressMonitor monitor) throws CoreException {
-		IFileStore[] existingChildren = root.childStores(EFS.NONE, monitor);
+	/*
+	 * records a file as changed or unchanged in the index of its remote root;
+	 * without an index, nothing is recorded since the index is built upon the
+	 * next outgoing synchronization anyway
+	 */
+	private void markDirty(ISemanticFileStore store, boolean dirty) throws CoreException {
+		ISemanticFileStore remoteRoot = findParentWithURI(store);
+		if (remoteRoot == null) {
+			return;
+		}
 
-		for (IFileStore store : existingChildren) {
-			ISemanticFileStore child = (ISemanticFileStore) store;
+		IPath relativePath = store.getPath().removeFirstSegments(remoteRoot.getPath().segmentCount());
+		if (relativePath.isEmpty()) {
+			// a file with its own remote URI is synchronized directly
+			return;
+		}
 
-			if (child.getType() == ISemanticFileStore.FILE) {
-				uploadFileStoreContent(child, monitor);
+		synchronized (dirtyStoresLock) {
+			Set<String> paths = this.readDirtyStores(remoteRoot);
+			if (paths == null) {
+				return;
+			}
+
+			boolean changed;
+			if (dirty) {
+				changed = paths.add(relativePath.toString());
 			} else {
-				// TODO create remote WebDAV folder if needed
-				updateChildrenOutgoing(child, monitor);
+				changed = paths.remove(relativePath.toString());
+			}
+
+			if (changed) {
+				this.writeDirtyStores(remoteRoot, paths);
 			}
 		}
 	}
 
-	private void uploadFileStoreContent(final ISemanticFileStore child, final IProgressMonitor monitor) throws CoreException {
-		if (!this.isReadOnlyInternal(child)) {
-			if (child.getPersistentProperty(LOCAL_CHANGE) != null || child.isLocalOnly()) {
-				URI remoteURI = this.getWebDAVURIForStore(child);
-				try {
-					WebDAVUtil.sendData(remoteURI.toString(), new InputStreamProvider() {
+	private Set<String> readDirtyStores(ISemanticFileStore remoteRoot) throws CoreException {
+		String value = remoteRoot.getPersistentProperty(DIRTY_STORES);
+		if (value == null) {
+			return null;
+		}
 
-						public InputStream getInputStream() throws IOException {
-							try {
-								return getCachedContent(child, monitor);
-							} catch (CoreException e) {
-								throw new IOException(e.getMessage());
-							}
+		Set<String> paths = new LinkedHashSet<String>();
+		if (value.length() > 0) {
+			Collections.addAll(paths, value.split(DIRTY_STORES_SEPARATOR));
+		}
+		return paths;
+	}
+
+	private void writeDirtyStores(ISemanticFileStore remoteRoot, Set<String> paths) throws CoreException {
+		StringBuilder value = new StringBuilder();
+		for (String path : paths) {
+			if (value.length() > 0) {
+				value.append(DIRTY_STORES_SEPARATOR);
+			}
+			value.append(path);
+		}
+		remoteRoot.setPersistentProperty(DIRTY_STORES, value.toString());
+	}
+
+	private ISemanticFileStore findStore(ISemanticFileStore root, IPath relativePath) {
+		ISemanticFileStore current = root;
+		for (String segment : relativePath.segments()) {
+			if (!current.hasChild(segment)) {
+				return null;
+			}
+			current = (ISemanticFileStore) current.getChild(segment);
+		}
+		return current;
+	}
+
+	/*
+	 * uploads the files with a bounded number of parallel requests; the result
+	 * of each upload is added to the status
+	 */
+	private void uploadFiles(ISemanticFileStore root, final List<ISemanticFileStore> files, IProgressMonitor monitor, MultiStatus status) {
+		if (files.isEmpty()) {
+			return;
+		}
+		if (files.size() == 1) {
+			status.merge(this.uploadFileStoreContent(files.get(0), monitor));
+			return;
+		}
+
+		final IStatus[] results = new IStatus[files.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicBoolean canceled = new AtomicBoolean();
+		final int workers = Math.min(Math.min(WebDAVUtil.MAX_PARALLEL_REQUESTS, HttpConnectionPool.getMaxConnectionsPerHost()), files.size());
+		final CountDownLatch finished = new CountDownLatch(workers);
+
+		for (int i = 0; i < workers; i++) {
+			Job job = new Job(NLS.bind(Messages.SampleWebDAVContentProvider_Upload_XGRP, root.getPath().toString())) {
+				@Override
+				protected IStatus run(IProgressMonitor jobMonitor) {
+					try {
+						int index;
+						while (!canceled.get() && (index = next.getAndIncrement()) < results.length) {
+							results[index] = uploadFileStoreContent(files.get(index), new NullProgressMonitor());
 						}
-					}, monitor);
+					} finally {
+						finished.countDown();
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			job.setSystem(true);
+			job.schedule();
+		}
+
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					if (finished.await(100, TimeUnit.MILLISECONDS)) {
+						break;
+					}
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+				if (monitor.isCanceled()) {
+					// the running uploads are completed so that their result
+					// is recorded
+					canceled.set(true);
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		for (IStatus result : results) {
+			if (result != null) {
+				status.merge(result);
+			}
+		}
+
+		if (canceled.get()) {
+			throw new OperationCanceledException();
+		}
+	}
 
-					child.setPersistentProperty(LOCAL_CHANGE, null);
-					child.setLocalOnly(false);
-					this.setReadOnly(child, true, monitor);
+	private boolean isUploadRequired(ISemanticFileStore file) throws CoreException {
+		return !this.isReadOnlyInternal(file) && (file.getPersistentProperty(LOCAL_CHANGE) != null || file.isLocalOnly());
+	}
 
-					WebDAVNode node = WebDAVUtil.retrieveRemoteState(remoteURI, monitor);
+	/*
+	 * uploads the content of a locally changed file; a failed upload is retried
+	 * a few times and then reported in the returned status, leaving the file
+	 * as changed
+	 */
+	IStatus uploadFileStoreContent(final ISemanticFileStore child, final IProgressMonitor monitor) {
+		try {
+			if (!this.isUploadRequired(child)) {
+				return Status.OK_STATUS;
+			}
 
-					this.setContentTypeInternal(child, node.contentType);
-					this.setResourceTimestamp(child, node.lastModified, monitor);
-					child.setPersistentProperty(RESOURCE_ETAG, node.etag);
-					if (node.supportsLocking) {
-						child.setPersistentProperty(SUPPORTS_LOCKING, TRUE);
+			URI remoteURI = this.getWebDAVURIForStore(child);
+			try {
+				this.sendData(remoteURI, new InputStreamProvider() {
+
+					public InputStream getInputStream() throws IOException {
+						try {
+							return getCachedContent(child, monitor);
+						} catch (CoreException e) {
+							throw new IOException(e.getMessage());
+						}
 					}
-				} catch (IOException e) {
-					// ignore and leave as changed
-					// TODO report failed operations into status
-					e.printStackTrace();
+				}, monitor);
+
+				child.setPersistentProperty(LOCAL_CHANGE, null);
+				child.setLocalOnly(false);
+				this.setReadOnly(child, true, monitor);
+				this.markDirty(child, false);
+
+				WebDAVNode node = WebDAVUtil.retrieveRemoteState(remoteURI, monitor);
+
+				this.setContentTypeInternal(child, node.contentType);
+				this.setResourceTimestamp(child, node.lastModified, monitor);
+				Map<QualifiedName, String> properties = new HashMap<QualifiedName, String>();
+				properties.put(RESOURCE_ETAG, node.etag);
+				if (node.supportsLocking) {
+					properties.put(SUPPORTS_LOCKING, TRUE);
+				}
+				child.setPersistentProperties(properties);
+			} catch (IOException e) {
+				return new Status(IStatus.ERROR, SemanticResourcesPluginExamplesCore.PLUGIN_ID, NLS.bind(
+						Messages.SampleWebDAVContentProvider_UploadFailed_XMSG, child.getPath().toString(), e.getMessage()), e);
+			}
+			return Status.OK_STATUS;
+		} catch (CoreException e) {
+			return e.getStatus();
+		}
+	}
+
+	private void sendData(URI remoteURI, InputStreamProvider data, IProgressMonitor monitor) throws IOException {
+		int attempt = 1;
+		while (true) {
+			try {
+				WebDAVUtil.sendData(remoteURI.toString(), data, monitor);
+				return;
+			} catch (IOException e) {
+				if (attempt >= MAX_UPLOAD_ATTEMPTS || monitor.isCanceled()) {
+					throw e;
 				}
 			}
+			try {
+				Thread.sleep(UPLOAD_RETRY_DELAY * attempt);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e.getMessage());
+			}
+			attempt++;
 		}
 	}
 
@@ -529,7 +897,7 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 
 			URI uri = getWebDAVURIForStore(store);
 
-			refreshStoreHierarchy(direction, store, uri, monitor);
+			refreshStoreHierarchy(direction, store, uri, monitor, status);
 		} catch (CoreException e) {
 			IStatus innerStatus = e.getStatus();
 			IStatus newStatus = new Status(innerStatus.getSeverity(), innerStatus.getPlugin(), e.getMessage(), e);
@@ -587,6 +955,7 @@ public class SampleWebDAVContentProvider extends CachingContentProvider implemen
 		this.setReadOnlyInternal(store, true);
 		this.setResourceTimestamp(store, 0, monitor);
 		store.setPersistentProperty(LOCAL_CHANGE, null);
+		this.markDirty(store, false);
 
 		MultiStatus status = new MultiStatus(SemanticResourcesPluginExamplesCore.PLUGIN_ID, IStatus.OK, "", null); //$NON-NLS-1$
 		this.fillCache(store, monitor, status);
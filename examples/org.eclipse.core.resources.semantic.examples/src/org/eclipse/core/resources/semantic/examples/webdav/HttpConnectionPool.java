@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2010 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.examples.webdav;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * The HTTP connection pool shared by the sample content providers.
+ * <p>
+ * Connections are kept alive and reused once the content of a response has
+ * been consumed or closed. The pool size can be configured with the system
+ * properties
+ * <code>org.eclipse.core.resources.semantic.examples.http.maxConnections</code>
+ * (default 20) and
+ * <code>org.eclipse.core.resources.semantic.examples.http.maxConnectionsPerHost</code>
+ * (default 4). Connections that have been idle for longer than
+ * <code>org.eclipse.core.resources.semantic.examples.http.idleTimeout</code>
+ * seconds (default 30) are closed in the background.
+ */
+public class HttpConnectionPool {
+
+	private static final String MAX_CONNECTIONS_PROPERTY = "org.eclipse.core.resources.semantic.examples.http.maxConnections"; //$NON-NLS-1$
+	private static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "org.eclipse.core.resources.semantic.examples.http.maxConnectionsPerHost"; //$NON-NLS-1$
+	private static final String IDLE_TIMEOUT_PROPERTY = "org.eclipse.core.resources.semantic.examples.http.idleTimeout"; //$NON-NLS-1$
+
+	private static final int maxConnections = Integer.getInteger(MAX_CONNECTIONS_PROPERTY, 20).intValue();
+	private static final int maxConnectionsPerHost = Integer.getInteger(MAX_CONNECTIONS_PER_HOST_PROPERTY, 4).intValue();
+	private static final long idleTimeoutMillis = Integer.getInteger(IDLE_TIMEOUT_PROPERTY, 30).intValue() * 1000L;
+
+	private static final ThreadSafeClientConnManager connectionManager;
+	private static final DefaultHttpClient httpClient;
+	private static final IdleConnectionEvictor evictor = new IdleConnectionEvictor();
+
+	private static final AtomicLong requestCount = new AtomicLong();
+	private static final AtomicLong evictedCount = new AtomicLong();
+
+	static {
+		connectionManager = new ThreadSafeClientConnManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+		httpClient = new DefaultHttpClient(connectionManager);
+		httpClient.setCredentialsProvider(new PromptingCredentialsProvider());
+	}
+
+	private HttpConnectionPool() {
+		// utility class
+	}
+
+	/**
+	 * @return the shared client
+	 */
+	public static DefaultHttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	/**
+	 * Executes a request; the caller must either consume or close the content
+	 * of the response or call {@link #release(HttpResponse)} in order to
+	 * return the connection to the pool
+	 *
+	 * @param request
+	 *            the request
+	 * @return the response
+	 * @throws IOException
+	 *             upon failure
+	 */
+	public static HttpResponse execute(HttpUriRequest request) throws IOException {
+		requestCount.incrementAndGet();
+		if (evictor.getState() == Job.NONE) {
+			evictor.schedule(idleTimeoutMillis);
+		}
+		return httpClient.execute(request);
+	}
+
+	/**
+	 * Consumes the remaining content of a response so that its connection is
+	 * returned to the pool
+	 *
+	 * @param response
+	 *            the response, may be <code>null</code>
+	 */
+	public static void release(HttpResponse response) {
+		if (response != null) {
+			try {
+				EntityUtils.consume(response.getEntity());
+			} catch (IOException e) {
+				// $JL-EXC$ the connection is closed and not reused
+			}
+		}
+	}
+
+	/**
+	 * @return the maximum number of connections to a single host
+	 */
+	public static int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	/**
+	 * @return the maximum number of connections
+	 */
+	public static int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * @return the number of open connections, either in use or idle
+	 */
+	public static int getConnectionsInPool() {
+		return connectionManager.getConnectionsInPool();
+	}
+
+	/**
+	 * @return the number of requests executed
+	 */
+	public static long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of idle connections that have been closed
+	 */
+	public static long getEvictedConnectionCount() {
+		return evictedCount.get();
+	}
+
+	static CredentialsProvider createCredentialsProvider() {
+		return new PromptingCredentialsProvider();
+	}
+
+	/**
+	 * Returns explicitly set credentials or asks the user
+	 */
+	private static final class PromptingCredentialsProvider implements CredentialsProvider {
+
+		private final BasicCredentialsProvider credentials = new BasicCredentialsProvider();
+
+		PromptingCredentialsProvider() {
+			// nothing
+		}
+
+		public void setCredentials(AuthScope authscope, Credentials credentials1) {
+			this.credentials.setCredentials(authscope, credentials1);
+		}
+
+		public Credentials getCredentials(final AuthScope authscope) {
+			Credentials result = this.credentials.getCredentials(authscope);
+			if (result != null) {
+				return result;
+			}
+
+			class UIOperation implements Runnable {
+				public Credentials credentials1;
+
+				public void run() {
+					String message = ""; //$NON-NLS-1$
+					if (authscope.getRealm() != null) {
+						message = authscope.getRealm();
+					}
+					credentials1 = UserCredentialsDialog.askForCredentials(authscope.getHost() + ":" + authscope.getPort(), message); //$NON-NLS-1$
+				}
+			}
+
+			UIOperation uio = new UIOperation();
+			if (Display.getCurrent() != null) {
+				uio.run();
+			} else {
+				Display.getDefault().syncExec(uio);
+			}
+
+			return uio.credentials1;
+		}
+
+		public void clear() {
+			this.credentials.clear();
+		}
+	}
+
+	/**
+	 * Closes expired and idle connections while the pool is not empty
+	 */
+	private static final class IdleConnectionEvictor extends Job {
+
+		IdleConnectionEvictor() {
+			super(Messages.HttpConnectionPool_IdleConnectionEvictor_XGRP);
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			int before = connectionManager.getConnectionsInPool();
+
+			connectionManager.closeExpiredConnections();
+			connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+
+			int remaining = connectionManager.getConnectionsInPool();
+			if (remaining < before) {
+				evictedCount.addAndGet(before - remaining);
+			}
+			if (remaining > 0) {
+				schedule(idleTimeoutMillis);
+			}
+			return Status.OK_STATUS;
+		}
+	}
+}
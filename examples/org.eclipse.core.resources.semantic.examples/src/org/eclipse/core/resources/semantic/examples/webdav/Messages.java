@@ -15,10 +15,14 @@ import org.eclipse.osgi.util.NLS;
 
 public class Messages extends NLS {
 	private static final String BUNDLE_NAME = "org.eclipse.core.resources.semantic.examples.webdav.messages"; //$NON-NLS-1$
+	public static String HttpConnectionPool_IdleConnectionEvictor_XGRP;
+	public static String ResumableInputStream_TooLong_XMSG;
+	public static String ResumableInputStream_Truncated_XMSG;
 	public static String UserCredentialsDialog_ConnectTo_XFLD;
 	public static String UserCredentialsDialog_Password_XFLD;
 	public static String UserCredentialsDialog_PasswordRequired_XGRP;
 	public static String UserCredentialsDialog_UserName_XFLD;
+	public static String WebDAVUtil_RetrieveRemoteState_XGRP;
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
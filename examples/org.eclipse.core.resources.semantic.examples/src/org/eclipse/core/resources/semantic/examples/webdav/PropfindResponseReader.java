@@ -14,19 +14,44 @@ package org.eclipse.core.resources.semantic.examples.webdav;
 import java.io.IOException;
 import java.io.InputStream;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.eclipse.core.resources.semantic.spi.Util;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
-
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads PROPFIND responses.
+ * <p>
+ * The response is parsed as a stream; each <code>response</code> element is
+ * passed to a {@link IResponseHandler} as soon as it is complete, so large
+ * multistatus responses need not be kept in memory.
+ */
 public class PropfindResponseReader {
 
+	private static final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+
+	static {
+		parserFactory.setNamespaceAware(true);
+	}
+
+	/**
+	 * Receives the responses of a multistatus response one by one.
+	 */
+	public interface IResponseHandler {
+		/**
+		 * @param response
+		 *            a complete response
+		 * @throws IOException
+		 *             to stop reading
+		 */
+		public void handleResponse(ResponseType response) throws IOException;
+	}
+
 	ObjectFactory factory = new ObjectFactory();
 
 	public PropfindResponseReader() {
@@ -34,162 +59,190 @@ public class PropfindResponseReader {
 	}
 
 	public MultistatusType loadMultitatusTypeFromResponse(InputStream content, IProgressMonitor monitor) throws IOException {
-		MultistatusType ms = null;
+		final MultistatusType ms = factory.createMultistatusType();
 
-		try {
-			if (content != null) {
-				try {
-					DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		boolean isMultistatus = readResponses(content, new IResponseHandler() {
+			public void handleResponse(ResponseType response) {
+				ms.getResponse().add(response);
+			}
+		}, monitor);
 
-					Document doc = builder.parse(content);
+		if (isMultistatus) {
+			return ms;
+		}
+		return null;
+	}
 
-					Node node = doc.getDocumentElement();
+	/**
+	 * Reads a multistatus response and passes the contained responses to the
+	 * handler
+	 *
+	 * @param content
+	 *            the content; will be closed
+	 * @param handler
+	 *            the handler
+	 * @param monitor
+	 *            may be null
+	 * @return <code>true</code> if the content is a multistatus response
+	 * @throws IOException
+	 *             upon failure
+	 */
+	public boolean readResponses(InputStream content, IResponseHandler handler, IProgressMonitor monitor) throws IOException {
+		if (content == null) {
+			return false;
+		}
 
-					if (node != null) {
-						String name = node.getNodeName();
+		try {
+			SAXParser parser;
+			synchronized (parserFactory) {
+				parser = parserFactory.newSAXParser();
+			}
 
-						if (name.endsWith(":multistatus") //$NON-NLS-1$
-								|| name.equals("multistatus")) { //$NON-NLS-1$
-							ms = factory.createMultistatusType();
+			MultistatusHandler multistatusHandler = new MultistatusHandler(handler);
+			parser.parse(content, multistatusHandler);
 
-							loadMultitatus(node, ms);
-						}
-					}
-				} catch (ParserConfigurationException e) {
-					throw new IOException(e.getMessage());
-				} catch (SAXException e) {
-					throw new IOException(e.getMessage());
-				}
+			if (multistatusHandler.ioException != null) {
+				throw multistatusHandler.ioException;
 			}
+			return multistatusHandler.isMultistatus;
+		} catch (ParserConfigurationException e) {
+			throw new IOException(e.getMessage());
+		} catch (SAXException e) {
+			throw new IOException(e.getMessage());
 		} finally {
 			Util.safeClose(content);
 		}
-		return ms;
 	}
 
-	private void loadMultitatus(Node root, MultistatusType ms) {
-		NodeList nodes = root.getChildNodes();
-		for (int i = 0; i < nodes.getLength(); i++) {
-			Node node = nodes.item(i);
+	private final class MultistatusHandler extends DefaultHandler {
 
-			String name = node.getNodeName();
+		private final IResponseHandler handler;
+		private final StringBuilder text = new StringBuilder();
 
-			if (name.endsWith(":response") || name.equals("response")) { //$NON-NLS-1$ //$NON-NLS-2$
-				ResponseType response = factory.createResponseType();
+		boolean isMultistatus = false;
+		IOException ioException;
 
-				ms.getResponse().add(response);
-				loadResponse(node, response);
-			}
+		private int depth = 0;
+		private ResponseType response;
+		private PropstatType propstat;
+		private PropType prop;
+		private boolean inResourceType = false;
+		private boolean inSupportedLock = false;
+		private boolean inLockScope = false;
+
+		MultistatusHandler(IResponseHandler handler) {
+			this.handler = handler;
 		}
-	}
 
-	private void loadResponse(Node root, ResponseType response) {
-		NodeList nodes = root.getChildNodes();
-		for (int i = 0; i < nodes.getLength(); i++) {
-			Node node = nodes.item(i);
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			this.depth++;
+			this.text.setLength(0);
 
-			String name = node.getNodeName();
+			String name = getName(localName, qName);
 
-			if (name.endsWith(":href") || name.equals("href")) { //$NON-NLS-1$ //$NON-NLS-2$
-				response.setHref(getTextFromNode(node));
+			if (this.depth == 1) {
+				this.isMultistatus = name.equals("multistatus"); //$NON-NLS-1$
+				return;
+			}
+			if (!this.isMultistatus) {
+				return;
 			}
 
-			if (name.endsWith(":propstat") || name.equals("propstat")) { //$NON-NLS-1$ //$NON-NLS-2$
-				PropstatType propstat = factory.createPropstatType();
-
-				response.getPropstat().add(propstat);
-				loadPropstat(node, propstat);
+			if (this.depth == 2 && name.equals("response")) { //$NON-NLS-1$
+				this.response = factory.createResponseType();
+			} else if (this.response != null && this.propstat == null && name.equals("propstat")) { //$NON-NLS-1$
+				this.propstat = factory.createPropstatType();
+				this.response.getPropstat().add(this.propstat);
+			} else if (this.propstat != null && this.prop == null && name.equals("prop")) { //$NON-NLS-1$
+				this.prop = factory.createPropType();
+				this.propstat.setProp(this.prop);
+			} else if (this.prop != null) {
+				if (name.equals("resourcetype")) { //$NON-NLS-1$
+					this.inResourceType = true;
+				} else if (this.inResourceType && name.equals("collection")) { //$NON-NLS-1$
+					this.prop.setIsFolder(true);
+				} else if (name.equals("supportedlock")) { //$NON-NLS-1$
+					this.inSupportedLock = true;
+				} else if (this.inSupportedLock && name.equals("lockscope")) { //$NON-NLS-1$
+					this.inLockScope = true;
+				} else if (this.inLockScope && name.equals("exclusive")) { //$NON-NLS-1$
+					this.prop.setSupportsLocking(true);
+				}
 			}
 		}
-	}
-
-	private void loadPropstat(Node root, PropstatType propstat) {
-		NodeList nodes = root.getChildNodes();
-		for (int i = 0; i < nodes.getLength(); i++) {
-			Node node = nodes.item(i);
 
-			String name = node.getNodeName();
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			this.depth--;
 
-			if (name.endsWith(":status") || name.equals("status")) { //$NON-NLS-1$ //$NON-NLS-2$
-				propstat.setStatus(getTextFromNode(node));
+			if (!this.isMultistatus || this.response == null) {
+				return;
 			}
 
-			if (name.endsWith(":prop") || name.equals("prop")) { //$NON-NLS-1$ //$NON-NLS-2$
-				PropType prop = factory.createPropType();
-
-				propstat.setProp(prop);
-				loadProp(node, prop);
+			String name = getName(localName, qName);
+
+			if (this.prop != null) {
+				if (name.equals("prop")) { //$NON-NLS-1$
+					this.prop = null;
+				} else if (name.equals("getlastmodified")) { //$NON-NLS-1$
+					this.prop.setLastmodified(getText());
+				} else if (name.equals("getcontenttype")) { //$NON-NLS-1$
+					this.prop.setContentType(getText());
+				} else if (name.equals("getetag")) { //$NON-NLS-1$
+					this.prop.setETag(getText());
+				} else if (name.equals("displayname")) { //$NON-NLS-1$
+					this.prop.setDisplayname(getText());
+				} else if (name.equals("resourcetype")) { //$NON-NLS-1$
+					this.inResourceType = false;
+				} else if (name.equals("supportedlock")) { //$NON-NLS-1$
+					this.inSupportedLock = false;
+				} else if (name.equals("lockscope")) { //$NON-NLS-1$
+					this.inLockScope = false;
+				}
+			} else if (this.propstat != null) {
+				if (name.equals("propstat")) { //$NON-NLS-1$
+					this.propstat = null;
+				} else if (name.equals("status")) { //$NON-NLS-1$
+					this.propstat.setStatus(getText());
+				}
+			} else if (name.equals("href")) { //$NON-NLS-1$
+				this.response.setHref(getText());
+			} else if (this.depth == 1 && name.equals("response")) { //$NON-NLS-1$
+				ResponseType complete = this.response;
+				this.response = null;
+				try {
+					this.handler.handleResponse(complete);
+				} catch (IOException e) {
+					this.ioException = e;
+					throw new SAXException(e);
+				}
 			}
-		}
-	}
 
-	private void loadProp(Node root, PropType prop) {
-		NodeList nodes = root.getChildNodes();
-		for (int i = 0; i < nodes.getLength(); i++) {
-			Node node = nodes.item(i);
+			this.text.setLength(0);
+		}
 
-			String name = node.getNodeName();
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			this.text.append(ch, start, length);
+		}
 
-			if (name.endsWith(":getlastmodified") //$NON-NLS-1$
-					|| name.equals("getlastmodified")) { //$NON-NLS-1$
-				prop.setLastmodified(getTextFromNode(node));
-			}
-			if (name.endsWith(":getcontenttype") //$NON-NLS-1$
-					|| name.equals("getcontenttype")) { //$NON-NLS-1$
-				prop.setContentType(getTextFromNode(node));
+		private String getText() {
+			if (this.text.length() == 0) {
+				return null;
 			}
-			if (name.endsWith(":getetag") //$NON-NLS-1$
-					|| name.equals("getetag")) { //$NON-NLS-1$
-				prop.setETag(getTextFromNode(node));
-			}
-			if (name.endsWith(":displayname") || name.equals("displayname")) { //$NON-NLS-1$ //$NON-NLS-2$
-				prop.setDisplayname(getTextFromNode(node));
-			}
-			if (name.endsWith(":resourcetype") || name.equals("resourcetype")) { //$NON-NLS-1$ //$NON-NLS-2$
-				Node child = node.getFirstChild();
-
-				if (child != null) {
-					String childName = child.getNodeName();
+			return this.text.toString();
+		}
 
-					if (childName.endsWith(":collection") || childName.equals("collection")) { //$NON-NLS-1$ //$NON-NLS-2$
-						prop.setIsFolder(true);
-					} else {
-						prop.setIsFolder(false);
-					}
-				}
+		private String getName(String localName, String qName) {
+			if (localName != null && localName.length() > 0) {
+				return localName;
 			}
-			if (name.endsWith(":supportedlock") || name.equals("supportedlock")) { //$NON-NLS-1$ //$NON-NLS-2$
-				NodeList lockEntryNodes = node.getChildNodes();
-				for (int j = 0; j < lockEntryNodes.getLength(); j++) {
-					Node lockEntryNode = lockEntryNodes.item(j);
-
-					NodeList lockNodes = lockEntryNode.getChildNodes();
-					for (int k = 0; k < lockNodes.getLength(); k++) {
-						Node lockNode = lockNodes.item(k);
-						String lockNodeName = lockNode.getNodeName();
-						if (lockNodeName.endsWith(":lockscope") || lockNodeName.equals("lockscope")) { //$NON-NLS-1$ //$NON-NLS-2$
-							Node lockScopeNode = lockNode.getFirstChild();
-
-							String lockScopeNodeName = lockScopeNode.getNodeName();
-							if (lockScopeNodeName.endsWith(":exclusive") || lockScopeNodeName.equals("exclusive")) { //$NON-NLS-1$ //$NON-NLS-2$
-								prop.setSupportsLocking(true);
-							}
-						}
-					}
-				}
+			int index = qName.indexOf(':');
+			if (index >= 0) {
+				return qName.substring(index + 1);
 			}
+			return qName;
 		}
 	}
-
-	private String getTextFromNode(Node node) {
-		Node text = node.getFirstChild();
-		if (text != null) {
-			return text.getNodeValue();
-		}
-		String value = node.getNodeValue();
-		if (value != null) {
-			return value;
-		}
-		return null;
-	}
 }
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2010 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.examples.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * The body of a GET response that resumes the download with a range request if
+ * the connection breaks or the body is shorter than announced.
+ * <p>
+ * A download is only resumed if the first response contained a strong entity
+ * tag or a modification time; the range request is made conditional on it, so
+ * that content of different versions is never combined. If the length of the
+ * content is known, reading fails unless exactly that number of bytes has been
+ * received. Thus, a consumer like the cache never sees truncated content as
+ * complete.
+ */
+class ResumableInputStream extends InputStream {
+
+	private static final int MAX_RESUME_ATTEMPTS = 3;
+	private static final String ETAG = "ETag"; //$NON-NLS-1$
+	private static final String LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
+	private static final String RANGE = "Range"; //$NON-NLS-1$
+	private static final String IF_RANGE = "If-Range"; //$NON-NLS-1$
+	private static final String CONTENT_RANGE = "Content-Range"; //$NON-NLS-1$
+	private static final String WEAK_ETAG_PREFIX = "W/"; //$NON-NLS-1$
+
+	private final URI uri;
+	private final String eTag;
+	private final String validator;
+	private final long length;
+
+	private HttpGet request;
+	private InputStream is;
+	private long position = 0;
+	private int attempts = 0;
+	private boolean eof = false;
+
+	/**
+	 * @param uri
+	 *            the URI
+	 * @param request
+	 *            the GET request
+	 * @param response
+	 *            the response with status 200
+	 * @throws IOException
+	 *             if the content can not be read
+	 */
+	ResumableInputStream(URI uri, HttpGet request, HttpResponse response) throws IOException {
+		this.uri = uri;
+		this.request = request;
+
+		Header eTagHeader = response.getFirstHeader(ETAG);
+		this.eTag = eTagHeader != null ? eTagHeader.getValue() : null;
+
+		// If-Range accepts strong entity tags and dates only
+		if (this.eTag != null && !this.eTag.startsWith(WEAK_ETAG_PREFIX)) {
+			this.validator = this.eTag;
+		} else {
+			Header lastModifiedHeader = response.getFirstHeader(LAST_MODIFIED);
+			this.validator = lastModifiedHeader != null ? lastModifiedHeader.getValue() : null;
+		}
+
+		HttpEntity entity = response.getEntity();
+		if (entity != null) {
+			this.length = entity.getContentLength();
+			this.is = entity.getContent();
+		} else {
+			this.length = 0;
+			this.eof = true;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		int read;
+		do {
+			read = read(single, 0, 1);
+		} while (read == 0);
+		return read == -1 ? -1 : single[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		while (true) {
+			if (this.eof) {
+				return -1;
+			}
+
+			int read;
+			try {
+				read = this.is.read(b, off, len);
+			} catch (IOException e) {
+				resume(e);
+				continue;
+			}
+
+			if (read == -1) {
+				if (this.length >= 0 && this.position < this.length) {
+					resume(new IOException(NLS.bind(Messages.ResumableInputStream_Truncated_XMSG, new Object[] {this.uri.toString(),
+							Long.toString(this.position), Long.toString(this.length)})));
+					continue;
+				}
+				this.eof = true;
+				return -1;
+			}
+
+			this.position += read;
+			if (this.length >= 0 && this.position > this.length) {
+				throw new IOException(NLS.bind(Messages.ResumableInputStream_TooLong_XMSG, this.uri.toString(), Long.toString(this.length)));
+			}
+			return read;
+		}
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (this.eof) {
+			return 0;
+		}
+		return this.is.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.eof || this.is == null) {
+			if (this.is != null) {
+				this.is.close();
+			}
+		} else {
+			// don't download the remaining content just to reuse the
+			// connection
+			this.request.abort();
+		}
+	}
+
+	/*
+	 * continues the download at the current position; the cause is thrown if
+	 * this is not possible
+	 */
+	private void resume(IOException cause) throws IOException {
+		this.request.abort();
+
+		if (this.validator == null || this.attempts >= MAX_RESUME_ATTEMPTS) {
+			throw cause;
+		}
+		this.attempts++;
+
+		HttpGet rangeRequest = new HttpGet(this.uri);
+		rangeRequest.addHeader(RANGE, "bytes=" + this.position + "-"); //$NON-NLS-1$ //$NON-NLS-2$
+		rangeRequest.addHeader(IF_RANGE, this.validator);
+
+		HttpResponse response;
+		try {
+			response = HttpConnectionPool.execute(rangeRequest);
+		} catch (IOException e) {
+			// $JL-EXC$ report the original problem
+			throw cause;
+		}
+
+		// a status 200 means that the content has changed or that the server
+		// does not support ranges
+		if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT || response.getEntity() == null
+				|| !isContinuation(response)) {
+			rangeRequest.abort();
+			throw cause;
+		}
+
+		this.request = rangeRequest;
+		this.is = response.getEntity().getContent();
+	}
+
+	private boolean isContinuation(HttpResponse response) {
+		Header contentRange = response.getFirstHeader(CONTENT_RANGE);
+		if (contentRange == null || !contentRange.getValue().startsWith("bytes " + this.position + "-")) { //$NON-NLS-1$ //$NON-NLS-2$
+			return false;
+		}
+		if (this.eTag != null) {
+			Header eTagHeader = response.getFirstHeader(ETAG);
+			if (eTagHeader != null && !this.eTag.equals(eTagHeader.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -23,7 +23,11 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -32,8 +36,8 @@ import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.BasicHttpEntity;
 import org.apache.http.entity.InputStreamEntity;
@@ -42,8 +46,13 @@ import org.apache.http.message.BasicHeader;
 import org.eclipse.core.resources.semantic.spi.Util;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
-import org.eclipse.swt.widgets.Display;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
 
 public class WebDAVUtil {
 	private static final String LOCK_TOKEN_HEADER = "Lock-Token"; //$NON-NLS-1$
@@ -59,7 +68,12 @@ public class WebDAVUtil {
 
 	private static final byte[] buffer = new byte[8192];
 
-	private static DefaultHttpClient httpClient = new DefaultHttpClient();
+	/**
+	 * The maximum number of PROPFIND requests issued in parallel by
+	 * {@link #retrieveRemoteStates(List, IProgressMonitor)}; the number is
+	 * further limited by {@link HttpConnectionPool#getMaxConnectionsPerHost()}
+	 */
+	public static final int MAX_PARALLEL_REQUESTS = 4;
 
 	public static class WebDAVNode {
 		public IPath path;
@@ -113,20 +127,19 @@ public class WebDAVUtil {
 	 */
 	public static void setGlobalCredentialsForTest(String userName, String password) {
 		Credentials defaultcreds = new UsernamePasswordCredentials(userName, password);
-		httpClient.getCredentialsProvider().setCredentials(AuthScope.ANY, defaultcreds);
+		HttpConnectionPool.getHttpClient().getCredentialsProvider().setCredentials(AuthScope.ANY, defaultcreds);
 	}
 
 	public static void sendData(String remoteURI, final InputStreamProvider data, final IProgressMonitor monitor) throws IOException {
 		HttpPut putMethod = new HttpPut(remoteURI);
+		HttpResponse response = null;
 
 		try {
-			installCredentialsProvider(httpClient);
-
 			HttpEntity requestEntity = new InputStreamEntity(data.getInputStream(), -1);
 
 			putMethod.setEntity(requestEntity);
 
-			HttpResponse response = httpClient.execute(putMethod);
+			response = HttpConnectionPool.execute(putMethod);
 
 			int statusCode = response.getStatusLine().getStatusCode();
 
@@ -134,7 +147,7 @@ public class WebDAVUtil {
 				throw new IOException(response.getStatusLine().getReasonPhrase());
 			}
 		} finally {
-			// TODO cleanup
+			HttpConnectionPool.release(response);
 		}
 	}
 
@@ -179,14 +192,14 @@ public class WebDAVUtil {
 	}
 
 	public static InputStream openInputStream(String remoteURI, IWebDAVCallback setter) throws IOException {
-		HttpPut getMethod = new HttpPut(remoteURI);
+		HttpGet getMethod = new HttpGet(remoteURI);
 
-		installCredentialsProvider(httpClient);
 		boolean releaseConnectionOnException = true;
+		HttpResponse response = null;
 		InputStream is;
 
 		try {
-			HttpResponse response = httpClient.execute(getMethod);
+			response = HttpConnectionPool.execute(getMethod);
 
 			int statusCode = response.getStatusLine().getStatusCode();
 
@@ -226,15 +239,15 @@ public class WebDAVUtil {
 				}
 			}
 
-			is = response.getEntity().getContent();
+			is = new ResumableInputStream(getMethod.getURI(), getMethod, response);
 
 			releaseConnectionOnException = false;
 		} finally {
 			if (releaseConnectionOnException) {
-				// TODO cleanup
+				HttpConnectionPool.release(response);
 			}
 		}
-		return new InputStreamWrapper(getMethod, is);
+		return is;
 	}
 
 	/**
@@ -259,12 +272,148 @@ public class WebDAVUtil {
 	}
 
 	public static WebDAVNode retrieveRemoteState(URI rootURI, IProgressMonitor monitor) throws IOException {
-		MultistatusType multistatus = WebDAVUtil.executePropfindRequest(rootURI.toString(), -1, monitor);
+		return retrieveRemoteState(rootURI, -1, monitor);
+	}
 
-		return convertResponseToNodeTree(rootURI, multistatus, monitor);
+	/**
+	 * Retrieves the state of a resource and its members
+	 * 
+	 * @param rootURI
+	 *            the URI of the resource
+	 * @param depth
+	 *            0, 1, or -1 for infinity
+	 * @param monitor
+	 * @return the node of the resource
+	 * @throws IOException
+	 */
+	public static WebDAVNode retrieveRemoteState(final URI rootURI, int depth, IProgressMonitor monitor) throws IOException {
+		final HashMap<IPath, WebDAVNode> nodes = new HashMap<IPath, WebDAVNode>();
+
+		// the nodes are created while the response is parsed; the response
+		// itself is never kept in memory
+		WebDAVUtil.executePropfindRequest(rootURI.toString(), depth, new PropfindResponseReader.IResponseHandler() {
+			public void handleResponse(ResponseType response) throws IOException {
+				WebDAVNode node = convertResponseToNode(rootURI, response);
+				nodes.put(node.path, node);
+			}
+		}, monitor);
+
+		return linkNodes(nodes);
+	}
+
+	/**
+	 * Retrieves the state of several collections and their direct members
+	 * using up to {@link #MAX_PARALLEL_REQUESTS} parallel requests with depth
+	 * 1
+	 * 
+	 * @param collectionURIs
+	 *            the URIs of the collections
+	 * @param monitor
+	 * @return the nodes in the order of the URIs
+	 * @throws IOException
+	 *             if any of the requests fails
+	 */
+	public static WebDAVNode[] retrieveRemoteStates(final List<URI> collectionURIs, IProgressMonitor monitor) throws IOException {
+		final WebDAVNode[] result = new WebDAVNode[collectionURIs.size()];
+
+		if (result.length == 1) {
+			result[0] = retrieveRemoteState(collectionURIs.get(0), 1, monitor);
+			return result;
+		}
+
+		final IOException[] failures = new IOException[result.length];
+		final AtomicInteger next = new AtomicInteger();
+		final int workers = Math.min(Math.min(MAX_PARALLEL_REQUESTS, HttpConnectionPool.getMaxConnectionsPerHost()), result.length);
+		final CountDownLatch finished = new CountDownLatch(workers);
+
+		for (int i = 0; i < workers; i++) {
+			Job job = new Job(NLS.bind(Messages.WebDAVUtil_RetrieveRemoteState_XGRP, collectionURIs.get(0).toString())) {
+				@Override
+				protected IStatus run(IProgressMonitor jobMonitor) {
+					try {
+						int index;
+						while ((index = next.getAndIncrement()) < result.length) {
+							try {
+								result[index] = retrieveRemoteState(collectionURIs.get(index), 1, new NullProgressMonitor());
+							} catch (IOException e) {
+								failures[index] = e;
+								// no need to continue
+								next.set(result.length);
+							}
+						}
+					} finally {
+						finished.countDown();
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			job.setSystem(true);
+			job.schedule();
+		}
+
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					if (finished.await(100, TimeUnit.MILLISECONDS)) {
+						break;
+					}
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+				if (monitor.isCanceled()) {
+					// the running requests are completed in the background
+					next.set(result.length);
+					throw new OperationCanceledException();
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		for (IOException failure : failures) {
+			if (failure != null) {
+				throw failure;
+			}
+		}
+		monitor.worked(result.length);
+
+		return result;
 	}
 
 	public static MultistatusType executePropfindRequest(String uriString, int depth, IProgressMonitor monitor) throws IOException {
+		final MultistatusType multistatus = new ObjectFactory().createMultistatusType();
+
+		boolean isMultistatus = executePropfindRequest(uriString, depth, new PropfindResponseReader.IResponseHandler() {
+			public void handleResponse(ResponseType response) {
+				multistatus.getResponse().add(response);
+			}
+		}, monitor);
+
+		if (isMultistatus) {
+			return multistatus;
+		}
+		return null;
+	}
+
+	/**
+	 * Executes a PROPFIND request and passes the responses to the handler while
+	 * the response is read
+	 * 
+	 * @param uriString
+	 *            the URI
+	 * @param depth
+	 *            0, 1, or -1 for infinity
+	 * @param handler
+	 *            the handler
+	 * @param monitor
+	 * @return <code>true</code> if a multistatus response was received
+	 * @throws IOException
+	 */
+	public static boolean executePropfindRequest(String uriString, int depth, PropfindResponseReader.IResponseHandler handler,
+			IProgressMonitor monitor) throws IOException {
 
 		PropfindMethod propfindMethod = new PropfindMethod(URI.create(uriString));
 
@@ -312,7 +461,7 @@ public class WebDAVUtil {
 			}
 		});
 
-		installCredentialsProvider(httpClient);
+		HttpResponse response = null;
 
 		try {
 			if (depth == 0) {
@@ -320,7 +469,7 @@ public class WebDAVUtil {
 			} else if (depth == 1) {
 				propfindMethod.addHeader(DEPTH_HEADER, "1"); //$NON-NLS-1$				
 			}
-			HttpResponse response = httpClient.execute(propfindMethod);
+			response = HttpConnectionPool.execute(propfindMethod);
 
 			int statusCode = response.getStatusLine().getStatusCode();
 
@@ -334,49 +483,20 @@ public class WebDAVUtil {
 
 			// System.out.println(propfindMethod.getResponseBodyAsString());
 
-			return new PropfindResponseReader().loadMultitatusTypeFromResponse(response.getEntity().getContent(), monitor);
+			return new PropfindResponseReader().readResponses(response.getEntity().getContent(), handler, monitor);
 		} finally {
-			// TODO cleanup
+			HttpConnectionPool.release(response);
 		}
 	}
 
+	/**
+	 * Installs a credentials provider that asks the user for credentials
+	 * 
+	 * @param httpMethod
+	 *            the client
+	 */
 	public static void installCredentialsProvider(DefaultHttpClient httpMethod) {
-		httpMethod.setCredentialsProvider(new CredentialsProvider() {
-
-			public void setCredentials(AuthScope authscope, Credentials credentials) {
-				//
-			}
-
-			public Credentials getCredentials(final AuthScope authscope) {
-				class UIOperation implements Runnable {
-					public Credentials credentials;
-
-					public void run() {
-						String message = ""; //$NON-NLS-1$
-						if (authscope.getRealm() != null) {
-							message = authscope.getRealm();
-						}
-						credentials = UserCredentialsDialog.askForCredentials(authscope.getHost() + ":" + authscope.getPort(), message); //$NON-NLS-1$
-					}
-				}
-
-				UIOperation uio = new UIOperation();
-				if (Display.getCurrent() != null) {
-					uio.run();
-				} else {
-					Display.getDefault().syncExec(uio);
-				}
-
-				if (uio.credentials != null) {
-					return uio.credentials;
-				}
-				return null;
-			}
-
-			public void clear() {
-				//
-			}
-		});
+		httpMethod.setCredentialsProvider(HttpConnectionPool.createCredentialsProvider());
 	}
 
 	public static IPath calculateRelativePath(URI rootURI, String href) throws URISyntaxException {
@@ -406,38 +526,48 @@ public class WebDAVUtil {
 	public static WebDAVNode convertResponseToNodeTree(URI rootURI, MultistatusType multistatus, IProgressMonitor monitor)
 			throws IOException {
 		HashMap<IPath, WebDAVNode> nodes = new HashMap<IPath, WebDAVNode>();
-		WebDAVNode rootNode = null;
 
 		for (ResponseType response : multistatus.getResponse()) {
-			try {
-				WebDAVNode node = new WebDAVNode();
+			WebDAVNode node = convertResponseToNode(rootURI, response);
+
+			nodes.put(node.path, node);
+		}
 
-				node.path = WebDAVUtil.calculateRelativePath(rootURI, response.getHref());
+		return linkNodes(nodes);
+	}
 
-				nodes.put(node.path, node);
+	private static WebDAVNode convertResponseToNode(URI rootURI, ResponseType response) throws IOException {
+		try {
+			WebDAVNode node = new WebDAVNode();
 
-				for (PropstatType propstat : response.getPropstat()) {
-					if (propstat.getStatus().contains("200")) { //$NON-NLS-1$
-						PropType prop = propstat.getProp();
+			node.path = WebDAVUtil.calculateRelativePath(rootURI, response.getHref());
 
-						if (prop.getLastmodified() != null) {
-							try {
-								node.lastModified = parseDateTime(prop.getLastmodified());
-							} catch (ParseException e) {
-								throw new IOException(e.getMessage());
-							}
+			for (PropstatType propstat : response.getPropstat()) {
+				if (propstat.getStatus().contains("200")) { //$NON-NLS-1$
+					PropType prop = propstat.getProp();
+
+					if (prop.getLastmodified() != null) {
+						try {
+							node.lastModified = parseDateTime(prop.getLastmodified());
+						} catch (ParseException e) {
+							throw new IOException(e.getMessage());
 						}
-						node.contentType = prop.getContentType();
-						node.isFolder = prop.getIsFolder();
-						node.etag = prop.getETag();
-						node.supportsLocking = prop.getSupportsLocking();
-						node.lockToken = prop.getLockToken();
 					}
+					node.contentType = prop.getContentType();
+					node.isFolder = prop.getIsFolder();
+					node.etag = prop.getETag();
+					node.supportsLocking = prop.getSupportsLocking();
+					node.lockToken = prop.getLockToken();
 				}
-			} catch (URISyntaxException e) {
-				throw new IOException(e.getMessage());
 			}
+			return node;
+		} catch (URISyntaxException e) {
+			throw new IOException(e.getMessage());
 		}
+	}
+
+	private static WebDAVNode linkNodes(HashMap<IPath, WebDAVNode> nodes) {
+		WebDAVNode rootNode = null;
 
 		for (WebDAVNode node : nodes.values()) {
 			if (node.path.segmentCount() == 0) {
@@ -515,10 +645,9 @@ public class WebDAVUtil {
 	 */
 	public static String sendLockRequest(String remoteURI, final IProgressMonitor monitor) throws IOException {
 		LockMethod lockMethod = new LockMethod(URI.create(remoteURI));
+		HttpResponse response = null;
 
 		try {
-			installCredentialsProvider(httpClient);
-
 			String requestBody = "<?xml version=\"1.0\" encoding=\"utf-8\" ?><D:lockinfo xmlns:D='DAV:'>" //$NON-NLS-1$
 					+ "<D:lockscope><D:exclusive/></D:lockscope><D:locktype><D:write/></D:locktype></D:lockinfo>"; //$NON-NLS-1$ 
 			final String finalRequestBody = requestBody;
@@ -535,7 +664,7 @@ public class WebDAVUtil {
 
 			lockMethod.setEntity(requestEntity);
 
-			HttpResponse response = httpClient.execute(lockMethod);
+			response = HttpConnectionPool.execute(lockMethod);
 
 			int statusCode = response.getStatusLine().getStatusCode();
 
@@ -549,7 +678,7 @@ public class WebDAVUtil {
 				return header.getValue();
 			}
 		} finally {
-			// TODO cleanup
+			HttpConnectionPool.release(response);
 		}
 		return null;
 	}
@@ -562,13 +691,12 @@ public class WebDAVUtil {
 	 */
 	public static void sendUnlockRequest(String remoteURI, String lockToken, final IProgressMonitor monitor) throws IOException {
 		UnlockMethod unlockMethod = new UnlockMethod(URI.create(remoteURI));
+		HttpResponse response = null;
 
 		try {
-			installCredentialsProvider(httpClient);
-
 			unlockMethod.addHeader(LOCK_TOKEN_HEADER, lockToken);
 
-			HttpResponse response = httpClient.execute(unlockMethod);
+			response = HttpConnectionPool.execute(unlockMethod);
 
 			int statusCode = response.getStatusLine().getStatusCode();
 
@@ -576,7 +704,7 @@ public class WebDAVUtil {
 				throw new IOException(response.getStatusLine().getReasonPhrase());
 			}
 		} finally {
-			// TODO cleanup
+			HttpConnectionPool.release(response);
 		}
 	}
 
@@ -17,9 +17,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 import junit.framework.Assert;
 
+import org.eclipse.core.internal.resources.semantic.cacheservice.MemoryHandleFactory;
 import org.eclipse.core.resources.semantic.ISemanticFileSystem;
 import org.eclipse.core.resources.semantic.spi.FileCacheServiceFactory;
 import org.eclipse.core.resources.semantic.spi.ICacheService;
@@ -466,6 +468,141 @@ public class TestCacheService {
 		readFromCache(service, path, "");
 	}
 
+	/**
+	 * Tests that the memory cache stays within its budget by spilling content
+	 * that is still served afterwards
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testMemoryCacheBudget() throws Exception {
+		ICacheService service = new MemoryCacheServiceFactory().getCacheService();
+		MemoryHandleFactory factory = new MemoryHandleFactory();
+
+		long budget = factory.getBudget();
+		long evictions = factory.getEvictionCount();
+		long spillHits = factory.getSpillHitCount();
+
+		// four entries exceed the budget
+		byte[] data = new byte[(int) (budget / 4) + 1];
+		IPath[] paths = new IPath[5];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = new Path("/testBudget/file" + i + ".txt");
+			Arrays.fill(data, (byte) i);
+			writeToCache(service, paths[i], new ByteArrayInputStream(data));
+			Assert.assertTrue("Budget should not be exceeded", factory.getResidentBytes() <= budget);
+		}
+		Assert.assertTrue("Content should be spilled", factory.getEvictionCount() > evictions);
+
+		for (int i = 0; i < paths.length; i++) {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			Util.transferStreams(service.getContent(paths[i]), os, null);
+			byte[] content = os.toByteArray();
+			Assert.assertEquals("Wrong content length", data.length, content.length);
+			for (int j = 0; j < content.length; j++) {
+				if (content[j] != (byte) i) {
+					Assert.fail("Content is different");
+				}
+			}
+		}
+		Assert.assertTrue("Spilled content should be served", factory.getSpillHitCount() > spillHits);
+
+		removeFromCacheRecursive(service, new Path("/testBudget"));
+		for (IPath path : paths) {
+			Assert.assertFalse("Content should be removed", service.hasContent(path));
+		}
+	}
+
+	/**
+	 * Tests that content built by many appends is read back correctly, and
+	 * that a stream opened before an append still reads the old content
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testMemoryCacheAppend() throws Exception {
+		ICacheService service = new MemoryCacheServiceFactory().getCacheService();
+
+		IPath path = new Path("/testAppend/file.txt");
+		writeToCache(service, path, new ByteArrayInputStream("start".getBytes("UTF-8")));
+		StringBuilder expected = new StringBuilder("start");
+
+		InputStream before = service.getContent(path);
+		try {
+			char[] large = new char[10000];
+			for (int i = 0; i < 500; i++) {
+				String piece;
+				if (i % 100 == 99) {
+					// larger than a chunk
+					Arrays.fill(large, (char) ('a' + i % 26));
+					piece = new String(large);
+				} else {
+					piece = "piece" + i + ";";
+				}
+				appendToCache(service, path, new ByteArrayInputStream(piece.getBytes("UTF-8")));
+				expected.append(piece);
+			}
+
+			Assert.assertEquals("Wrong content", expected.toString(), readContent(service.getContent(path)));
+			Assert.assertEquals("Stream should read the content when it was opened", "start", readContent(before));
+		} finally {
+			Util.safeClose(before);
+		}
+
+		writeToCache(service, path, new ByteArrayInputStream("replaced".getBytes("UTF-8")));
+		Assert.assertEquals("Wrong content", "replaced", readContent(service.getContent(path)));
+
+		removeFromCache(service, path);
+	}
+
+	/**
+	 * Tests that a reader of a cache file keeps reading the old content if
+	 * the file is replaced, and that the replacement is served afterwards
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testReplaceWhileReading() throws Exception {
+		ICacheService service = new FileCacheServiceFactory().getCacheService();
+
+		IPath path = new Path("/testReplace/file.txt");
+		char[] old = new char[100000];
+		Arrays.fill(old, 'o');
+		String oldContent = new String(old);
+		writeToCache(service, path, new ByteArrayInputStream(oldContent.getBytes("UTF-8")));
+
+		File cacheFile = new File(SemanticFileCache.getCache().getCacheDir(), path.toString());
+
+		InputStream reader = service.getContent(path);
+		try {
+			Assert.assertEquals("Wrong first byte", 'o', reader.read());
+
+			writeToCache(service, path, new ByteArrayInputStream("new".getBytes("UTF-8")));
+			readFromCache(service, path, "new");
+
+			Assert.assertEquals("Reader should read the content when it was opened", oldContent.substring(1), readContent(reader));
+		} finally {
+			Util.safeClose(reader);
+		}
+
+		if (!Platform.OS_WIN32.equals(Platform.getOS())) {
+			// the rename replaces the open cache file in one step
+			Assert.assertEquals("Cache file should be replaced", 3, cacheFile.length());
+		}
+
+		writeToCache(service, path, new ByteArrayInputStream("newer".getBytes("UTF-8")));
+		readFromCache(service, path, "newer");
+
+		removeFromCache(service, path);
+		Assert.assertFalse("Cache file should be removed", cacheFile.exists());
+	}
+
+	private static String readContent(InputStream is) throws CoreException, IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		Util.transferStreams(is, os, null);
+		return new String(os.toByteArray(), "UTF-8");
+	}
+
 	/**
 	 * @param service
 	 * @param path
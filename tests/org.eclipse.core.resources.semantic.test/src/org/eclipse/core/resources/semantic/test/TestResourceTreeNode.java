@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import junit.framework.Assert;
+
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBFactory;
+import org.junit.Test;
+
+/**
+ * Tests the metadata model nodes
+ */
+public class TestResourceTreeNode {
+
+	/**
+	 * Tests that the name index of the children follows additions, renames,
+	 * moves, and removals
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testChildNameIndex() throws Exception {
+		SemanticResourceDBFactory factory = SemanticResourceDBFactory.eINSTANCE;
+
+		ResourceTreeNode parent = factory.createResourceTreeNode();
+		parent.setName("parent");
+		Assert.assertNull("Child should not be found", parent.getChild("child0"));
+
+		for (int i = 0; i < 1000; i++) {
+			ResourceTreeNode child = factory.createResourceTreeNode();
+			child.setName("child" + i);
+			child.setParent(parent);
+		}
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertSame("Wrong child", parent.getChildren().get(i), parent.getChild("child" + i));
+		}
+
+		ResourceTreeNode renamed = parent.getChild("child1");
+		renamed.setName("renamed");
+		Assert.assertNull("Old name should not be found", parent.getChild("child1"));
+		Assert.assertSame("Wrong child", renamed, parent.getChild("renamed"));
+
+		parent.getChildren().remove(renamed);
+		Assert.assertNull("Removed child should not be found", parent.getChild("renamed"));
+
+		ResourceTreeNode other = factory.createResourceTreeNode();
+		ResourceTreeNode moved = parent.getChild("child2");
+		moved.setParent(other);
+		Assert.assertNull("Moved child should not be found", parent.getChild("child2"));
+		Assert.assertSame("Wrong child", moved, other.getChild("child2"));
+
+		// the first child with a name is found, as with a linear scan
+		ResourceTreeNode first = parent.getChild("child3");
+		ResourceTreeNode duplicate = factory.createResourceTreeNode();
+		duplicate.setName("child3");
+		duplicate.setParent(parent);
+		Assert.assertSame("Wrong child", first, parent.getChild("child3"));
+		first.setParent(null);
+		Assert.assertSame("Wrong child", duplicate, parent.getChild("child3"));
+
+		parent.getChildren().clear();
+		Assert.assertNull("Child should not be found", parent.getChild("child4"));
+	}
+
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticDB;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBFactory;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeRoot;
+import org.eclipse.core.internal.resources.semantic.persistence.SemanticDBJournal;
+import org.eclipse.core.internal.resources.semantic.persistence.SemanticDBSegments;
+import org.eclipse.core.internal.resources.semantic.util.ISemanticFileSystemLog;
+import org.eclipse.core.resources.semantic.ISemanticFileSystem;
+import org.junit.Test;
+
+/**
+ * Tests the change journal of the metadata
+ */
+public class TestSemanticDBJournal {
+
+	/**
+	 * Tests that the journal is replayed and that a damaged tail is dropped
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testJournalReplay() throws Exception {
+		SemanticResourceDBFactory factory = SemanticResourceDBFactory.eINSTANCE;
+		ISemanticFileSystemLog log = ((ISemanticFileSystem) EFS.getFileSystem(ISemanticFileSystem.SCHEME)).getLog();
+
+		File journalFile = File.createTempFile("testJournalReplay", ".journal");
+		journalFile.deleteOnExit();
+		journalFile.delete();
+
+		SemanticDBJournal journal = new SemanticDBJournal(journalFile, log);
+		SemanticDB db = factory.createSemanticDB();
+		journal.attach(db);
+
+		TreeRoot root = factory.createTreeRoot();
+		root.setName("Root");
+		root.setExists(true);
+		root.setParentDB(db);
+
+		ResourceTreeNode child = factory.createResourceTreeNode();
+		child.setName("child");
+		child.setExists(true);
+		child.setParent(root);
+		child.setTemplateID("provider");
+
+		ResourceTreeNode removed = factory.createResourceTreeNode();
+		removed.setName("removed");
+		removed.setParent(root);
+		removed.setParent(null);
+
+		Assert.assertTrue("Journal should be written", journal.flush() > 0);
+
+		assertReplayed(replayJournal(journalFile, log));
+
+		// e.g. a crash while appending a record
+		long length = journalFile.length();
+		FileOutputStream fos = new FileOutputStream(journalFile, true);
+		try {
+			fos.write(new byte[] {0, 0, 0, 100, 1, 2, 3});
+		} finally {
+			fos.close();
+		}
+
+		assertReplayed(replayJournal(journalFile, log));
+		Assert.assertEquals("Damaged tail should be dropped", length, journalFile.length());
+
+		journalFile.delete();
+	}
+
+	private static SemanticDB replayJournal(File journalFile, ISemanticFileSystemLog log) throws IOException {
+		SemanticDBJournal journal = new SemanticDBJournal(journalFile, log);
+		SemanticDB db = SemanticResourceDBFactory.eINSTANCE.createSemanticDB();
+		File indexFile = new File(journalFile.getParentFile(), journalFile.getName() + ".index");
+		journal.replay(db, new SemanticDBSegments(indexFile, journal));
+		return db;
+	}
+
+	private static void assertReplayed(SemanticDB db) {
+		TreeRoot root = db.getRoot("Root");
+		Assert.assertNotNull("Root should be replayed", root);
+		Assert.assertTrue("Root should exist", root.isExists());
+
+		ResourceTreeNode child = root.getChild("child");
+		Assert.assertNotNull("Child should be replayed", child);
+		Assert.assertEquals("Wrong template ID", "provider", child.getTemplateID());
+		Assert.assertNull("Removed child should not be replayed", root.getChild("removed"));
+	}
+
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+
+import junit.framework.Assert;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.ResourceTreeNode;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticDB;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.SemanticResourceDBFactory;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeNodeType;
+import org.eclipse.core.internal.resources.semantic.model.SemanticResourceDB.TreeRoot;
+import org.eclipse.core.internal.resources.semantic.persistence.SemanticDBJournal;
+import org.eclipse.core.internal.resources.semantic.persistence.SemanticDBSegments;
+import org.eclipse.core.internal.resources.semantic.util.ISemanticFileSystemLog;
+import org.eclipse.core.resources.semantic.ISemanticFileSystem;
+import org.eclipse.emf.ecore.EAttribute;
+import org.junit.Test;
+
+/**
+ * Tests the binary snapshot of the metadata and the loading of its segments
+ */
+public class TestSemanticDBSegments {
+
+	/**
+	 * Tests that the binary snapshot keeps all persistent attributes
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSnapshotRoundTrip() throws Exception {
+		SemanticResourceDBFactory factory = SemanticResourceDBFactory.eINSTANCE;
+		ISemanticFileSystemLog log = ((ISemanticFileSystem) EFS.getFileSystem(ISemanticFileSystem.SCHEME)).getLog();
+
+		File folder = createTestFolder("testSnapshotRoundTrip");
+		File indexFile = new File(folder, "test.snapshot");
+		SemanticDBJournal journal = new SemanticDBJournal(new File(folder, "test.journal"), log);
+
+		SemanticDB db = factory.createSemanticDB();
+
+		TreeRoot root = factory.createTreeRoot();
+		root.setName("Root");
+		root.setExists(true);
+		root.setType(TreeNodeType.PROJECT);
+		root.setTemplateID("rootProvider");
+		root.setQueryPart("type=project;create=true");
+		root.setRemoteURI("http://remote/root");
+		root.setRootURI("semanticfs:/Root");
+		root.setParentDB(db);
+
+		ResourceTreeNode folderNode = factory.createResourceTreeNode();
+		folderNode.setName("folder");
+		folderNode.setExists(true);
+		folderNode.setLocalOnly(true);
+		folderNode.setType(TreeNodeType.FOLDER);
+		folderNode.setParent(root);
+
+		ResourceTreeNode fileNode = factory.createResourceTreeNode();
+		fileNode.setName("file");
+		fileNode.setExists(true);
+		fileNode.setType(TreeNodeType.FILE);
+		fileNode.setTemplateID("fileProvider");
+		fileNode.setRemoteURI("http://remote/file");
+		HashMap<String, String> properties = new HashMap<String, String>();
+		properties.put("key", "value");
+		properties.put("empty", "");
+		fileNode.setPersistentProperties(properties);
+		fileNode.setParent(folderNode);
+
+		// not kept in the snapshot
+		fileNode.setDynamicContentProviderID("dynamicProvider");
+
+		new SemanticDBSegments(indexFile, journal).write(db, Collections.<String> emptySet());
+
+		SemanticDBSegments segments = new SemanticDBSegments(indexFile, journal);
+		SemanticDB loaded = segments.load();
+		TreeRoot loadedRoot = loaded.getRoot("Root");
+		Assert.assertNotNull("Root should be loaded", loadedRoot);
+		Assert.assertTrue("Children should be loaded", segments.ensureLoaded(loadedRoot));
+
+		assertPersistentStateEquals(root, loadedRoot);
+		Assert.assertNull("Transient attribute should not be kept", loadedRoot.getChild("folder").getChild("file")
+				.getDynamicContentProviderID());
+
+		deleteRecursively(folder);
+	}
+
+	/**
+	 * Tests that the children of a root are loaded on demand and can be
+	 * unloaded, and that a root whose segment can not be read is broken
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLazySegmentLoading() throws Exception {
+		SemanticResourceDBFactory factory = SemanticResourceDBFactory.eINSTANCE;
+		ISemanticFileSystemLog log = ((ISemanticFileSystem) EFS.getFileSystem(ISemanticFileSystem.SCHEME)).getLog();
+
+		File folder = createTestFolder("testLazySegmentLoading");
+		File indexFile = new File(folder, "test.snapshot");
+		SemanticDBJournal journal = new SemanticDBJournal(new File(folder, "test.journal"), log);
+
+		SemanticDB db = factory.createSemanticDB();
+		TreeRoot root = factory.createTreeRoot();
+		root.setName("Root");
+		root.setExists(true);
+		root.setParentDB(db);
+		ResourceTreeNode child = factory.createResourceTreeNode();
+		child.setName("child");
+		child.setExists(true);
+		child.setParent(root);
+
+		new SemanticDBSegments(indexFile, journal).write(db, Collections.<String> emptySet());
+
+		SemanticDBSegments segments = new SemanticDBSegments(indexFile, journal);
+		TreeRoot loadedRoot = segments.load().getRoot("Root");
+		Assert.assertFalse("No root should be loaded", segments.isAnyLoaded());
+		Assert.assertNull("Children should not be loaded", loadedRoot.getChild("child"));
+
+		Assert.assertTrue("Children should be loaded", segments.ensureLoaded(loadedRoot));
+		Assert.assertFalse("Children should be loaded only once", segments.ensureLoaded(loadedRoot));
+		ResourceTreeNode loadedChild = loadedRoot.getChild("child");
+		Assert.assertNotNull("Child should be loaded", loadedChild);
+
+		Assert.assertFalse("Root in use should not be unloaded", segments.unload(loadedRoot, 0));
+		Assert.assertTrue("Idle root should be unloaded", segments.unload(loadedRoot, System.currentTimeMillis() + 1000));
+		Assert.assertFalse("No root should be loaded", segments.isAnyLoaded());
+		Assert.assertNull("Children should be unloaded", loadedRoot.getChild("child"));
+		Assert.assertFalse("Unloaded child should not exist", loadedChild.isExists());
+		Assert.assertEquals("Unloaded child should keep its path", "/Root/child", loadedChild.getPath());
+
+		Assert.assertTrue("Children should be reloaded", segments.ensureLoaded(loadedRoot));
+		Assert.assertNotNull("Child should be reloaded", loadedRoot.getChild("child"));
+
+		// a segment file that is only present as temporary file (e.g. after a
+		// crash while replacing it) is recovered
+		File segmentFile = new File(folder, "segments").listFiles()[0];
+		File tempFile = new File(segmentFile.getParentFile(), segmentFile.getName() + ".tmp");
+		Assert.assertTrue("Segment file should be renamed", segmentFile.renameTo(tempFile));
+
+		segments = new SemanticDBSegments(indexFile, journal);
+		loadedRoot = segments.load().getRoot("Root");
+		Assert.assertTrue("Children should be loaded", segments.ensureLoaded(loadedRoot));
+		Assert.assertNotNull("Child should be loaded", loadedRoot.getChild("child"));
+
+		// a missing segment file breaks the root
+		Assert.assertTrue("Segment file should be deleted", segmentFile.delete());
+
+		segments = new SemanticDBSegments(indexFile, journal);
+		loadedRoot = segments.load().getRoot("Root");
+		try {
+			segments.ensureLoaded(loadedRoot);
+			Assert.fail("Loading should fail");
+		} catch (IOException e) {
+			// $JL-EXC$ expected
+		}
+		Assert.assertTrue("Root should be broken", segments.isBroken(loadedRoot));
+		Assert.assertFalse("Broken root should not be loaded", segments.ensureLoaded(loadedRoot));
+
+		deleteRecursively(folder);
+	}
+
+	private static void assertPersistentStateEquals(ResourceTreeNode expected, ResourceTreeNode actual) {
+		Assert.assertEquals("Wrong class", expected.eClass(), actual.eClass());
+		for (EAttribute attribute : expected.eClass().getEAllAttributes()) {
+			if (!attribute.isTransient()) {
+				Assert.assertEquals("Wrong " + attribute.getName() + " of " + expected.getName(), expected.eGet(attribute), actual
+						.eGet(attribute));
+			}
+		}
+
+		Assert.assertEquals("Wrong number of children of " + expected.getName(), expected.getChildren().size(), actual.getChildren()
+				.size());
+		for (int i = 0; i < expected.getChildren().size(); i++) {
+			assertPersistentStateEquals(expected.getChildren().get(i), actual.getChildren().get(i));
+		}
+	}
+
+	private static File createTestFolder(String name) throws IOException {
+		File folder = File.createTempFile(name, "");
+		folder.delete();
+		folder.mkdirs();
+		return folder;
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+
+}
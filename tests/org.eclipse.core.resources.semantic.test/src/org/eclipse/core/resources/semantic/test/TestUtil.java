@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.eclipse.core.resources.semantic.spi.Util;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Test;
+
+/**
+ * Tests the stream transfer of the utilities
+ */
+public class TestUtil {
+
+	private static final int BUFFER_SIZE = 8192;
+	// more than one step of the channel transfer
+	private static final int SIZE = 1024 * 1024 + BUFFER_SIZE + 1;
+
+	/**
+	 * Tests that file streams are copied completely and report one unit of
+	 * work per buffer size
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFileTransfer() throws Exception {
+		byte[] content = createContent(SIZE);
+		File source = createFile("testFileTransfer", content);
+		File target = File.createTempFile("testFileTransfer", ".target");
+
+		FileInputStream is = new FileInputStream(source);
+		FileOutputStream os = new FileOutputStream(target);
+		CountingMonitor monitor = new CountingMonitor();
+		Util.transferStreams(is, os, monitor);
+
+		Assert.assertFalse("Source should be closed", is.getChannel().isOpen());
+		Assert.assertFalse("Destination should be closed", os.getChannel().isOpen());
+		Assert.assertTrue("Wrong content", Arrays.equals(content, readFile(target)));
+		// 128 units for the first step of 1 MB, 2 for the remainder
+		Assert.assertEquals("Wrong amount of work", 130, monitor.work);
+
+		source.delete();
+		target.delete();
+	}
+
+	/**
+	 * Tests that the copy of file streams starts at the current position of
+	 * the source and appends to the destination
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFileTransferFromPosition() throws Exception {
+		byte[] content = createContent(SIZE);
+		File source = createFile("testFileTransferFromPosition", content);
+		byte[] existing = "existing".getBytes("UTF-8");
+		File target = createFile("testFileTransferFromPosition", existing);
+
+		int start = 100;
+		FileInputStream is = new FileInputStream(source);
+		Assert.assertEquals("Skip failed", start, is.skip(start));
+		CountingMonitor monitor = new CountingMonitor();
+		Util.transferStreams(is, new FileOutputStream(target, true), monitor);
+
+		byte[] expected = new byte[existing.length + SIZE - start];
+		System.arraycopy(existing, 0, expected, 0, existing.length);
+		System.arraycopy(content, start, expected, existing.length, SIZE - start);
+		Assert.assertTrue("Wrong content", Arrays.equals(expected, readFile(target)));
+		// 128 units for the first step of 1 MB, 1 for the remainder
+		Assert.assertEquals("Wrong amount of work", 129, monitor.work);
+
+		source.delete();
+		target.delete();
+	}
+
+	/**
+	 * Tests that other streams are copied with the same result and amount of
+	 * work
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreamTransfer() throws Exception {
+		byte[] content = createContent(SIZE);
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		CountingMonitor monitor = new CountingMonitor();
+		Util.transferStreams(new ByteArrayInputStream(content), os, monitor);
+
+		Assert.assertTrue("Wrong content", Arrays.equals(content, os.toByteArray()));
+		Assert.assertEquals("Wrong amount of work", (SIZE + BUFFER_SIZE - 1) / BUFFER_SIZE, monitor.work);
+	}
+
+	private static byte[] createContent(int size) {
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++) {
+			content[i] = (byte) (i % 251);
+		}
+		return content;
+	}
+
+	private static File createFile(String name, byte[] content) throws IOException {
+		File file = File.createTempFile(name, ".tmp");
+		file.deleteOnExit();
+		FileOutputStream os = new FileOutputStream(file);
+		try {
+			os.write(content);
+		} finally {
+			os.close();
+		}
+		return file;
+	}
+
+	private static byte[] readFile(File file) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		// the destination is no file stream, so the buffer is used
+		Util.transferStreams(new FileInputStream(file), os, null);
+		return os.toByteArray();
+	}
+
+	private static final class CountingMonitor extends NullProgressMonitor {
+
+		int work = 0;
+
+		CountingMonitor() {
+			// nothing
+		}
+
+		@Override
+		public void worked(int value) {
+			this.work += value;
+		}
+	}
+}
@@ -12,10 +12,14 @@
 package org.eclipse.core.resources.semantic.test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 
@@ -30,13 +34,17 @@ import org.eclipse.core.resources.semantic.ISemanticFileSystem;
 import org.eclipse.core.resources.semantic.ISemanticFolder;
 import org.eclipse.core.resources.semantic.SyncDirection;
 import org.eclipse.core.resources.semantic.examples.remote.RemoteFile;
+import org.eclipse.core.resources.semantic.examples.remote.RemoteFolder;
 import org.eclipse.core.resources.semantic.examples.remote.RemoteStoreTransient;
+import org.eclipse.core.resources.semantic.spi.CachingContentProvider;
+import org.eclipse.core.resources.semantic.spi.ISemanticFileStore;
 import org.eclipse.core.resources.semantic.spi.Util;
 import org.eclipse.core.resources.semantic.test.provider.CachingTestContentProvider;
 import org.eclipse.core.resources.semantic.test.provider.CachingTestContentProviderBase;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.junit.Test;
@@ -53,6 +61,11 @@ public class TestsCachingProvider extends TestsContentProviderBase {
 	public void afterMethod() throws Exception {
 		super.afterMethod();
 		this.file1 = null;
+		CachingTestContentProviderBase.fillCacheConcurrency = 1;
+		CachingTestContentProviderBase.remoteOpenCount.set(0);
+		CachingTestContentProviderBase.remoteOpenGate = null;
+		CachingTestContentProviderBase.remoteOpenStarted = null;
+		CachingTestContentProviderBase.remoteReadFailure = false;
 	}
 
 	@Override
@@ -664,4 +677,277 @@ public class TestsCachingProvider extends TestsContentProviderBase {
 		ResourcesPlugin.getWorkspace().run(runnable, new NullProgressMonitor());
 
 	}
+
+	/**
+	 * Two threads missing the cache for the same file must fetch the remote
+	 * content only once
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentCacheMiss() throws Exception {
+
+		final IFolder root = this.testProject.getFolder("root");
+		final IFolder parent = root.getFolder("Folder1");
+
+		final IFile file = parent.getFile("File1");
+
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+
+			public void run(IProgressMonitor monitor) throws CoreException {
+				ISemanticFolder sfr = (ISemanticFolder) parent.getAdapter(ISemanticFolder.class);
+				sfr.addFile("File1", ISemanticFileSystem.NONE, monitor);
+			}
+		};
+
+		ResourcesPlugin.getWorkspace().run(runnable, new NullProgressMonitor());
+
+		final ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(file.getLocationURI());
+		CachingContentProvider provider = (CachingContentProvider) store.getEffectiveContentProvider();
+		provider.getCacheService().removeContent(store.getPath(), new NullProgressMonitor());
+		long fetchCount = provider.getFetchCount();
+		long avoidedFetchCount = provider.getAvoidedFetchCount();
+
+		final String[] contents = new String[2];
+		final Exception[] errors = new Exception[2];
+		Thread[] readers = new Thread[2];
+		for (int i = 0; i < readers.length; i++) {
+			final int index = i;
+			readers[i] = new Thread() {
+				@Override
+				public void run() {
+					InputStream is = null;
+					try {
+						is = store.openInputStream(EFS.NONE, new NullProgressMonitor());
+						ByteArrayOutputStream os = new ByteArrayOutputStream();
+						Util.transferStreams(is, os, null);
+						contents[index] = new String(os.toByteArray(), "UTF-8");
+					} catch (Exception e) {
+						errors[index] = e;
+					} finally {
+						Util.safeClose(is);
+					}
+				}
+			};
+		}
+
+		CountDownLatch gate = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		CachingTestContentProviderBase.remoteOpenCount.set(0);
+		CachingTestContentProviderBase.remoteOpenGate = gate;
+		CachingTestContentProviderBase.remoteOpenStarted = started;
+		try {
+			readers[0].start();
+			Assert.assertTrue("First fetch should start", started.await(10, TimeUnit.SECONDS));
+			// the second reader misses the cache while the first one is
+			// fetching and waits for the fetch
+			readers[1].start();
+			long end = System.currentTimeMillis() + 10000;
+			while (readers[1].getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < end) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals("Second reader should wait for the fetch", Thread.State.TIMED_WAITING, readers[1].getState());
+		} finally {
+			gate.countDown();
+		}
+		for (Thread reader : readers) {
+			reader.join(10000);
+			Assert.assertFalse("Reader should have finished", reader.isAlive());
+		}
+
+		for (int i = 0; i < readers.length; i++) {
+			Assert.assertNull("Read failed", errors[i]);
+			Assert.assertEquals("Wrong content", new String(this.file1.getContent(), "UTF-8"), contents[i]);
+		}
+		Assert.assertEquals("Wrong number of remote fetches", 1, CachingTestContentProviderBase.remoteOpenCount.get());
+		Assert.assertEquals("Wrong fetch count", fetchCount + 1, provider.getFetchCount());
+		Assert.assertEquals("Wrong avoided fetch count", avoidedFetchCount + 1, provider.getAvoidedFetchCount());
+	}
+
+	/**
+	 * Filling the cache with several workers fetches the files in parallel
+	 * and merges the failures into the result
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testParallelFillCache() throws Exception {
+
+		final int fileCount = 8;
+		RemoteStoreTransient remoteStore = (RemoteStoreTransient) this.testProject.getAdapter(RemoteStoreTransient.class);
+		RemoteFolder remoteFolder = (RemoteFolder) remoteStore.getItemByPath(new Path("Folder1"));
+		for (int i = 0; i < fileCount; i++) {
+			remoteFolder.addFile("Parallel" + i, ("Content " + i).getBytes("UTF-8"), remoteStore.newTime());
+		}
+
+		final IFolder parent = this.testProject.getFolder("root").getFolder("Folder1");
+
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+
+			public void run(IProgressMonitor monitor) throws CoreException {
+				ISemanticFolder sfr = (ISemanticFolder) parent.getAdapter(ISemanticFolder.class);
+				for (int i = 0; i < fileCount; i++) {
+					sfr.addFile("Parallel" + i, ISemanticFileSystem.NONE, monitor);
+				}
+			}
+		};
+
+		ResourcesPlugin.getWorkspace().run(runnable, new NullProgressMonitor());
+
+		final ISemanticFileStore folderStore = (ISemanticFileStore) EFS.getStore(parent.getLocationURI());
+		final CachingTestContentProviderBase provider = (CachingTestContentProviderBase) folderStore.getEffectiveContentProvider();
+		for (int i = 0; i < fileCount; i++) {
+			provider.getCacheService().removeContent(folderStore.getPath().append("Parallel" + i), new NullProgressMonitor());
+		}
+		// the last file fails
+		remoteFolder.deleteChild("Parallel" + (fileCount - 1));
+
+		final MultiStatus status = new MultiStatus(TestPlugin.PLUGIN_ID, IStatus.OK, "Fill cache", null);
+		Thread filler = new Thread() {
+			@Override
+			public void run() {
+				provider.fillCache(folderStore, new NullProgressMonitor(), status);
+			}
+		};
+
+		CountDownLatch gate = new CountDownLatch(1);
+		CachingTestContentProviderBase.fillCacheConcurrency = 4;
+		CachingTestContentProviderBase.remoteOpenCount.set(0);
+		CachingTestContentProviderBase.remoteOpenGate = gate;
+		boolean parallel = false;
+		try {
+			filler.start();
+			// all workers wait at the gate, so more than one fetch can only
+			// start if the files are fetched in parallel
+			long end = System.currentTimeMillis() + 5000;
+			while (!parallel && System.currentTimeMillis() < end) {
+				parallel = CachingTestContentProviderBase.remoteOpenCount.get() > 1;
+				Thread.sleep(10);
+			}
+		} finally {
+			gate.countDown();
+			CachingTestContentProviderBase.remoteOpenGate = null;
+		}
+		filler.join(30000);
+
+		Assert.assertFalse("Cache fill should have finished", filler.isAlive());
+		Assert.assertTrue("Files should be fetched in parallel", parallel);
+		Assert.assertEquals("Wrong number of remote fetches", fileCount - 1, CachingTestContentProviderBase.remoteOpenCount.get());
+		Assert.assertEquals("Wrong number of failures", 1, status.getChildren().length);
+		Assert.assertEquals("Wrong severity", IStatus.ERROR, status.getSeverity());
+		for (int i = 0; i < fileCount - 1; i++) {
+			Assert.assertTrue("File should be cached", provider.getCacheService().hasContent(folderStore.getPath().append("Parallel" + i)));
+		}
+		Assert.assertFalse("Failed file should not be cached", provider.getCacheService().hasContent(
+				folderStore.getPath().append("Parallel" + (fileCount - 1))));
+	}
+
+
+	/**
+	 * Revalidating unchanged content keeps the cached content and timestamp
+	 * without fetching it
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRevalidateUnchanged() throws Exception {
+		ISemanticFileStore store = addAndCacheFile1();
+		CachingTestContentProviderBase provider = (CachingTestContentProviderBase) store.getEffectiveContentProvider();
+		long timestamp = provider.getResourceTimestamp(store, new NullProgressMonitor());
+
+		CachingTestContentProviderBase.remoteOpenCount.set(0);
+		MultiStatus status = new MultiStatus(TestPlugin.PLUGIN_ID, IStatus.OK, "Revalidate", null);
+		provider.revalidateCache((ISemanticFileStore) store.getParent(), new NullProgressMonitor(), status);
+
+		Assert.assertTrue("Revalidation should succeed", status.isOK());
+		Assert.assertEquals("Unchanged content should not be fetched", 0, CachingTestContentProviderBase.remoteOpenCount.get());
+		Assert.assertEquals("Wrong cached content", "Hello", readCachedContent(provider, store));
+		Assert.assertEquals("Wrong timestamp", timestamp, provider.getResourceTimestamp(store, new NullProgressMonitor()));
+	}
+
+	/**
+	 * Revalidating changed content replaces the cached content and timestamp
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRevalidateChanged() throws Exception {
+		ISemanticFileStore store = addAndCacheFile1();
+		CachingTestContentProviderBase provider = (CachingTestContentProviderBase) store.getEffectiveContentProvider();
+		long timestamp = provider.getResourceTimestamp(store, new NullProgressMonitor());
+
+		changeRemoteContent("Changed");
+		Assert.assertTrue("Remote timestamp should change", this.file1.getTimestamp() != timestamp);
+
+		CachingTestContentProviderBase.remoteOpenCount.set(0);
+		MultiStatus status = new MultiStatus(TestPlugin.PLUGIN_ID, IStatus.OK, "Revalidate", null);
+		provider.revalidateCache((ISemanticFileStore) store.getParent(), new NullProgressMonitor(), status);
+
+		Assert.assertTrue("Revalidation should succeed", status.isOK());
+		Assert.assertEquals("Changed content should be fetched", 1, CachingTestContentProviderBase.remoteOpenCount.get());
+		Assert.assertEquals("Wrong cached content", "Changed", readCachedContent(provider, store));
+		Assert.assertEquals("Wrong timestamp", this.file1.getTimestamp(), provider.getResourceTimestamp(store, new NullProgressMonitor()));
+	}
+
+	/**
+	 * If the changed content can not be added to the cache, the cache entry
+	 * is dropped rather than keeping the old content
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRevalidateFailure() throws Exception {
+		ISemanticFileStore store = addAndCacheFile1();
+		CachingTestContentProviderBase provider = (CachingTestContentProviderBase) store.getEffectiveContentProvider();
+
+		changeRemoteContent("Changed");
+
+		CachingTestContentProviderBase.remoteReadFailure = true;
+		MultiStatus status = new MultiStatus(TestPlugin.PLUGIN_ID, IStatus.OK, "Revalidate", null);
+		provider.revalidateCache((ISemanticFileStore) store.getParent(), new NullProgressMonitor(), status);
+
+		Assert.assertFalse("Revalidation should fail", status.isOK());
+		Assert.assertFalse("Cache entry should be dropped", provider.getCacheService().hasContent(store.getPath()));
+	}
+
+	private ISemanticFileStore addAndCacheFile1() throws Exception {
+		final IFolder parent = this.testProject.getFolder("root").getFolder("Folder1");
+
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+
+			public void run(IProgressMonitor monitor) throws CoreException {
+				ISemanticFolder sfr = (ISemanticFolder) parent.getAdapter(ISemanticFolder.class);
+				sfr.addFile("File1", ISemanticFileSystem.NONE, monitor);
+			}
+		};
+
+		ResourcesPlugin.getWorkspace().run(runnable, new NullProgressMonitor());
+
+		ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(parent.getFile("File1").getLocationURI());
+		CachingContentProvider provider = (CachingContentProvider) store.getEffectiveContentProvider();
+		Util.safeClose(provider.openInputStream(store, new NullProgressMonitor()));
+		Assert.assertTrue("File should be cached", provider.getCacheService().hasContent(store.getPath()));
+		return store;
+	}
+
+	private void changeRemoteContent(String content) throws IOException {
+		OutputStream os = this.file1.getOutputStream(false);
+		try {
+			os.write(content.getBytes("UTF-8"));
+		} finally {
+			os.close();
+		}
+	}
+
+	private static String readCachedContent(CachingContentProvider provider, ISemanticFileStore store) throws Exception {
+		InputStream is = provider.getCacheService().getContent(store.getPath());
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			Util.transferStreams(is, os, null);
+			return new String(os.toByteArray(), "UTF-8");
+		} finally {
+			Util.safeClose(is);
+		}
+	}
+
 }
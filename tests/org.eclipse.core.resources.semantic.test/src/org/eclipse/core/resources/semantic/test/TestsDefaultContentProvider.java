@@ -19,10 +19,17 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import junit.framework.Assert;
 
 import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.internal.resources.semantic.SemanticFileSystem;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
@@ -32,6 +39,7 @@ import org.eclipse.core.resources.IResourceRuleFactory;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.semantic.ISemanticBatchOperation;
 import org.eclipse.core.resources.semantic.ISemanticFile;
 import org.eclipse.core.resources.semantic.ISemanticFileSystem;
 import org.eclipse.core.resources.semantic.ISemanticFolder;
@@ -48,6 +56,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.team.core.RepositoryProvider;
@@ -837,6 +846,86 @@ public class TestsDefaultContentProvider extends TestsContentProviderUtil {
 		}
 	}
 
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testUpdateChildren() throws Exception {
+
+		IFolder folder = TestsDefaultContentProvider.this.testProject.getFolder("someFolder");
+		folder.create(false, true, null);
+		folder.getFile("toBeRemoved").create(new ByteArrayInputStream("".getBytes()), false, null);
+		folder.getFile("toBeKept").create(new ByteArrayInputStream("".getBytes()), false, null);
+
+		ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(folder.getLocationURI());
+
+		QualifiedName key = new QualifiedName(TestPlugin.PLUGIN_ID, "UpdateChildren");
+		Map<QualifiedName, String> properties = new HashMap<QualifiedName, String>();
+		properties.put(key, "value");
+		Map<String, Map<QualifiedName, String>> filesToAdd = new HashMap<String, Map<QualifiedName, String>>();
+		filesToAdd.put("newFile", properties);
+		// a removed child may be added again
+		filesToAdd.put("toBeRemoved", null);
+
+		store.updateChildren(Collections.singletonList("toBeRemoved"), Arrays.asList("newFolder1", "newFolder2"), filesToAdd, null);
+
+		List<String> names = new ArrayList<String>(Arrays.asList(store.childNames(EFS.NONE, null)));
+		Collections.sort(names);
+		Assert.assertEquals("Wrong children", Arrays.asList("newFile", "newFolder1", "newFolder2", "toBeKept", "toBeRemoved"), names);
+
+		ISemanticFileStore newFile = (ISemanticFileStore) store.getChild("newFile");
+		Assert.assertEquals("Wrong type", ISemanticFileStore.FILE, newFile.getType());
+		Assert.assertEquals("Wrong property", "value", newFile.getPersistentProperty(key));
+		Assert.assertEquals("Wrong type", ISemanticFileStore.FOLDER, ((ISemanticFileStore) store.getChild("newFolder1")).getType());
+		Assert.assertEquals("Wrong type", ISemanticFileStore.FILE, ((ISemanticFileStore) store.getChild("toBeRemoved")).getType());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testUpdateChildrenWithDuplicateNames() throws Exception {
+
+		IFolder folder = TestsDefaultContentProvider.this.testProject.getFolder("someFolder");
+		folder.create(false, true, null);
+		folder.getFile("existing").create(new ByteArrayInputStream("".getBytes()), false, null);
+
+		ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(folder.getLocationURI());
+		List<String> noNames = Collections.emptyList();
+		Map<String, Map<QualifiedName, String>> noFiles = Collections.emptyMap();
+
+		// the same name as folder and as file
+		Map<String, Map<QualifiedName, String>> filesToAdd = new HashMap<String, Map<QualifiedName, String>>();
+		filesToAdd.put("duplicate", null);
+		try {
+			store.updateChildren(noNames, Arrays.asList("newFolder", "duplicate"), filesToAdd, null);
+			Assert.fail("Adding a name twice should have failed");
+		} catch (SemanticResourceException e) {
+			// expected
+		}
+
+		// the same name twice in the folder names
+		try {
+			store.updateChildren(noNames, Arrays.asList("duplicate", "duplicate"), noFiles, null);
+			Assert.fail("Adding a name twice should have failed");
+		} catch (SemanticResourceException e) {
+			// expected
+		}
+
+		// the name of an existing child
+		try {
+			store.updateChildren(noNames, Arrays.asList("newFolder", "existing"), noFiles, null);
+			Assert.fail("Adding an existing name should have failed");
+		} catch (SemanticResourceException e) {
+			// expected
+		}
+
+		// nothing must have been changed
+		Assert.assertEquals("Wrong children", Arrays.asList("existing"), Arrays.asList(store.childNames(EFS.NONE, null)));
+	}
+
 	/**
 	 * 
 	 * @throws Exception
@@ -1086,4 +1175,73 @@ public class TestsDefaultContentProvider extends TestsContentProviderUtil {
 
 		workspace.run(runnable, workspace.getRuleFactory().refreshRule(subfolder), 0, new NullProgressMonitor());
 	}
+
+	/**
+	 * Tests that changes made in a batch are kept, including those of nested
+	 * batches, and that the failure of a batch operation is not masked
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatch() throws Exception {
+
+		IFolder folder = TestsDefaultContentProvider.this.testProject.getFolder("someFolder");
+		folder.create(false, true, null);
+
+		final ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(folder.getLocationURI());
+		final SemanticFileSystem sfs = (SemanticFileSystem) EFS.getFileSystem(ISemanticFileSystem.SCHEME);
+
+		// no background flush must interfere with the counts
+		sfs.flush();
+		final long flushCount = sfs.getFlushCount();
+		long bytesWritten = sfs.getBytesWritten();
+
+		sfs.run(new ISemanticBatchOperation() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				for (int i = 0; i < 100; i++) {
+					store.addChildFile("file" + i);
+				}
+				// a nested batch is part of this batch
+				sfs.run(new ISemanticBatchOperation() {
+					public void run(IProgressMonitor nestedMonitor) throws CoreException {
+						store.addChildFolder("folder");
+					}
+				}, monitor);
+				Assert.assertEquals("No flush expected during the batch", flushCount, sfs.getFlushCount());
+			}
+		}, null);
+
+		Assert.assertEquals("One flush expected for the batch", flushCount + 1, sfs.getFlushCount());
+		long batchBytes = sfs.getBytesWritten() - bytesWritten;
+
+		Assert.assertEquals("Wrong number of children", 101, store.childNames(EFS.NONE, null).length);
+		Assert.assertTrue("Folder should exist", store.hasChild("folder"));
+
+		// only the changed nodes are written, not the whole project
+		bytesWritten = sfs.getBytesWritten();
+		sfs.run(new ISemanticBatchOperation() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				store.addChildFile("single");
+			}
+		}, null);
+		Assert.assertEquals("One flush expected for the batch", flushCount + 2, sfs.getFlushCount());
+		long singleBytes = sfs.getBytesWritten() - bytesWritten;
+		Assert.assertTrue("Adding one file should write less than adding 101 resources", singleBytes * 10 < batchBytes);
+
+		final CoreException failure = new CoreException(new Status(IStatus.ERROR, TestPlugin.PLUGIN_ID, "Failure"));
+		try {
+			sfs.run(new ISemanticBatchOperation() {
+				public void run(IProgressMonitor monitor) throws CoreException {
+					store.addChildFile("beforeFailure");
+					throw failure;
+				}
+			}, null);
+			Assert.fail("Batch should have failed");
+		} catch (CoreException e) {
+			Assert.assertSame("The failure of the operation should be thrown", failure, e);
+		}
+		// batches are not atomic
+		Assert.assertTrue("Changes before the failure should be kept", store.hasChild("beforeFailure"));
+	}
+
 }
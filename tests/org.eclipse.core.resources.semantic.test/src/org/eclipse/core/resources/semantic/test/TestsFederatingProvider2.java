@@ -17,6 +17,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.concurrent.CyclicBarrier;
 
 import junit.framework.Assert;
 
@@ -74,15 +76,21 @@ public class TestsFederatingProvider2 extends TestsContentProviderUtil {
 
 		TestsContentProviderUtil.initTrace();
 
+		testProject = createProject(projectName);
+
+	}
+
+	private IProject createProject(final String name) throws CoreException {
+
 		final IWorkspace workspace = ResourcesPlugin.getWorkspace();
-		final IProject project = workspace.getRoot().getProject(TestsFederatingProvider2.this.projectName);
+		final IProject project = workspace.getRoot().getProject(name);
 
 		IWorkspaceRunnable myRunnable = new IWorkspaceRunnable() {
 			public void run(IProgressMonitor monitor) throws CoreException {
-				IProjectDescription description = workspace.newProjectDescription(TestsFederatingProvider2.this.projectName);
+				IProjectDescription description = workspace.newProjectDescription(name);
 
 				try {
-					description.setLocationURI(new URI(ISemanticFileSystem.SCHEME + ":/" + TestsFederatingProvider2.this.projectName));
+					description.setLocationURI(new URI(ISemanticFileSystem.SCHEME + ":/" + name));
 				} catch (URISyntaxException e) {
 					// really not likely, though
 					throw new RuntimeException(e);
@@ -105,8 +113,7 @@ public class TestsFederatingProvider2 extends TestsContentProviderUtil {
 
 		workspace.run(myRunnable, workspace.getRoot(), IWorkspace.AVOID_UPDATE, null);
 
-		testProject = project;
-
+		return project;
 	}
 
 	/**
@@ -442,4 +449,132 @@ public class TestsFederatingProvider2 extends TestsContentProviderUtil {
 		ResourcesPlugin.getWorkspace().run(runnable, new NullProgressMonitor());
 
 	}
+
+	/**
+	 * The URI mapping must be usable from provider callbacks that are executed
+	 * while the file system holds the lock of the root
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testFindURIFromProviderCallback() throws Exception {
+
+		final IFolder rootFolder = testProject.getFolder(new Path("root"));
+
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+
+			public void run(IProgressMonitor monitor) throws CoreException {
+				ISemanticFolder rootSFolder = (ISemanticFolder) rootFolder.getAdapter(ISemanticFolder.class);
+
+				ISemanticFile sFile = rootSFolder.addFile("test", TestsFederatingProvider2.this.options, monitor);
+				ISemanticFileStore fileStore = (ISemanticFileStore) EFS.getStore(sFile.getAdaptedResource().getLocationURI());
+				fileStore.setRemoteURIString("test://callback/test");
+
+				FederatingContentProvider2.uriToFind = URI.create("test://callback/test");
+				FederatingContentProvider2.foundResources = null;
+				FederatingContentProvider2.findException = null;
+				try {
+					ISemanticFileStore rootStore = (ISemanticFileStore) EFS.getStore(rootSFolder.getAdaptedResource().getLocationURI());
+					ISemanticFileStore sstore = (ISemanticFileStore) rootStore.getChild("A").getChild("F");
+					ISemanticContentProvider cp = sstore.getEffectiveContentProvider();
+					Assert.assertEquals("Wrong content provider", FederatingContentProvider2.class.getName(), cp.getClass().getName());
+
+					Assert.assertNull("Lookup should have succeeded", FederatingContentProvider2.findException);
+					Assert.assertNotNull("Callback should have been called", FederatingContentProvider2.foundResources);
+					Assert.assertEquals("Wrong number of resources", 1, FederatingContentProvider2.foundResources.length);
+					Assert.assertEquals("Wrong resource", sFile.getAdaptedResource(), FederatingContentProvider2.foundResources[0]);
+				} finally {
+					FederatingContentProvider2.uriToFind = null;
+				}
+			}
+		};
+
+		ResourcesPlugin.getWorkspace().run(runnable, new NullProgressMonitor());
+
+	}
+
+	/**
+	 * Provider callbacks that are executed while the file system holds the
+	 * lock of their root may access another project, even if a callback of the
+	 * other project accesses the first project at the same time
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testProviderCallbackTouchesOtherProject() throws Exception {
+
+		final IProject otherProject = createProject(projectName + "Other");
+		final IProject[] projects = new IProject[] {testProject, otherProject};
+		final URI uri = URI.create("test://callback/other");
+
+		try {
+			IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+
+				public void run(IProgressMonitor monitor) throws CoreException {
+					for (IProject project : projects) {
+						ISemanticFolder rootSFolder = (ISemanticFolder) project.getFolder("root").getAdapter(ISemanticFolder.class);
+						ISemanticFile sFile = rootSFolder.addFile("test", TestsFederatingProvider2.this.options, monitor);
+						ISemanticFileStore fileStore = (ISemanticFileStore) EFS.getStore(sFile.getAdaptedResource().getLocationURI());
+						fileStore.setRemoteURIString(uri.toString());
+					}
+				}
+			};
+
+			ResourcesPlugin.getWorkspace().run(runnable, new NullProgressMonitor());
+
+			HashMap<String, String> projectsToTouch = new HashMap<String, String>();
+			projectsToTouch.put(testProject.getName(), otherProject.getName());
+			projectsToTouch.put(otherProject.getName(), testProject.getName());
+
+			FederatingContentProvider2.uriToFind = uri;
+			FederatingContentProvider2.projectsToTouch = projectsToTouch;
+			// both callbacks hold the lock of their root when they access the
+			// other root
+			FederatingContentProvider2.callbackBarrier = new CyclicBarrier(projects.length);
+			FederatingContentProvider2.touchResults.clear();
+
+			Thread[] threads = new Thread[projects.length];
+			final Throwable[] failures = new Throwable[projects.length];
+			for (int i = 0; i < projects.length; i++) {
+				final int index = i;
+				threads[i] = new Thread("Callback of " + projects[i].getName()) {
+					@Override
+					public void run() {
+						try {
+							ISemanticFileStore rootStore = (ISemanticFileStore) EFS.getStore(projects[index].getFolder("root")
+									.getLocationURI());
+							((ISemanticFileStore) rootStore.getChild("A").getChild("F")).getEffectiveContentProvider();
+						} catch (Throwable t) {
+							failures[index] = t;
+						}
+					}
+				};
+				threads[i].start();
+			}
+
+			for (int i = 0; i < projects.length; i++) {
+				threads[i].join(60000);
+				Assert.assertFalse("Callbacks should not deadlock", threads[i].isAlive());
+				Assert.assertNull("Provider should be resolved", failures[i]);
+			}
+
+			for (int i = 0; i < projects.length; i++) {
+				Object result = FederatingContentProvider2.touchResults.get(projects[i].getName());
+				if (result instanceof Exception) {
+					throw (Exception) result;
+				}
+				IResource[] found = (IResource[]) result;
+				Assert.assertNotNull("Callback should have been called", found);
+				Assert.assertEquals("Wrong number of resources", 1, found.length);
+				Assert.assertEquals("Wrong resource", projects[1 - i].getFolder("root").getFile("test"), found[0]);
+			}
+		} finally {
+			FederatingContentProvider2.uriToFind = null;
+			FederatingContentProvider2.projectsToTouch = null;
+			FederatingContentProvider2.callbackBarrier = null;
+			FederatingContentProvider2.touchResults.clear();
+
+			otherProject.delete(true, new NullProgressMonitor());
+		}
+	}
 }
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.io.File;
+
+import junit.framework.Assert;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.internal.resources.semantic.SemanticFileSystem;
+import org.eclipse.core.resources.semantic.ISemanticFileSystem;
+import org.eclipse.core.resources.semantic.spi.ISemanticFileStore;
+import org.junit.Test;
+
+/**
+ * Tests the coalescing of database updates and the flush barrier
+ */
+public class TestsFlushScheduler extends TestsContentProviderUtil {
+
+	private static final int REQUESTS = 200;
+
+	/**
+	 * The constructor
+	 */
+	public TestsFlushScheduler() {
+		super(false, "TestFlushScheduler", null);
+	}
+
+	/**
+	 * Tests that the metadata is on disk when flush returns
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFlushWritesMetadata() throws Exception {
+		SemanticFileSystem sfs = (SemanticFileSystem) EFS.getFileSystem(ISemanticFileSystem.SCHEME);
+		ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(this.testProject.getFolder("root").getLocationURI());
+
+		File snapshotFile = new File(sfs.getPathToDb());
+		File journalFile = new File(snapshotFile.getParentFile(), "metadata.journal");
+
+		sfs.flush();
+		long snapshotModified = snapshotFile.lastModified();
+		long snapshotLength = snapshotFile.length();
+		long journalLength = journalFile.length();
+		long flushCount = sfs.getFlushCount();
+
+		store.addChildFile("flushed");
+		sfs.flush();
+
+		Assert.assertTrue("Snapshot should exist", snapshotFile.isFile());
+		Assert.assertTrue("Journal should exist", journalFile.isFile());
+		Assert.assertEquals("Wrong number of flushes", flushCount + 1, sfs.getFlushCount());
+		// the change is either appended to the journal or part of a new
+		// snapshot
+		Assert.assertTrue("Change should be written", journalFile.length() > journalLength
+				|| snapshotFile.lastModified() != snapshotModified || snapshotFile.length() != snapshotLength);
+	}
+
+	/**
+	 * Tests that many requests are served by few updates
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCoalescing() throws Exception {
+		SemanticFileSystem sfs = (SemanticFileSystem) EFS.getFileSystem(ISemanticFileSystem.SCHEME);
+		ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(this.testProject.getFolder("root").getLocationURI());
+
+		sfs.flush();
+		long flushCount = sfs.getFlushCount();
+		long bytesWritten = sfs.getBytesWritten();
+
+		for (int i = 0; i < REQUESTS; i++) {
+			store.addChildFile("file" + i);
+		}
+		sfs.flush();
+
+		long flushes = sfs.getFlushCount() - flushCount;
+		Assert.assertTrue("Changes should be written", flushes > 0);
+		Assert.assertTrue("Requests should be coalesced, but got " + flushes + " flushes", flushes < REQUESTS);
+		Assert.assertTrue("Bytes should be counted", sfs.getBytesWritten() > bytesWritten);
+		Assert.assertTrue("Time under lock should not be negative", sfs.getTimeUnderLock() >= 0);
+	}
+
+}
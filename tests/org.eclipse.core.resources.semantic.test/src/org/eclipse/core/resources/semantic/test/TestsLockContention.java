@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.semantic.ISemanticFileSystem;
+import org.eclipse.core.resources.semantic.spi.ISemanticFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.QualifiedName;
+import org.eclipse.team.core.RepositoryProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Contention benchmark for the metadata locks: N threads work on N semantic
+ * projects, compared to N threads working on one project
+ */
+public class TestsLockContention {
+
+	private static final int OPERATIONS = 2000;
+	private static final QualifiedName KEY = new QualifiedName(TestPlugin.PLUGIN_ID, "Contention");
+
+	private IProject[] projects;
+
+	/**
+	 * Creates one project per thread
+	 *
+	 * @throws Exception
+	 */
+	@Before
+	public void beforeMethod() throws Exception {
+		final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		this.projects = new IProject[Math.max(2, Runtime.getRuntime().availableProcessors())];
+		for (int i = 0; i < this.projects.length; i++) {
+			this.projects[i] = workspace.getRoot().getProject("TestLockContention" + i);
+		}
+
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				for (IProject project : TestsLockContention.this.projects) {
+					IProjectDescription description = workspace.newProjectDescription(project.getName());
+					description.setLocationURI(URI.create(ISemanticFileSystem.SCHEME + ":/" + project.getName()));
+					project.create(description, monitor);
+					project.open(monitor);
+
+					RepositoryProvider.map(project, ISemanticFileSystem.SFS_REPOSITORY_PROVIDER);
+				}
+			}
+		};
+
+		workspace.run(runnable, workspace.getRoot(), IWorkspace.AVOID_UPDATE, null);
+	}
+
+	/**
+	 * Deletes the projects
+	 *
+	 * @throws Exception
+	 */
+	@After
+	public void afterMethod() throws Exception {
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				for (IProject project : TestsLockContention.this.projects) {
+					project.delete(true, monitor);
+				}
+			}
+		};
+
+		ResourcesPlugin.getWorkspace().run(runnable, new NullProgressMonitor());
+		this.projects = null;
+	}
+
+	/**
+	 * Runs the same mix of reads and writes with N threads on N projects and
+	 * with N threads on a single project and reports the times
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testContention() throws Exception {
+		// warm up
+		runThreads(this.projects);
+
+		long separateNanos = runThreads(this.projects);
+
+		IProject[] sameProject = new IProject[this.projects.length];
+		Arrays.fill(sameProject, this.projects[0]);
+		long sharedNanos = runThreads(sameProject);
+
+		System.out.println("Lock contention with " + this.projects.length + " threads, " + OPERATIONS + " operations each: "
+				+ (separateNanos / 1000000) + " ms on separate projects, " + (sharedNanos / 1000000) + " ms on one project");
+	}
+
+	private static long runThreads(IProject[] targets) throws Exception {
+		Thread[] threads = new Thread[targets.length];
+		final Throwable[] failures = new Throwable[targets.length];
+
+		for (int i = 0; i < targets.length; i++) {
+			final int index = i;
+			final ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(targets[i].getLocationURI());
+			threads[i] = new Thread("Contention " + i) {
+				@Override
+				public void run() {
+					try {
+						String value = getName();
+						for (int j = 0; j < OPERATIONS; j++) {
+							if (j % 4 == 0) {
+								store.setPersistentProperty(KEY, value + j);
+							} else {
+								store.getPersistentProperty(KEY);
+								store.childNames(EFS.NONE, null);
+							}
+						}
+					} catch (Throwable t) {
+						failures[index] = t;
+					}
+				}
+			};
+		}
+
+		long start = System.nanoTime();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join(300000);
+			Assert.assertFalse("Thread should have finished", threads[i].isAlive());
+			Assert.assertNull("Operations should succeed", failures[i]);
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.semantic.spi.ISemanticFileStore;
+import org.eclipse.core.runtime.QualifiedName;
+import org.junit.Test;
+
+/**
+ * Tests the persistent properties of semantic resources
+ */
+public class TestsPersistentProperties extends TestsContentProviderUtil {
+
+	/**
+	 * The constructor
+	 */
+	public TestsPersistentProperties() {
+		super(true, "TestPersistentProperties", null);
+	}
+
+	/**
+	 * Tests reading and writing several persistent properties at once
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBulkPersistentProperties() throws Exception {
+
+		IFolder folder = this.testProject.getFolder("someFolder");
+		folder.create(false, true, null);
+		IFile file = folder.getFile("file");
+		file.create(new ByteArrayInputStream("".getBytes()), false, null);
+
+		ISemanticFileStore store = (ISemanticFileStore) EFS.getStore(file.getLocationURI());
+
+		QualifiedName key1 = new QualifiedName(TestPlugin.PLUGIN_ID, "Bulk1");
+		QualifiedName key2 = new QualifiedName(TestPlugin.PLUGIN_ID, "Bulk2");
+		QualifiedName key3 = new QualifiedName(TestPlugin.PLUGIN_ID, "Bulk3");
+
+		Map<QualifiedName, String> properties = new HashMap<QualifiedName, String>();
+		properties.put(key1, "value1");
+		properties.put(key2, "value2");
+		store.setPersistentProperties(properties);
+
+		Map<QualifiedName, String> values = store.getPersistentProperties(key1, key2, key3);
+		Assert.assertEquals("Wrong properties", properties, values);
+
+		// null removes a property, keys that are not contained are not changed
+		properties = new HashMap<QualifiedName, String>();
+		properties.put(key1, null);
+		properties.put(key3, "value3");
+		store.setPersistentProperties(properties);
+
+		Assert.assertNull("Property should be removed", store.getPersistentProperty(key1));
+		Assert.assertEquals("Property should be kept", "value2", store.getPersistentProperty(key2));
+		Assert.assertEquals("Property should be set", "value3", store.getPersistentProperty(key3));
+
+		// invalid keys are rejected before anything is changed
+		properties = new HashMap<QualifiedName, String>();
+		properties.put(key2, "changed");
+		properties.put(new QualifiedName(TestPlugin.PLUGIN_ID, "in^valid"), "value");
+		try {
+			store.setPersistentProperties(properties);
+			Assert.fail("Setting an invalid key should have failed");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Assert.assertEquals("Property should not be changed", "value2", store.getPersistentProperty(key2));
+	}
+
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2009 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import junit.framework.Assert;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.semantic.ISemanticFolder;
+import org.eclipse.core.resources.semantic.spi.ISemanticFileStore;
+import org.junit.Test;
+
+/**
+ * Tests the URI locator service
+ */
+public class TestsURILocator extends TestsContentProviderUtil {
+
+	/**
+	 * The constructor
+	 */
+	public TestsURILocator() {
+		super(true, "TestURILocator", null);
+	}
+
+	/**
+	 * Tests that the URI index follows changes of remote URIs and removals
+	 * once it has been built
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFindURI() throws Exception {
+
+		IFolder folder = this.testProject.getFolder("someFolder");
+		folder.create(false, true, null);
+		IFile file1 = folder.getFile("file1");
+		file1.create(new ByteArrayInputStream("".getBytes()), false, null);
+		IFolder subfolder = folder.getFolder("subfolder");
+		subfolder.create(false, true, null);
+		IFile file2 = subfolder.getFile("file2");
+		file2.create(new ByteArrayInputStream("".getBytes()), false, null);
+
+		ISemanticFolder sFolder = (ISemanticFolder) folder.getAdapter(ISemanticFolder.class);
+		URI uri = new URI("http://remote/testFindURI");
+
+		// builds the index
+		assertResources(new IResource[0], sFolder.findURI(uri, null));
+
+		ISemanticFileStore store1 = (ISemanticFileStore) EFS.getStore(file1.getLocationURI());
+		ISemanticFileStore store2 = (ISemanticFileStore) EFS.getStore(file2.getLocationURI());
+
+		store1.setRemoteURIString(uri.toString());
+		assertResources(new IResource[] {file1}, sFolder.findURI(uri, null));
+
+		store2.setRemoteURIString(uri.toString());
+		assertResources(new IResource[] {file1, file2}, sFolder.findURI(uri, null));
+
+		store1.setRemoteURIString("http://remote/other");
+		assertResources(new IResource[] {file2}, sFolder.findURI(uri, null));
+		assertResources(new IResource[] {file1}, sFolder.findURI(new URI("http://remote/other"), null));
+
+		((ISemanticFileStore) EFS.getStore(subfolder.getLocationURI())).remove(null);
+		assertResources(new IResource[0], sFolder.findURI(uri, null));
+	}
+
+	private static void assertResources(IResource[] expected, IResource[] actual) {
+		Assert.assertEquals("Wrong resources", new HashSet<IResource>(Arrays.asList(expected)), new HashSet<IResource>(Arrays
+				.asList(actual)));
+	}
+
+}
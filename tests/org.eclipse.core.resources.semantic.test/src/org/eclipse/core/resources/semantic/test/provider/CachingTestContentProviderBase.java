@@ -15,6 +15,9 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -72,6 +75,35 @@ public abstract class CachingTestContentProviderBase extends CachingContentProvi
 	private static final QualifiedName LOCKHANDLE = new QualifiedName(TestPlugin.PLUGIN_ID, "LockHandle");
 	private static final QualifiedName READONLY = new QualifiedName(TestPlugin.PLUGIN_ID, "ReadOnly");
 
+	/**
+	 * Counts the calls of
+	 * {@link #openInputStreamInternal(ISemanticFileStore, IProgressMonitor, org.eclipse.core.resources.semantic.spi.CachingContentProvider.ICacheTimestampSetter)}
+	 */
+	public static final AtomicInteger remoteOpenCount = new AtomicInteger();
+
+	/**
+	 * If set, remote content is only returned after the latch has been
+	 * released
+	 */
+	public static volatile CountDownLatch remoteOpenGate;
+
+	/**
+	 * If set, the latch is counted down whenever remote content is opened,
+	 * before waiting for {@link #remoteOpenGate}
+	 */
+	public static volatile CountDownLatch remoteOpenStarted;
+
+	/**
+	 * The number of files filled in parallel by
+	 * {@link #fillCache(ISemanticFileStore, IProgressMonitor, MultiStatus)}
+	 */
+	public static volatile int fillCacheConcurrency = 1;
+
+	/**
+	 * If set, reading the remote content fails
+	 */
+	public static volatile boolean remoteReadFailure;
+
 	/**
 	 * If set to any value, this indicates that beforeCacheUpdate method should
 	 * throw an exception
@@ -335,13 +367,62 @@ public abstract class CachingTestContentProviderBase extends CachingContentProvi
 	public InputStream openInputStreamInternal(ISemanticFileStore store, IProgressMonitor monitor, ICacheTimestampSetter timeStampSetter)
 			throws CoreException {
 		RemoteItem item = getStore().getItemByPath(store.getPath().removeFirstSegments(2));
+		if (item == null) {
+			throw new SemanticResourceException(SemanticResourceStatusCode.REMOTE_RESOURCE_NOT_FOUND, store.getPath(), "No such resource");
+		}
 		if (item.getType() != Type.FILE) {
 			throw new SemanticResourceException(SemanticResourceStatusCode.RESOURCE_WITH_OTHER_TYPE_EXISTS, item.getPath(), "");
 		}
+		remoteOpenCount.incrementAndGet();
+		CountDownLatch started = remoteOpenStarted;
+		if (started != null) {
+			started.countDown();
+		}
+		CountDownLatch gate = remoteOpenGate;
+		if (gate != null) {
+			try {
+				gate.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 		timeStampSetter.setTimestamp(((RemoteFile) item).getTimestamp());
+		if (remoteReadFailure) {
+			return new InputStream() {
+				@Override
+				public int read() throws IOException {
+					throw new IOException("Remote read failed");
+				}
+			};
+		}
 		return new ByteArrayInputStream(((RemoteFile) item).getContent());
 	}
 
+	@Override
+	protected InputStream openInputStreamIfChanged(ISemanticFileStore store, IProgressMonitor monitor,
+			ICacheTimestampSetter timeStampSetter) throws CoreException {
+		RemoteItem item = getStore().getItemByPath(store.getPath().removeFirstSegments(2));
+		if (item != null && item.getType() == Type.FILE && ((RemoteFile) item).getTimestamp() == timeStampSetter.getTimestamp()) {
+			return null;
+		}
+		return super.openInputStreamIfChanged(store, monitor, timeStampSetter);
+	}
+
+	@Override
+	public void fillCache(ISemanticFileStore semanticFileStore, IProgressMonitor monitor, MultiStatus status) {
+		super.fillCache(semanticFileStore, monitor, status);
+	}
+
+	@Override
+	public void revalidateCache(ISemanticFileStore semanticFileStore, IProgressMonitor monitor, MultiStatus status) {
+		super.revalidateCache(semanticFileStore, monitor, status);
+	}
+
+	@Override
+	protected int getFillCacheConcurrency() {
+		return fillCacheConcurrency;
+	}
+
 	@Override
 	public ISemanticResourceRuleFactory getRuleFactory() {
 		return new DefaultMinimalSemanticResourceRuleFactory(this.getRootStore());
@@ -13,9 +13,19 @@ package org.eclipse.core.resources.semantic.test.provider;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.semantic.ISemanticFolder;
+import org.eclipse.core.resources.semantic.ISemanticProject;
 import org.eclipse.core.resources.semantic.SemanticResourceException;
 import org.eclipse.core.resources.semantic.SemanticResourceStatusCode;
 import org.eclipse.core.resources.semantic.SyncDirection;
@@ -39,6 +49,34 @@ public class FederatingContentProvider2 extends ContentProvider implements ISema
 
 	private static final Map<String, String> pathTemplateMap = new HashMap<String, String>();
 
+	/**
+	 * URI that is looked up when the provider is asked for the path "A/F"
+	 */
+	public static URI uriToFind;
+	/**
+	 * resources found for {@link #uriToFind}
+	 */
+	public static IResource[] foundResources;
+	/**
+	 * the exception thrown while looking up {@link #uriToFind}
+	 */
+	public static CoreException findException;
+	/**
+	 * maps a project name to the name of another project in which
+	 * {@link #uriToFind} is looked up instead
+	 */
+	public static Map<String, String> projectsToTouch;
+	/**
+	 * if set, the callbacks wait for each other before they look up
+	 * {@link #uriToFind} in another project
+	 */
+	public static CyclicBarrier callbackBarrier;
+	/**
+	 * the results of the lookups in other projects per project name: the
+	 * resources found, or the exception thrown
+	 */
+	public static final Map<String, Object> touchResults = Collections.synchronizedMap(new HashMap<String, Object>());
+
 	static {
 		pathTemplateMap.put("B", FederatedContentProvider.class.getName());
 		// TODO use another content provider
@@ -59,6 +97,20 @@ public class FederatingContentProvider2 extends ContentProvider implements ISema
 			return null;
 		}
 		if (checkPath.segment(0).equals("A")) {
+			if (checkPath.segment(1).equals("F") && uriToFind != null) {
+				// this is called while the store of the path is locked
+				IResource rootResource = ResourcesPlugin.getWorkspace().getRoot().findMember(getRootStore().getPath());
+				if (projectsToTouch != null) {
+					touchOtherProject(rootResource.getProject());
+				} else {
+					try {
+						ISemanticFolder rootFolder = (ISemanticFolder) rootResource.getAdapter(ISemanticFolder.class);
+						foundResources = rootFolder.findURI(uriToFind, null);
+					} catch (CoreException e) {
+						findException = e;
+					}
+				}
+			}
 			if (pathTemplateMap.get(checkPath.segment(1)) != null) {
 				return new FederatedProviderInfo(pathTemplateMap.get(checkPath.segment(1)), 2);
 			}
@@ -66,6 +118,26 @@ public class FederatingContentProvider2 extends ContentProvider implements ISema
 		return null;
 	}
 
+	private static void touchOtherProject(IProject project) {
+		try {
+			if (callbackBarrier != null) {
+				callbackBarrier.await(10, TimeUnit.SECONDS);
+			}
+			IProject otherProject = project.getWorkspace().getRoot().getProject(projectsToTouch.get(project.getName()));
+
+			// reads the metadata of the other project under the lock of its
+			// root
+			ISemanticFileStore otherStore = (ISemanticFileStore) EFS.getStore(otherProject.getLocationURI());
+			otherStore.childNames(EFS.NONE, null);
+
+			ISemanticProject otherSProject = (ISemanticProject) otherProject.getAdapter(ISemanticProject.class);
+			touchResults.put(project.getName(), otherSProject.findURI(uriToFind, null));
+		} catch (Exception e) {
+			// $JL-EXC$ checked by the test
+			touchResults.put(project.getName(), e);
+		}
+	}
+
 	public void addResource(ISemanticFileStore parentStore, String name, ResourceType resourceType, IProgressMonitor monitor)
 			throws CoreException {
 		switch (resourceType) {
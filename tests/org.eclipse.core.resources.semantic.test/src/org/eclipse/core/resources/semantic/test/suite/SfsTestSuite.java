@@ -12,13 +12,21 @@
 package org.eclipse.core.resources.semantic.test.suite;
 
 import org.eclipse.core.resources.semantic.test.TestCacheService;
+import org.eclipse.core.resources.semantic.test.TestResourceTreeNode;
+import org.eclipse.core.resources.semantic.test.TestSemanticDBJournal;
+import org.eclipse.core.resources.semantic.test.TestSemanticDBSegments;
+import org.eclipse.core.resources.semantic.test.TestUtil;
 import org.eclipse.core.resources.semantic.test.TestsCachingProvider;
 import org.eclipse.core.resources.semantic.test.TestsDefaultContentProvider;
 import org.eclipse.core.resources.semantic.test.TestsFederatingProvider;
 import org.eclipse.core.resources.semantic.test.TestsFederatingProvider2;
+import org.eclipse.core.resources.semantic.test.TestsFlushScheduler;
 import org.eclipse.core.resources.semantic.test.TestsLinkedResources;
+import org.eclipse.core.resources.semantic.test.TestsLockContention;
 import org.eclipse.core.resources.semantic.test.TestsNullContentProvider;
+import org.eclipse.core.resources.semantic.test.TestsPersistentProperties;
 import org.eclipse.core.resources.semantic.test.TestsPlainProvider;
+import org.eclipse.core.resources.semantic.test.TestsURILocator;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -33,6 +41,14 @@ import org.junit.runners.Suite;
 		TestsFederatingProvider2.class,//
 		TestsNullContentProvider.class,//
 		TestCacheService.class,//
+		TestUtil.class,//
+		TestResourceTreeNode.class,//
+		TestSemanticDBJournal.class,//
+		TestSemanticDBSegments.class,//
+		TestsFlushScheduler.class,//
+		TestsLockContention.class,//
+		TestsURILocator.class,//
+		TestsPersistentProperties.class,//
 		TestsLinkedResources.class})
 public class SfsTestSuite {
 	// the suite
@@ -24,6 +24,8 @@ import org.junit.runners.Suite;
 		TestsRepositoryProvider.class,//
 		TestsMemoryCachingProvider.class,//
 		TestRemoteStoreContentProvider.class,//
+		TestsPropfindResponseReader.class,//
+		TestsResumableDownload.class,//
 		TestsSFSUi.class})
 public class SfsExamplesTestSuite {
 	// the suite
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2010 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.semantic.examples.webdav.MultistatusType;
+import org.eclipse.core.resources.semantic.examples.webdav.PropType;
+import org.eclipse.core.resources.semantic.examples.webdav.PropfindResponseReader;
+import org.eclipse.core.resources.semantic.examples.webdav.ResponseType;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the streaming reader for PROPFIND responses
+ */
+public class TestsPropfindResponseReader {
+
+	private static final String FOLDER_RESPONSE = "<D:response>" //
+			+ "<D:href>/dav/folder/</D:href>" //
+			+ "<D:propstat><D:prop>" //
+			+ "<D:resourcetype><D:collection/></D:resourcetype>" //
+			+ "<D:supportedlock><D:lockentry>" //
+			+ "<D:lockscope><D:exclusive/></D:lockscope><D:locktype><D:write/></D:locktype>" //
+			+ "</D:lockentry></D:supportedlock>" //
+			+ "<D:displayname>folder</D:displayname>" //
+			+ "</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat>" //
+			+ "</D:response>";
+
+	private static final String FILE_RESPONSE = "<D:response>" //
+			+ "<D:href>/dav/folder/file.txt</D:href>" //
+			+ "<D:propstat><D:prop>" //
+			+ "<D:resourcetype/>" //
+			+ "<D:lockdiscovery><D:activelock>" //
+			+ "<D:lockscope><D:exclusive/></D:lockscope>" //
+			+ "</D:activelock></D:lockdiscovery>" //
+			+ "<D:getlastmodified>Mon, 12 Jan 2010 10:00:00 GMT</D:getlastmodified>" //
+			+ "<D:getcontenttype>text/plain</D:getcontenttype>" //
+			+ "<D:getetag>\"abc\"</D:getetag>" //
+			+ "<D:displayname></D:displayname>" //
+			+ "</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat>" //
+			+ "</D:response>";
+
+	/**
+	 * Tests that the responses are passed to the handler one by one with
+	 * their properties
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadResponses() throws Exception {
+		final List<ResponseType> responses = new ArrayList<ResponseType>();
+		CloseTrackingStream content = new CloseTrackingStream(multistatus(FOLDER_RESPONSE + FILE_RESPONSE));
+
+		boolean isMultistatus = new PropfindResponseReader().readResponses(content, new PropfindResponseReader.IResponseHandler() {
+			public void handleResponse(ResponseType response) {
+				responses.add(response);
+			}
+		}, null);
+
+		Assert.assertTrue("Content should be a multistatus response", isMultistatus);
+		Assert.assertTrue("Content should be closed", content.closed);
+		Assert.assertEquals("Wrong number of responses", 2, responses.size());
+
+		ResponseType folder = responses.get(0);
+		Assert.assertEquals("Wrong href", "/dav/folder/", folder.getHref());
+		Assert.assertEquals("Wrong number of propstats", 1, folder.getPropstat().size());
+		Assert.assertEquals("Wrong status", "HTTP/1.1 200 OK", folder.getPropstat().get(0).getStatus());
+		PropType folderProp = folder.getPropstat().get(0).getProp();
+		Assert.assertTrue("Folder expected", folderProp.getIsFolder());
+		Assert.assertTrue("Locking should be supported", folderProp.getSupportsLocking());
+		Assert.assertEquals("Wrong display name", "folder", folderProp.getDisplayname());
+		Assert.assertNull("No entity tag expected", folderProp.getETag());
+
+		ResponseType file = responses.get(1);
+		Assert.assertEquals("Wrong href", "/dav/folder/file.txt", file.getHref());
+		PropType fileProp = file.getPropstat().get(0).getProp();
+		Assert.assertFalse("File expected", fileProp.getIsFolder());
+		// an active lock does not mean that locking is supported
+		Assert.assertFalse("Locking should not be supported", fileProp.getSupportsLocking());
+		Assert.assertEquals("Wrong modification time", "Mon, 12 Jan 2010 10:00:00 GMT", fileProp.getLastmodified());
+		Assert.assertEquals("Wrong content type", "text/plain", fileProp.getContentType());
+		Assert.assertEquals("Wrong entity tag", "\"abc\"", fileProp.getETag());
+		Assert.assertNull("Empty display name should be null", fileProp.getDisplayname());
+	}
+
+	/**
+	 * Tests that the collected responses are returned as multistatus
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoadMultistatus() throws Exception {
+		PropfindResponseReader reader = new PropfindResponseReader();
+
+		MultistatusType multistatus = reader.loadMultitatusTypeFromResponse(new ByteArrayInputStream(multistatus(FOLDER_RESPONSE
+				+ FILE_RESPONSE)), null);
+		Assert.assertNotNull("Multistatus expected", multistatus);
+		Assert.assertEquals("Wrong number of responses", 2, multistatus.getResponse().size());
+		Assert.assertEquals("Wrong order", "/dav/folder/file.txt", multistatus.getResponse().get(1).getHref());
+
+		Assert.assertNull("Other content is no multistatus", reader.loadMultitatusTypeFromResponse(new ByteArrayInputStream(
+				"<D:error xmlns:D=\"DAV:\"><D:response/></D:error>".getBytes("UTF-8")), null));
+		Assert.assertNull("No content is no multistatus", reader.loadMultitatusTypeFromResponse(null, null));
+	}
+
+	/**
+	 * Tests that the handler can stop reading and that its exception is
+	 * reported
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testStopReading() throws Exception {
+		final IOException stop = new IOException("stop");
+		final List<ResponseType> responses = new ArrayList<ResponseType>();
+		CloseTrackingStream content = new CloseTrackingStream(multistatus(FOLDER_RESPONSE + FILE_RESPONSE));
+
+		try {
+			new PropfindResponseReader().readResponses(content, new PropfindResponseReader.IResponseHandler() {
+				public void handleResponse(ResponseType response) throws IOException {
+					responses.add(response);
+					throw stop;
+				}
+			}, null);
+			Assert.fail("Reading should stop");
+		} catch (IOException e) {
+			Assert.assertSame("Exception of the handler expected", stop, e);
+		}
+
+		Assert.assertEquals("Reading should stop after the first response", 1, responses.size());
+		Assert.assertTrue("Content should be closed", content.closed);
+	}
+
+	/**
+	 * Tests that malformed content is reported
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMalformedContent() throws Exception {
+		CloseTrackingStream content = new CloseTrackingStream(("<D:multistatus xmlns:D=\"DAV:\">" + FOLDER_RESPONSE).getBytes("UTF-8"));
+
+		try {
+			new PropfindResponseReader().loadMultitatusTypeFromResponse(content, null);
+			Assert.fail("Malformed content should not be read");
+		} catch (IOException e) {
+			// $JL-EXC$ expected
+		}
+		Assert.assertTrue("Content should be closed", content.closed);
+	}
+
+	private static byte[] multistatus(String responses) throws IOException {
+		return ("<?xml version=\"1.0\" encoding=\"utf-8\"?><D:multistatus xmlns:D=\"DAV:\">" + responses + "</D:multistatus>")
+				.getBytes("UTF-8");
+	}
+
+	private static final class CloseTrackingStream extends ByteArrayInputStream {
+
+		boolean closed = false;
+
+		CloseTrackingStream(byte[] content) {
+			super(content);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.closed = true;
+			super.close();
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2010 SAP AG.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Eduard Bartsch (SAP AG) - initial API and implementation
+ *    Mathias Kinzler (SAP AG) - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.resources.semantic.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.semantic.examples.webdav.WebDAVUtil;
+import org.eclipse.core.resources.semantic.spi.Util;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that broken WebDAV downloads are resumed with conditional range
+ * requests, and only if the continuation belongs to the same content
+ */
+public class TestsResumableDownload {
+
+	private static final String CONTENT = "0123456789";
+	private static final String LAST_MODIFIED = "Tue, 12 Jan 2010 10:00:00 GMT";
+
+	private ScriptedServer server;
+
+	/**
+	 * Stops the server
+	 */
+	@After
+	public void afterMethod() {
+		if (this.server != null) {
+			this.server.close();
+			this.server = null;
+		}
+	}
+
+	/**
+	 * Tests that a truncated download is continued at the position where it
+	 * broke
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testResume() throws Exception {
+		this.server = new ScriptedServer(new String[] {//
+				ok("ETag: \"v1\"", CONTENT.length(), "0123"), //
+				partial("ETag: \"v1\"", 4, "456789")});
+
+		Assert.assertEquals("Wrong content", CONTENT, download());
+
+		Assert.assertEquals("Wrong number of requests", 2, this.server.requests.size());
+		String rangeRequest = this.server.requests.get(1);
+		Assert.assertTrue("Range expected", rangeRequest.contains("Range: bytes=4-\r\n"));
+		Assert.assertTrue("Entity tag expected as validator", rangeRequest.contains("If-Range: \"v1\"\r\n"));
+	}
+
+	/**
+	 * Tests that the modification time is the validator if there is no strong
+	 * entity tag
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testResumeWithModificationTime() throws Exception {
+		String headers = "ETag: W/\"v1\"\r\nLast-Modified: " + LAST_MODIFIED;
+		this.server = new ScriptedServer(new String[] {ok(headers, CONTENT.length(), "012345"), partial(headers, 6, "6789")});
+
+		Assert.assertEquals("Wrong content", CONTENT, download());
+
+		Assert.assertEquals("Wrong number of requests", 2, this.server.requests.size());
+		Assert.assertTrue("Modification time expected as validator", this.server.requests.get(1).contains(
+				"If-Range: " + LAST_MODIFIED + "\r\n"));
+	}
+
+	/**
+	 * Tests that a download without validator is not resumed
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoValidator() throws Exception {
+		this.server = new ScriptedServer(new String[] {ok("ETag: W/\"v1\"", CONTENT.length(), "0123")});
+
+		assertDownloadFails();
+		Assert.assertEquals("Wrong number of requests", 1, this.server.requests.size());
+	}
+
+	/**
+	 * Tests that a range starting at another position is rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOtherRange() throws Exception {
+		this.server = new ScriptedServer(new String[] {ok("ETag: \"v1\"", CONTENT.length(), "0123"), //
+				partial("ETag: \"v1\"", 0, CONTENT)});
+
+		assertDownloadFails();
+	}
+
+	/**
+	 * Tests that the complete content is rejected if the server does not send
+	 * a range, e.g. because the content has changed
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testChangedContent() throws Exception {
+		this.server = new ScriptedServer(new String[] {ok("ETag: \"v1\"", CONTENT.length(), "0123"), //
+				ok("ETag: \"v2\"", CONTENT.length(), "abcdefghij")});
+
+		assertDownloadFails();
+	}
+
+	/**
+	 * Tests that a range of another version of the content is rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOtherEntityTag() throws Exception {
+		this.server = new ScriptedServer(new String[] {ok("ETag: \"v1\"", CONTENT.length(), "0123"), //
+				partial("ETag: \"v2\"", 4, "456789")});
+
+		assertDownloadFails();
+	}
+
+	/**
+	 * Tests that a download is resumed a limited number of times only
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testResumeAttempts() throws Exception {
+		// every response breaks after one byte
+		this.server = new ScriptedServer(new String[] {ok("ETag: \"v1\"", CONTENT.length(), "0"), //
+				partial("ETag: \"v1\"", 1, "1"), //
+				partial("ETag: \"v1\"", 2, "2"), //
+				partial("ETag: \"v1\"", 3, "3"), //
+				partial("ETag: \"v1\"", 4, "456789")});
+
+		assertDownloadFails();
+		Assert.assertEquals("Wrong number of requests", 4, this.server.requests.size());
+	}
+
+	private String download() throws IOException {
+		InputStream is = WebDAVUtil.openInputStream(this.server.getURI("/file.txt"), null);
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			byte[] buffer = new byte[3];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				os.write(buffer, 0, read);
+			}
+			return new String(os.toByteArray(), "UTF-8");
+		} finally {
+			Util.safeClose(is);
+		}
+	}
+
+	private void assertDownloadFails() {
+		try {
+			String content = download();
+			Assert.fail("Download should fail, but returned " + content);
+		} catch (IOException e) {
+			// $JL-EXC$ expected
+		}
+	}
+
+	/*
+	 * a complete response header announcing the given length, followed by
+	 * the given part of the body
+	 */
+	private static String ok(String headers, int length, String body) {
+		return "HTTP/1.1 200 OK\r\n" + headers + "\r\nContent-Length: " + length + "\r\n" + "Connection: close\r\n\r\n" + body;
+	}
+
+	private static String partial(String headers, int start, String body) {
+		int end = CONTENT.length() - 1;
+		return "HTTP/1.1 206 Partial Content\r\n" + headers + "\r\nContent-Range: bytes " + start + "-" + end + "/" + CONTENT.length()
+				+ "\r\nContent-Length: " + (end - start + 1) + "\r\nConnection: close\r\n\r\n" + body;
+	}
+
+	/*
+	 * answers one connection after the other with the next response and
+	 * closes the connection; thus, a response with a shorter body than
+	 * announced breaks the download
+	 */
+	private static final class ScriptedServer implements Runnable {
+
+		final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		private final ServerSocket socket;
+		private final String[] responses;
+
+		ScriptedServer(String[] responses) throws IOException {
+			this.responses = responses;
+			this.socket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+			Thread thread = new Thread(this, "Scripted HTTP Server");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		String getURI(String path) {
+			return "http://127.0.0.1:" + this.socket.getLocalPort() + path;
+		}
+
+		public void run() {
+			try {
+				for (String response : this.responses) {
+					Socket client = this.socket.accept();
+					try {
+						this.requests.add(readRequest(client.getInputStream()));
+						OutputStream os = client.getOutputStream();
+						os.write(response.getBytes("UTF-8"));
+						os.flush();
+					} finally {
+						client.close();
+					}
+				}
+			} catch (IOException e) {
+				// $JL-EXC$ the server has been closed
+			}
+		}
+
+		void close() {
+			try {
+				this.socket.close();
+			} catch (IOException e) {
+				// $JL-EXC$ ignore
+			}
+		}
+
+		private static String readRequest(InputStream is) throws IOException {
+			StringBuilder request = new StringBuilder();
+			while (request.length() < 4 || !request.substring(request.length() - 4).equals("\r\n\r\n")) {
+				int read = is.read();
+				if (read == -1) {
+					break;
+				}
+				request.append((char) read);
+			}
+			return request.toString();
+		}
+	}
+}